@@ -0,0 +1,58 @@
+package org.g2ql.geode;
+
+import static org.apache.commons.beanutils.BeanUtils.populate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.g2ql.domain.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares creating the value of a mutation with commons-beanutils, as mutations used to, with
+ * {@link GeodeInputBinder}. Only flat properties are bound, since beanutils cannot convert the
+ * input objects of embedded classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeodeInputBinderBenchmark {
+  private Map<String, Object> input;
+  private GeodeInputBinder binder;
+
+  @Setup
+  public void setUp() {
+    input = new HashMap<>();
+    input.put("id", "1");
+    input.put("firstName", "Luke");
+    input.put("lastName", "Skywalker");
+    input.put("age", 30);
+    input.put("company", "Pivotal");
+    binder = GeodeInputBinder.of(Person.class);
+  }
+
+  @Benchmark
+  public Object beanUtils() throws Exception {
+    Person person = Person.class.newInstance();
+    populate(person, input);
+    return person;
+  }
+
+  @Benchmark
+  public Object inputBinder() {
+    return binder.bind(input);
+  }
+}
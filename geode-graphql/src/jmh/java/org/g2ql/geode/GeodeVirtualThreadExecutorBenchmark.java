@@ -0,0 +1,164 @@
+package org.g2ql.geode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.CacheLoader;
+import org.apache.geode.cache.LoaderHelper;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.g2ql.domain.Person;
+import org.g2ql.graphql.GraphQLExecutor;
+import org.g2ql.server.QueryHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Samples the latency of fast key lookups sent over HTTP to a {@link QueryHandler} while
+ * {@value #SLOW_CLIENTS} other clients keep sending lookups of a key whose read blocks for
+ * {@value #SLOW_READ_MILLIS} ms, like a read from a slow remote member. The Jetty pool has
+ * {@value #JETTY_THREADS} threads. The requests either run on them, or on a
+ * {@link GeodeVirtualThreadExecutor} capped to {@code maxConcurrentRequests}, which needs Java 21
+ * or later.
+ *
+ * <p>
+ * The fetchers read on the request thread, as with {@code g2ql.fetchThreads} set to 0, so the
+ * blocked reads hold whatever thread the request runs on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dg2ql.fetchThreads=0")
+public class GeodeVirtualThreadExecutorBenchmark {
+  private static final int JETTY_THREADS = 32;
+  private static final int SLOW_CLIENTS = 64;
+  private static final long SLOW_READ_MILLIS = 20;
+  private static final String FAST = "{\"query\":\"{ Person(key: \\\"1\\\") { id firstName } }\"}";
+  private static final String SLOW = "{\"query\":\"{ Person(key: \\\"slow\\\") { id } }\"}";
+
+  @Param({"jetty", "virtual"})
+  private String requests;
+
+  @Param({"256"})
+  private int maxConcurrentRequests;
+
+  private Cache cache;
+  private Server server;
+  private URL url;
+  private ExecutorService slowClients;
+  private volatile boolean running;
+
+  @Setup
+  public void setUp() throws Exception {
+    cache = new CacheFactory().set("mcast-port", "0").set("locators", "")
+        .set("log-level", "warn").create();
+    // the handler and the fetchers log every request at info
+    Configurator.setLevel("org.g2ql", Level.WARN);
+    Region<String, Person> region = cache.<String, Person>createRegionFactory(RegionShortcut.LOCAL)
+        .setKeyConstraint(String.class).setValueConstraint(Person.class)
+        .setCacheLoader(new SlowLoader()).create("Person");
+    region.put("1", new Person("1", "Luke", "Skywalker", 30, "Rebellion"));
+
+    QueryHandler queryHandler = new QueryHandler(cache, new GraphQLExecutor(cache));
+    if ("virtual".equals(requests)) {
+      queryHandler.setRequestExecutor(
+          new GeodeVirtualThreadExecutor("g2ql-request-", maxConcurrentRequests, 100));
+    }
+    server = new Server(new QueuedThreadPool(JETTY_THREADS));
+    ServerConnector connector = new ServerConnector(server, 1, 1);
+    server.addConnector(connector);
+    server.setHandler(queryHandler);
+    server.start();
+    url = new URL("http://localhost:" + connector.getLocalPort() + "/graphql");
+
+    running = true;
+    slowClients = Executors.newFixedThreadPool(SLOW_CLIENTS);
+    for (int i = 0; i < SLOW_CLIENTS; i++) {
+      slowClients.execute(() -> {
+        while (running) {
+          try {
+            post(SLOW);
+          } catch (IOException e) {
+            // answered with a 503 or cut by the tear down
+          }
+        }
+      });
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    running = false;
+    slowClients.shutdown();
+    slowClients.awaitTermination(10, TimeUnit.SECONDS);
+    server.stop();
+    cache.close();
+  }
+
+  @Benchmark
+  public int fast() throws IOException {
+    return post(FAST);
+  }
+
+  private int post(String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    int status = connection.getResponseCode();
+    InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    if (in != null) {
+      // read to the end, so the connection is kept alive for the next request
+      try (InputStream response = in) {
+        byte[] buffer = new byte[4096];
+        while (response.read(buffer) >= 0) {
+        }
+      }
+    }
+    return status;
+  }
+
+  private static class SlowLoader implements CacheLoader<String, Person> {
+    @Override
+    public Person load(LoaderHelper<String, Person> helper) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(SLOW_READ_MILLIS));
+      // not stored, so every read of the key is slow
+      return null;
+    }
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,101 @@
+package org.g2ql.graphql;
+
+import java.util.concurrent.TimeUnit;
+
+import graphql.ExecutionResult;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.g2ql.domain.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Executes operations against a loner cache created in the JVM of the benchmark, holding
+ * {@value #PERSONS} persons in a local {@code Person} region with an index on their first name.
+ * Every first name is shared by {@value #PER_FIRST_NAME} persons and every person has
+ * {@value #FRIENDS} friends. The operations are always the same, so they are parsed and
+ * validated once and served from the document cache after that, like the operations of an
+ * application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphQLExecutorBenchmark {
+  private static final int PERSONS = 10000;
+  private static final int PER_FIRST_NAME = 20;
+  private static final int FRIENDS = 10;
+
+  private static final String BY_KEY = "query personByKey { Person(key: \"42\") { id firstName "
+      + "lastName age address { city } } }";
+  private static final String BY_INDEXED_FIELD = "query personsByFirstName { Persons(firstName: "
+      + "[\"First42\"], limit: 100) { id firstName lastName age } }";
+  private static final String CONNECTION = "query friendsOfPerson { Person(key: \"42\") { id "
+      + "friends { id firstName lastName } } }";
+
+  private Cache cache;
+  private GraphQLExecutor executor;
+
+  @Setup
+  public void setUp() throws Exception {
+    cache = new CacheFactory().set("mcast-port", "0").set("locators", "")
+        .set("log-level", "warn").create();
+    // the fetchers log every read at info, which would be measured instead of them
+    Configurator.setLevel("org.g2ql", Level.WARN);
+    Region<String, Person> region = cache.<String, Person>createRegionFactory(RegionShortcut.LOCAL)
+        .setKeyConstraint(String.class).setValueConstraint(Person.class).create("Person");
+    cache.getQueryService().createIndex("firstName", "firstName", "/Person");
+    for (int i = 0; i < PERSONS; i++) {
+      Person person = new Person(String.valueOf(i), "First" + i / PER_FIRST_NAME, "Last" + i,
+          20 + i % 50, "Pivotal");
+      person.setAddress(person.new Address(i + " Pike Street", "Seattle", "USA"));
+      for (int friend = 1; friend <= FRIENDS; friend++) {
+        person.getFriends().add(String.valueOf((i + friend) % PERSONS));
+      }
+      region.put(person.getId(), person);
+    }
+    executor = new GraphQLExecutor(cache);
+    for (String query : new String[] {BY_KEY, BY_INDEXED_FIELD, CONNECTION}) {
+      ExecutionResult result = executor.execute(query);
+      if (!result.getErrors().isEmpty()) {
+        throw new IllegalStateException(query + " failed: " + result.getErrors());
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.close();
+    cache.close();
+  }
+
+  @Benchmark
+  public Object byKey() {
+    return executor.execute(BY_KEY);
+  }
+
+  @Benchmark
+  public Object byIndexedField() {
+    return executor.execute(BY_INDEXED_FIELD);
+  }
+
+  @Benchmark
+  public Object connection() {
+    return executor.execute(CONNECTION);
+  }
+}
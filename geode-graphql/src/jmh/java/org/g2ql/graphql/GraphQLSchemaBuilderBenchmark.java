@@ -0,0 +1,138 @@
+package org.g2ql.graphql;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import graphql.schema.GraphQLSchema;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds the schema of a loner cache holding {@value #REGIONS} regions, each with its own
+ * synthetic value class. The classes have {@code width} scalar fields, the first of them indexed,
+ * and embed a class of the same shape {@code depth - 1} levels deep. They are generated and
+ * compiled when the benchmark starts, so it needs a JDK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphQLSchemaBuilderBenchmark {
+  private static final int REGIONS = 8;
+  private static final String[] FIELD_TYPES =
+      {"String", "int", "long", "double", "boolean", "java.time.LocalDate"};
+
+  @Param({"4", "16", "64"})
+  private int width;
+
+  @Param({"1", "4"})
+  private int depth;
+
+  private File classesDir;
+  private Cache cache;
+
+  @Setup
+  public void setUp() throws Exception {
+    classesDir = Files.createTempDirectory("g2ql-models").toFile();
+    List<String> sources = new ArrayList<>();
+    for (int region = 0; region < REGIONS; region++) {
+      for (int level = 0; level < depth; level++) {
+        sources.add(writeModel(region, level).getPath());
+      }
+    }
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException("The synthetic models are compiled, run with a JDK");
+    }
+    List<String> arguments = new ArrayList<>();
+    arguments.add("-d");
+    arguments.add(classesDir.getPath());
+    arguments.addAll(sources);
+    if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+      throw new IllegalStateException("The synthetic models did not compile");
+    }
+    ClassLoader models = new URLClassLoader(new URL[] {classesDir.toURI().toURL()},
+        getClass().getClassLoader());
+
+    cache = new CacheFactory().set("mcast-port", "0").set("locators", "")
+        .set("log-level", "warn").create();
+    // the builder logs the fields of every region at info
+    Configurator.setLevel("org.g2ql", Level.WARN);
+    for (int region = 0; region < REGIONS; region++) {
+      String name = "Model" + region;
+      @SuppressWarnings("unchecked")
+      Class<Object> valueClass = (Class<Object>) models.loadClass(className(region, 0));
+      cache.<String, Object>createRegionFactory(RegionShortcut.LOCAL)
+          .setKeyConstraint(String.class).setValueConstraint(valueClass).create(name);
+      cache.getQueryService().createIndex(name + "Field0", "field0", "/" + name);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    cache.close();
+    // the files before their directory
+    Files.walk(classesDir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
+        .forEach(File::delete);
+  }
+
+  @Benchmark
+  public GraphQLSchema build() {
+    return new GraphQLSchemaBuilder(cache).build();
+  }
+
+  private File writeModel(int region, int level) throws IOException {
+    String simpleName = simpleName(region, level);
+    StringBuilder source = new StringBuilder("package synthetic;\n\n");
+    source.append("public class ").append(simpleName)
+        .append(" implements java.io.Serializable {\n");
+    for (int field = 0; field < width; field++) {
+      source.append("  public ").append(FIELD_TYPES[field % FIELD_TYPES.length])
+          .append(" field").append(field).append(";\n");
+    }
+    if (level + 1 < depth) {
+      source.append("  public ").append(simpleName(region, level + 1)).append(" child;\n");
+    }
+    source.append("}\n");
+    File file = new File(classesDir, simpleName + ".java");
+    Files.write(file.toPath(), source.toString().getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static String className(int region, int level) {
+    return "synthetic." + simpleName(region, level);
+  }
+
+  private static String simpleName(int region, int level) {
+    return "Model" + region + "Level" + level;
+  }
+}
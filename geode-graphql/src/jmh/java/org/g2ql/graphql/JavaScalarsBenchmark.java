@@ -0,0 +1,103 @@
+package org.g2ql.graphql;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import graphql.language.IntValue;
+import graphql.language.StringValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coerces the values of the {@link JavaScalars} the way an operation does: results are
+ * serialized, variables parsed as values and arguments written in the query parsed as literals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaScalarsBenchmark {
+  private LocalDateTime localDateTime;
+  private LocalDate localDate;
+  private Instant instant;
+  private UUID uuid;
+  private String localDateTimeString;
+  private String uuidString;
+  private Long epochSecond;
+  private StringValue localDateLiteral;
+  private IntValue instantLiteral;
+  private StringValue uuidLiteral;
+
+  @Setup
+  public void setUp() {
+    localDateTime = LocalDateTime.of(2018, 5, 4, 13, 37, 42);
+    localDate = localDateTime.toLocalDate();
+    instant = Instant.ofEpochSecond(1525441062L);
+    uuid = UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e");
+    localDateTimeString = localDateTime.toString();
+    uuidString = uuid.toString();
+    epochSecond = instant.getEpochSecond();
+    localDateLiteral = new StringValue(localDate.toString());
+    instantLiteral = new IntValue(BigInteger.valueOf(epochSecond));
+    uuidLiteral = new StringValue(uuidString);
+  }
+
+  @Benchmark
+  public Object serializeLocalDateTime() {
+    return JavaScalars.GraphQLLocalDateTime.getCoercing().serialize(localDateTime);
+  }
+
+  @Benchmark
+  public Object serializeInstant() {
+    return JavaScalars.GraphQLInstant.getCoercing().serialize(instant);
+  }
+
+  @Benchmark
+  public Object serializeUUID() {
+    return JavaScalars.GraphQLUUID.getCoercing().serialize(uuid);
+  }
+
+  @Benchmark
+  public Object parseLocalDateTimeValue() {
+    return JavaScalars.GraphQLLocalDateTime.getCoercing().parseValue(localDateTimeString);
+  }
+
+  @Benchmark
+  public Object parseLocalDateTimeEpochValue() {
+    return JavaScalars.GraphQLLocalDateTime.getCoercing().parseValue(epochSecond);
+  }
+
+  @Benchmark
+  public Object parseUUIDValue() {
+    return JavaScalars.GraphQLUUID.getCoercing().parseValue(uuidString);
+  }
+
+  @Benchmark
+  public Object parseLocalDateLiteral() {
+    return JavaScalars.GraphQLLocalDate.getCoercing().parseLiteral(localDateLiteral);
+  }
+
+  @Benchmark
+  public Object parseInstantLiteral() {
+    return JavaScalars.GraphQLInstant.getCoercing().parseLiteral(instantLiteral);
+  }
+
+  @Benchmark
+  public Object parseUUIDLiteral() {
+    return JavaScalars.GraphQLUUID.getCoercing().parseLiteral(uuidLiteral);
+  }
+}
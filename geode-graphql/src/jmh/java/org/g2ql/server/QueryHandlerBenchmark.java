@@ -0,0 +1,105 @@
+package org.g2ql.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads the body of a POST request and writes the result of an operation the way
+ * {@link QueryHandler} does, with {@link GraphQLRequestReader} and {@link JsonResponseWriter}, next
+ * to the {@link ObjectMapper} round trip through strings they replaced. The request selects
+ * {@code size} keys and the result holds as many persons.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryHandlerBenchmark {
+  private static final OutputStream DISCARD = new OutputStream() {
+    @Override
+    public void write(int b) {}
+
+    @Override
+    public void write(byte[] b, int off, int len) {}
+  };
+
+  @Param({"10", "1000"})
+  private int size;
+
+  private final ObjectMapper mapper =
+      new ObjectMapper().disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+  private final GraphQLRequestReader reader = new GraphQLRequestReader();
+  private final JsonResponseWriter writer = new JsonResponseWriter(mapper);
+  private byte[] body;
+  private ExecutionResult result;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<String> keys = new ArrayList<>();
+    List<Map<String, Object>> persons = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      keys.add(String.valueOf(i));
+      Map<String, Object> person = new LinkedHashMap<>();
+      person.put("id", String.valueOf(i));
+      person.put("firstName", "Luke");
+      person.put("lastName", "Skywalker");
+      person.put("age", 30);
+      person.put("address", Collections.singletonMap("city", "Seattle"));
+      persons.add(person);
+    }
+    Map<String, Object> request = new LinkedHashMap<>();
+    request.put("query", "query persons($keys: [String]) { Persons(key: $keys) { id firstName "
+        + "lastName age address { city } } }");
+    request.put("operationName", "persons");
+    request.put("variables", Collections.singletonMap("keys", keys));
+    body = mapper.writeValueAsBytes(request);
+    result = new ExecutionResultImpl(Collections.singletonMap("Persons", persons),
+        Collections.emptyList());
+  }
+
+  @Benchmark
+  public Object readRequest() throws IOException {
+    return reader.read(new ByteArrayInputStream(body));
+  }
+
+  @Benchmark
+  public Object readRequestWithObjectMapper() throws IOException {
+    return mapper.readValue(new String(body, StandardCharsets.UTF_8), GraphQLRequest.class);
+  }
+
+  @Benchmark
+  public void writeResult() throws IOException {
+    writer.write(DISCARD, result);
+  }
+
+  @Benchmark
+  public void writeResultWithObjectMapper() throws IOException {
+    DISCARD.write(mapper.writeValueAsString(result.toSpecification())
+        .getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,36 @@
+package org.g2ql.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Keeps the hot values of the regions holding the annotated type in a local cache in front of the
+ * region. The {@code g2ql.nearCache.<Region>} system property overrides {@link #maximumBytes()}
+ * for a single region, 0 disabling the cache.
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface GeodeGraphQLNearCache {
+
+  /**
+   * The most bytes of values to keep, as estimated from the value: its own size if it is
+   * {@code Sizeable}, the length of strings and byte arrays, or {@link #entryBytes()}.
+   */
+  long maximumBytes() default 64 * 1024 * 1024;
+
+  /**
+   * The estimated size in bytes of a value that does not tell its own. Values are not sized by
+   * reflection, which the module system forbids on recent JDKs.
+   */
+  int entryBytes() default 1024;
+
+  /**
+   * Seconds after which a cached value is read again from the region, 0 to keep it until it
+   * changes or is evicted.
+   */
+  long expireAfterWriteSeconds() default 0;
+
+}
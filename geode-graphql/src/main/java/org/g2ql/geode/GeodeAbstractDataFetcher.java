@@ -1,8 +1,5 @@
 package org.g2ql.geode;
 
-import static org.apache.commons.beanutils.BeanUtils.populate;
-
-import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 
 import graphql.schema.DataFetcher;
@@ -38,9 +35,10 @@ public abstract class GeodeAbstractDataFetcher implements DataFetcher {
       } else if (arguments.size() > 0 && valueClass != null
           && arguments.containsKey(valueClass.getSimpleName())) {
         try {
-          value = valueClass.newInstance();
-          populate(value, (Map<String, Object>) arguments.get(valueClass.getSimpleName()));
-        } catch (InstantiationException | InvocationTargetException | IllegalAccessException e) {
+          Map<String, Object> properties =
+              (Map<String, Object>) arguments.get(valueClass.getSimpleName());
+          value = newValue(valueClass, properties);
+        } catch (IllegalArgumentException e) {
           e.printStackTrace();
         }
       }
@@ -48,11 +46,29 @@ public abstract class GeodeAbstractDataFetcher implements DataFetcher {
       if (value == null) {
         return "{}";
       }
-      return doOperation(key, value);
+      GeodeStatistics statistics = GeodeStatistics.region(cache, regionName);
+      long start = System.nanoTime();
+      try {
+        return doOperation(key, value);
+      } catch (RuntimeException e) {
+        statistics.increment(GeodeStatistics.MUTATION_FAILURES);
+        throw e;
+      } finally {
+        statistics.endTime(GeodeStatistics.MUTATIONS, GeodeStatistics.MUTATION_TIME, start);
+      }
     }
     return "{}";
   }
 
+  /**
+   * Creates a value of the given class with the properties of an input object.
+   *
+   * @throws IllegalArgumentException if the input does not fit the class
+   */
+  static Object newValue(Class<?> valueClass, Map<String, Object> properties) {
+    return GeodeInputBinder.of(valueClass).bind(properties);
+  }
+
   protected Region getRegion() {
     return cache.getRegion(regionName);
   }
@@ -0,0 +1,42 @@
+package org.g2ql.geode;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+
+/**
+ * Runs a blocking Geode data fetcher on an executor and returns its value as a
+ * {@link CompletableFuture}, so the sibling fields of a query read from Geode in parallel instead
+ * of one after another on the request thread.
+ */
+public class GeodeAsyncDataFetcher implements DataFetcher<CompletableFuture<Object>> {
+  private final DataFetcher<?> delegate;
+  private final Executor executor;
+
+  public GeodeAsyncDataFetcher(DataFetcher<?> delegate, Executor executor) {
+    this.delegate = delegate;
+    this.executor = executor;
+  }
+
+  /**
+   * Wraps the given fetcher to run on the shared {@link GeodeFetchExecutor}, or returns it as is if
+   * asynchronous fetching is disabled.
+   */
+  public static DataFetcher<?> async(DataFetcher<?> delegate) {
+    if (!GeodeFetchExecutor.isEnabled()) {
+      return delegate;
+    }
+    return new GeodeAsyncDataFetcher(delegate, GeodeFetchExecutor.getInstance());
+  }
+
+  public DataFetcher<?> getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public CompletableFuture<Object> get(DataFetchingEnvironment environment) {
+    return CompletableFuture.supplyAsync(() -> delegate.get(environment), executor);
+  }
+}
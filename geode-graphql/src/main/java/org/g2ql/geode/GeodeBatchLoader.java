@@ -0,0 +1,57 @@
+package org.g2ql.geode;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dataloader.BatchLoader;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+
+/**
+ * Loads every key requested for a region at one level of the query with a single
+ * {@link Region#getAll(java.util.Collection)} call. Values are returned in the order of the
+ * requested keys, missing keys resolve to {@code null}. The batches of different regions are read
+ * in parallel on the {@link GeodeFetchExecutor}.
+ */
+public class GeodeBatchLoader implements BatchLoader<Object, Object> {
+  private final static Logger logger = LogManager.getLogger(GeodeBatchLoader.class);
+
+  private Cache cache;
+  private String regionName;
+
+  public GeodeBatchLoader(Cache cache, String regionName) {
+    this.cache = cache;
+    this.regionName = regionName;
+  }
+
+  @Override
+  public CompletionStage<List<Object>> load(List<Object> keys) {
+    if (GeodeFetchExecutor.isEnabled()) {
+      return supplyAsync(() -> getAll(keys), GeodeFetchExecutor.getInstance());
+    }
+    return completedFuture(getAll(keys));
+  }
+
+  private List<Object> getAll(List<Object> keys) {
+    Set<Object> distinctKeys = new LinkedHashSet<>(keys);
+    logger.info("GeodeBatchLoader - getAll - region:" + regionName + ", keys:" + distinctKeys);
+    Region region = cache.getRegion(regionName);
+    Map<?, ?> values = GeodeNearCache.getAll(region, new ArrayList<>(distinctKeys));
+
+    List<Object> answer = new ArrayList<>(keys.size());
+    for (Object key : keys) {
+      answer.add(values.get(key));
+    }
+    return answer;
+  }
+}
@@ -0,0 +1,175 @@
+package org.g2ql.geode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.internal.cache.PutAllPartialResultException;
+import org.apache.geode.internal.cache.tier.sockets.VersionedObjectList;
+
+/**
+ * Applies a bulk mutation to a region in batches of {@link #BATCH_SIZE} entries, so every batch
+ * costs a single distribution message instead of one per entry.
+ *
+ * <p>
+ * The answer holds a status for every given entry, in the given order, with its {@code key}, a
+ * {@code status} of {@link #OK} or {@link #FAILED} and the {@code error} of the failed ones. When
+ * a batch fails, the entries it did not apply are applied one at a time to tell the failed entries
+ * from the others, unless the operation runs in a transaction, which the failure then rolls back.
+ *
+ * <p>
+ * Geode tells which entries a failed batch applied only for the operations of clients. A batch
+ * applied by this member fails with the first error it met, so all of its entries are applied
+ * again, and a bulk mutation outside a transaction applies every entry at least once: the
+ * listeners, writers and subscribers of the region may see an entry of a failed batch twice.
+ *
+ * <p>
+ * Every given entry is counted once in the statistics of the region, in {@code mutations} if it
+ * was applied and in {@code mutationFailures} if it failed. The entries of a transaction that
+ * failed are all counted as failures, as none of them is committed.
+ */
+public abstract class GeodeBulkDataFetcher implements DataFetcher<List<Map<String, Object>>> {
+  private final static Logger logger = LogManager.getLogger(GeodeBulkDataFetcher.class);
+
+  static final int BATCH_SIZE = Integer.getInteger("g2ql.bulkBatchSize", 1000);
+
+  public static final String OK = "OK";
+  public static final String FAILED = "FAILED";
+
+  private final Cache cache;
+  private final String regionName;
+  private final int batchSize;
+
+  protected GeodeBulkDataFetcher(Cache cache, String regionName, int batchSize) {
+    this.cache = cache;
+    this.regionName = regionName;
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  public String getRegionName() {
+    return regionName;
+  }
+
+  @Override
+  public List<Map<String, Object>> get(DataFetchingEnvironment environment) {
+    List<Map.Entry<Object, Object>> entries = getEntries(environment.getArguments());
+    Region<Object, Object> region = cache.getRegion(regionName);
+    GeodeStatistics statistics = GeodeStatistics.region(cache, regionName);
+    long start = System.nanoTime();
+    List<Map<String, Object>> statuses = null;
+    try {
+      statuses = apply(region, entries, environment);
+      return statuses;
+    } finally {
+      statistics.add(GeodeStatistics.MUTATION_TIME, System.nanoTime() - start);
+      if (statuses == null) {
+        // the operation failed as a whole, like a transaction rolling back every entry
+        statistics.add(GeodeStatistics.MUTATION_FAILURES, entries.size());
+      } else {
+        long failures =
+            statuses.stream().filter(status -> FAILED.equals(status.get("status"))).count();
+        statistics.add(GeodeStatistics.MUTATIONS, statuses.size() - failures);
+        statistics.add(GeodeStatistics.MUTATION_FAILURES, failures);
+      }
+    }
+  }
+
+  private List<Map<String, Object>> apply(Region<Object, Object> region,
+      List<Map.Entry<Object, Object>> entries, DataFetchingEnvironment environment) {
+    List<Map<String, Object>> statuses = new ArrayList<>(entries.size());
+    for (int from = 0; from < entries.size(); from += batchSize) {
+      List<Map.Entry<Object, Object>> batch =
+          entries.subList(from, Math.min(entries.size(), from + batchSize));
+      try {
+        applyAll(region, batch);
+        batch.forEach(entry -> statuses.add(status(entry.getKey(), null)));
+      } catch (Exception e) {
+        if (isTransactional(environment)) {
+          // a transaction commits every entry or none of them
+          throw new IllegalStateException(e.getMessage(), e);
+        }
+        Set<Object> applied = getAppliedKeys(e);
+        logger.info("GeodeBulkDataFetcher - batch of " + batch.size() + " entries failed in region "
+            + regionName + " after applying " + applied.size()
+            + " of them, applying the others one at a time", e);
+        for (Map.Entry<Object, Object> entry : batch) {
+          if (applied.contains(entry.getKey())) {
+            statuses.add(status(entry.getKey(), null));
+            continue;
+          }
+          try {
+            apply(region, entry);
+            statuses.add(status(entry.getKey(), null));
+          } catch (Exception entryFailure) {
+            statuses.add(status(entry.getKey(), entryFailure));
+          }
+        }
+      }
+    }
+    return statuses;
+  }
+
+  /**
+   * Returns the keys a failed batch applied, which Geode tells in a
+   * {@link PutAllPartialResultException}, possibly wrapped in a {@code ServerOperationException},
+   * or an empty set if it does not tell.
+   */
+  private static Set<Object> getAppliedKeys(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof PutAllPartialResultException) {
+        VersionedObjectList succeeded =
+            ((PutAllPartialResultException) cause).getSucceededKeysAndVersions();
+        if (succeeded == null || succeeded.getKeys() == null) {
+          return Collections.emptySet();
+        }
+        return new HashSet<>(succeeded.getKeys());
+      }
+    }
+    return Collections.emptySet();
+  }
+
+  private static boolean isTransactional(DataFetchingEnvironment environment) {
+    Object context = environment.getContext();
+    return context instanceof GeodeExecutionContext
+        && ((GeodeExecutionContext) context).isTransactional();
+  }
+
+  private static Map<String, Object> status(Object key, Exception failure) {
+    Map<String, Object> status = new LinkedHashMap<>();
+    status.put("key", key);
+    status.put("status", failure == null ? OK : FAILED);
+    if (failure != null) {
+      status.put("error", failure.getMessage() == null ? failure.getClass().getSimpleName()
+          : failure.getMessage());
+    }
+    return status;
+  }
+
+  /**
+   * Returns the entries given to the mutation, as key and input value pairs.
+   */
+  protected abstract List<Map.Entry<Object, Object>> getEntries(Map<String, Object> arguments);
+
+  /**
+   * Applies a batch of entries with a single bulk operation.
+   */
+  protected abstract void applyAll(Region<Object, Object> region,
+      List<Map.Entry<Object, Object>> batch) throws Exception;
+
+  /**
+   * Applies a single entry of a batch that failed.
+   */
+  protected abstract void apply(Region<Object, Object> region, Map.Entry<Object, Object> entry)
+      throws Exception;
+}
@@ -1,10 +1,11 @@
 package org.g2ql.geode;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import graphql.language.Field;
+import graphql.GraphQLException;
 import graphql.schema.DataFetcher;
 import graphql.schema.DataFetchingEnvironment;
 import org.apache.logging.log4j.LogManager;
@@ -23,61 +24,87 @@ public class GeodeCollectionTypeDataFetcher implements DataFetcher {
 
   private Cache cache;
   private String regionName;
+  private GeodeQueryCache queryCache;
 
-  public GeodeCollectionTypeDataFetcher(Cache cache, String regionName) {
+  public GeodeCollectionTypeDataFetcher(Cache cache, String regionName,
+      GeodeQueryCache queryCache) {
     this.cache = cache;
     this.regionName = regionName;
+    this.queryCache = queryCache;
+  }
+
+  public String getRegionName() {
+    return regionName;
   }
 
   @Override
   public Object get(DataFetchingEnvironment environment) {
     Map<String, Object> arguments = environment.getArguments();
-    Field field = environment.getFields().iterator().next();
-    if (arguments.size() > 0) {
-      String argumentName = field.getArguments().get(0).getName();
-      List<Object> predicates = (List<Object>) arguments.get(argumentName);
-      if (predicates.isEmpty()) {
+    Integer offset = (Integer) arguments.get(GeodePageDataFetcher.OFFSET);
+    Integer limit = (Integer) arguments.get(GeodePageDataFetcher.LIMIT);
+    int skip = offset == null ? 0 : Math.max(offset, 0);
+    if (skip >= GeodePageDataFetcher.MAX_RESULTS) {
+      throw new GraphQLException("The offset " + skip + " is past the "
+          + GeodePageDataFetcher.MAX_RESULTS + " values a list returns, page through "
+          + regionName + "sPage with first and after instead");
+    }
+    // the skipped values are read too, so at most MAX_RESULTS values are read in all
+    int take = Math.min(GeodePageDataFetcher.pageSize(limit),
+        GeodePageDataFetcher.MAX_RESULTS - skip);
+
+    List<Object> keys = (List<Object>) arguments.get("key");
+    if (keys != null) {
+      if (keys.size() > GeodePageDataFetcher.MAX_RESULTS) {
+        throw new GraphQLException("At most " + GeodePageDataFetcher.MAX_RESULTS
+            + " keys can be read at once, " + keys.size() + " were given");
+      }
+      if (keys.size() <= skip || take == 0) {
         return Collections.EMPTY_LIST;
       }
-      if (argumentName.equalsIgnoreCase("key")) {
-        logger.info("GeodeCollectionTypeDataFetcher - get - keys:" + predicates);
-        Region region = cache.getRegion(regionName);
-        return region.getAll(predicates).values();
-      } else {
-        logger.info("GeodeCollectionTypeDataFetcher - oql - where clause:" + argumentName
-            + ", predicate:" + predicates);
-        try {
-          String query = query(argumentName, predicates.size());
-          logger.info("GeodeCollectionTypeDataFetcher - oql query:" + query);
-          SelectResults results =
-              (SelectResults) cache.getQueryService().newQuery(query).execute(predicates.toArray());
-          if (results.isEmpty()) {
-            return Collections.EMPTY_LIST;
-          }
-          return results.asList();
-        } catch (QueryInvocationTargetException | NameResolutionException | FunctionDomainException
-            | TypeMismatchException e) {
-          return Collections.EMPTY_LIST;
-        }
+      keys = keys.subList(skip, Math.min(keys.size(), skip + take));
+      logger.info("GeodeCollectionTypeDataFetcher - get - keys:" + keys);
+      Region region = cache.getRegion(regionName);
+      return GeodeNearCache.getAll(region, keys).values();
+    }
+
+    // an unfiltered scan of the region has to be asked for with an explicit limit
+    GeodeWhereClause where = GeodeWhereClause.of(arguments);
+    if ((where.matchesAll() && limit == null) || where.matchesNothing() || take == 0) {
+      return Collections.EMPTY_LIST;
+    }
+    logger.info("GeodeCollectionTypeDataFetcher - oql - where clause:" + where + ", predicates:"
+        + Arrays.toString(where.getParameters()));
+    try {
+      GeodeProjection projection = GeodeProjection.of(environment);
+      String query = query(projection, where, GeodeQueryCache.bucket(skip + take));
+      logger.info("GeodeCollectionTypeDataFetcher - oql query:" + query);
+      SelectResults results = queryCache.execute(regionName, query, where.getParameters());
+      if (results.size() <= skip) {
+        return Collections.EMPTY_LIST;
       }
+      return new GeodeResultIterable(results, skip, take, projection::row);
+    } catch (QueryInvocationTargetException | NameResolutionException | FunctionDomainException
+        | TypeMismatchException e) {
+      return Collections.EMPTY_LIST;
     }
-    return Collections.EMPTY_LIST;
   }
 
-  private String query(String field, int args) {
+  /**
+   * The limit is rounded up like the bind parameters, so a few query shapes cover every page size
+   * and the extra rows are dropped here.
+   */
+  private String query(GeodeProjection projection, GeodeWhereClause where, int limit) {
     StringBuilder query = new StringBuilder();
-    query.append("SELECT DISTINCT * FROM /");
+    query.append(projection.select());
+    query.append(" FROM /");
     query.append(regionName);
-    query.append(" x where x.");
-    query.append(field);
-    query.append(" IN set(");
-    for (int i = 1; i <= args; i++) {
-      query.append("$" + i);
-      if (i < args) {
-        query.append(", ");
-      }
+    query.append(" x");
+    if (!where.matchesAll()) {
+      query.append(" where ");
+      query.append(where);
     }
-    query.append(")");
+    query.append(" LIMIT ");
+    query.append(limit);
     return query.toString();
   }
 }
@@ -7,7 +7,6 @@ import org.apache.geode.cache.Region;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -25,18 +24,27 @@ public class GeodeConnectionTypeDataFetcher implements DataFetcher {
     this.fieldName = fieldName;
   }
 
+  public String getRegionName() {
+    return regionName;
+  }
+
   @Override
   public Object get(DataFetchingEnvironment environment) {
     try {
       Object source = environment.getSource();
-      Field field = source.getClass().getDeclaredField(fieldName);
-      field.setAccessible(true);
-      List<?> keys = (List<?>) field.get(source);
+      List<?> keys = (List<?>) GeodePropertyDataFetcher.getField(source, fieldName);
       logger.info("GeodeConnectionTypeDataFetcher - get - keys:" + keys);
       if (keys == null || keys.isEmpty())
         return new ArrayList<>();
+
+      // batch with the sibling connections of this level when running inside an executor
+      Object context = environment.getContext();
+      if (context instanceof GeodeExecutionContext) {
+        return ((GeodeExecutionContext) context).getDataLoader(regionName)
+            .loadMany(new ArrayList<>(keys));
+      }
       Region region = cache.getRegion(regionName);
-      Map connections = region.getAll(keys);
+      Map connections = GeodeNearCache.getAll(region, keys);
       return connections.values();
     } catch (NoSuchFieldException e) {
       e.printStackTrace();
@@ -0,0 +1,209 @@
+package org.g2ql.geode;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import graphql.analysis.QueryTraversal;
+import graphql.analysis.QueryVisitorEnvironment;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.NoOpInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.schema.DataFetcher;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+
+/**
+ * Estimates what an operation costs the cache before it is executed, and rejects the operations
+ * over {@link #MAX_COST} while letting at most {@link #THROTTLE_PERMITS} operations over
+ * {@link #THROTTLE_COST} run at the same time. An expensive operation running on a request thread
+ * of a {@link GeodeVirtualThreadExecutor} gives its permit back before it waits for one of these,
+ * so the slow operations cannot take all the permits the fast ones need.
+ *
+ * <p>
+ * A key lookup costs one read, an OQL query costs {@link #QUERY_COST} reads plus a read per row,
+ * and the fields below a list are counted once per element. Lists are assumed to be as long as
+ * their {@code key} argument or their page size, but never longer than the region they read from.
+ * An OQL query with an offset reads the rows it skips too, so it costs
+ * {@code min(offset + limit, region size)} rows while only the rows past the offset are resolved.
+ * Connections are assumed to hold {@link #CONNECTION_FAN_OUT} keys, and bulk mutations cost a
+ * write per entry. Region sizes are sampled from the live cache at most once per
+ * {@link #REGION_SIZE_TTL_MILLIS}, since the size of a partitioned region is gathered from every
+ * member.
+ *
+ * <p>
+ * The estimate is made per execution instead of during validation, since documents found in the
+ * parsed document cache are not validated again.
+ */
+public class GeodeCostInstrumentation extends NoOpInstrumentation {
+  private final static Logger logger = LogManager.getLogger(GeodeCostInstrumentation.class);
+
+  static final double MAX_COST =
+      Double.parseDouble(System.getProperty("g2ql.maxQueryCost", "1e5"));
+  static final double THROTTLE_COST =
+      Double.parseDouble(System.getProperty("g2ql.throttleQueryCost", "1e4"));
+  static final int THROTTLE_PERMITS = Integer.getInteger("g2ql.throttlePermits",
+      Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+  static final long THROTTLE_TIMEOUT_MILLIS = Long.getLong("g2ql.throttleTimeoutMillis", 1000);
+  static final int CONNECTION_FAN_OUT = Integer.getInteger("g2ql.connectionFanOut", 10);
+  static final double QUERY_COST = 10;
+  static final long REGION_SIZE_TTL_MILLIS = 1000;
+
+  private final Semaphore expensiveOperations = new Semaphore(THROTTLE_PERMITS);
+  private final Map<String, long[]> regionSizes = new ConcurrentHashMap<>();
+
+  @Override
+  public ExecutionContext instrumentExecutionContext(ExecutionContext executionContext,
+      InstrumentationExecutionParameters parameters) {
+    Object context = executionContext.getContext();
+    if (!(context instanceof GeodeExecutionContext)) {
+      return executionContext;
+    }
+    GeodeExecutionContext geodeContext = (GeodeExecutionContext) context;
+    double cost = cost(executionContext, geodeContext.getCache());
+    geodeContext.setOperationCost(cost);
+    if (MAX_COST > 0 && cost > MAX_COST) {
+      logger.info("GeodeCostInstrumentation - rejecting operation of cost " + cost);
+      throw new AbortExecutionException(
+          "Query cost " + format(cost) + " exceeds the budget of " + format(MAX_COST));
+    }
+    if (THROTTLE_COST > 0 && cost > THROTTLE_COST) {
+      // counted against the cap of expensive operations instead of the cap of all requests
+      GeodeVirtualThreadExecutor.releaseCurrentPermit();
+      acquire(cost);
+      geodeContext.setThrottled(true);
+    }
+    return executionContext;
+  }
+
+  /**
+   * Returns the estimate of the operation as reported in its {@code cost} extension, or null if
+   * it was not estimated.
+   */
+  public static Map<String, Object> getCostExtension(GeodeExecutionContext context) {
+    if (context.getOperationCost() < 0) {
+      return null;
+    }
+    Map<String, Object> cost = new LinkedHashMap<>();
+    cost.put("estimated", context.getOperationCost());
+    cost.put("budget", MAX_COST);
+    cost.put("throttled", context.isThrottled());
+    return cost;
+  }
+
+  /**
+   * Gives back the permit of a throttled operation once it completed.
+   */
+  public void release(GeodeExecutionContext context) {
+    if (context.isThrottled()) {
+      context.setThrottled(false);
+      expensiveOperations.release();
+    }
+  }
+
+  private void acquire(double cost) {
+    try {
+      if (expensiveOperations.tryAcquire(THROTTLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    logger.info("GeodeCostInstrumentation - throttling operation of cost " + cost);
+    throw new AbortExecutionException("Too many expensive operations, the operation of cost "
+        + format(cost) + " was not run");
+  }
+
+  double cost(ExecutionContext executionContext, Cache cache) {
+    String operationName = executionContext.getOperationDefinition().getName();
+    QueryTraversal traversal = new QueryTraversal(executionContext.getGraphQLSchema(),
+        executionContext.getDocument(), operationName, executionContext.getVariables());
+    // the number of times each field is resolved, by the fields it is selected on
+    Map<QueryVisitorEnvironment, Double> fanOuts = new HashMap<>();
+    double[] total = new double[1];
+    traversal.visitPreOrder(environment -> {
+      QueryVisitorEnvironment parent = environment.getParentEnvironment();
+      double times = parent == null ? 1 : fanOuts.getOrDefault(parent, 1d);
+      DataFetcher<?> fetcher = environment.getFieldDefinition().getDataFetcher();
+      if (fetcher instanceof GeodeAsyncDataFetcher) {
+        fetcher = ((GeodeAsyncDataFetcher) fetcher).getDelegate();
+      }
+      double[] costAndFanOut = costAndFanOut(fetcher, environment.getArguments(), cache);
+      total[0] += times * costAndFanOut[0];
+      fanOuts.put(environment, times * costAndFanOut[1]);
+    });
+    return total[0];
+  }
+
+  /**
+   * Returns the reads a single resolution of a field costs and the number of values it resolves
+   * to.
+   */
+  private double[] costAndFanOut(DataFetcher<?> fetcher, Map<String, Object> arguments,
+      Cache cache) {
+    if (fetcher instanceof GeodeDataFetcher) {
+      return new double[] {arguments.get("key") != null ? 1 : QUERY_COST + 1, 1};
+    }
+    if (fetcher instanceof GeodeCollectionTypeDataFetcher) {
+      Integer offset = (Integer) arguments.get(GeodePageDataFetcher.OFFSET);
+      Integer limit = (Integer) arguments.get(GeodePageDataFetcher.LIMIT);
+      long skip = offset == null ? 0 : Math.max(offset, 0);
+      long take = GeodePageDataFetcher.pageSize(limit);
+      List<?> keys = (List<?>) arguments.get("key");
+      if (keys != null) {
+        double rows = Math.max(0, Math.min(keys.size() - skip, take));
+        return new double[] {rows, rows};
+      }
+      // the skipped rows are read as well, only the rows past them are resolved
+      String regionName = ((GeodeCollectionTypeDataFetcher) fetcher).getRegionName();
+      long regionSize = regionSize(cache, regionName);
+      double read = Math.min(skip + take, regionSize);
+      double rows = Math.max(0, Math.min(take, regionSize - skip));
+      return new double[] {QUERY_COST + read, rows};
+    }
+    if (fetcher instanceof GeodePageDataFetcher) {
+      Integer requested = (Integer) arguments.get(GeodePageDataFetcher.FIRST);
+      int first = GeodePageDataFetcher.pageSize(requested);
+      String regionName = ((GeodePageDataFetcher) fetcher).getRegionName();
+      double rows = Math.min(first, regionSize(cache, regionName));
+      return new double[] {QUERY_COST + rows, rows};
+    }
+    if (fetcher instanceof GeodeConnectionTypeDataFetcher) {
+      String regionName = ((GeodeConnectionTypeDataFetcher) fetcher).getRegionName();
+      double rows = Math.min(CONNECTION_FAN_OUT, regionSize(cache, regionName));
+      return new double[] {rows, rows};
+    }
+    if (fetcher instanceof GeodeBulkDataFetcher) {
+      List<?> entries = (List<?>) arguments.getOrDefault("entries", arguments.get("keys"));
+      return new double[] {entries == null ? 0 : entries.size(), 1};
+    }
+    if (fetcher instanceof GeodeAbstractDataFetcher) {
+      return new double[] {1, 1};
+    }
+    // properties of values already read, including the edges and nodes of a page
+    return new double[] {0, 1};
+  }
+
+  private long regionSize(Cache cache, String regionName) {
+    long now = System.currentTimeMillis();
+    long[] sample = regionSizes.get(regionName);
+    if (sample == null || now - sample[1] > REGION_SIZE_TTL_MILLIS) {
+      Region<?, ?> region = cache == null ? null : cache.getRegion(regionName);
+      sample = new long[] {region == null ? 0 : region.size(), now};
+      regionSizes.put(regionName, sample);
+    }
+    return sample[0];
+  }
+
+  private static String format(double cost) {
+    return String.valueOf(Math.round(cost));
+  }
+}
@@ -1,8 +1,8 @@
 package org.g2ql.geode;
 
+import java.util.Arrays;
 import java.util.Map;
 
-import graphql.language.Field;
 import graphql.schema.DataFetcher;
 import graphql.schema.DataFetchingEnvironment;
 import org.apache.logging.log4j.LogManager;
@@ -21,52 +21,62 @@ public class GeodeDataFetcher implements DataFetcher {
 
   private Cache cache;
   private String regionName;
+  private GeodeQueryCache queryCache;
 
-  public GeodeDataFetcher(Cache cache, String regionName) {
+  public GeodeDataFetcher(Cache cache, String regionName, GeodeQueryCache queryCache) {
     this.cache = cache;
     this.regionName = regionName;
+    this.queryCache = queryCache;
+  }
+
+  public String getRegionName() {
+    return regionName;
   }
 
   @Override
   public Object get(DataFetchingEnvironment environment) {
     Map<String, Object> arguments = environment.getArguments();
-    Field field = environment.getFields().iterator().next();
-    if (arguments.size() > 0) {
-      String argumentName = field.getArguments().get(0).getName();
-      Object predicate = arguments.get(argumentName);
-      if (predicate == null) {
-        return "{}";
+    Object key = arguments.get("key");
+    if (key != null) {
+      logger.info("GeodeDataFetcher - get - key:" + key);
+      Region<Object, Object> region = cache.getRegion(regionName);
+      // only root lookups tell where the whole operation is best served
+      Object context = environment.getContext();
+      if (context instanceof GeodeExecutionContext
+          && environment.getParentType() == environment.getGraphQLSchema().getQueryType()) {
+        ((GeodeExecutionContext) context).routeKey(region, key);
       }
-      if (argumentName.equalsIgnoreCase("key")) {
-        logger.info("GeodeDataFetcher - get - key:" + predicate);
-        Region region = cache.getRegion(regionName);
-        return region.get(predicate);
-      } else {
-        logger.info("GeodeCollectionTypeDataFetcher - query - where clause:" + argumentName
-            + ", predicate:" + predicate);
-        try {
-          SelectResults results = (SelectResults) cache.getQueryService()
-              .newQuery(query(argumentName)).execute(predicate);
-          if (results.isEmpty()) {
-            return "{}";
-          }
-          return results.asList().get(0);
-        } catch (QueryInvocationTargetException | NameResolutionException | FunctionDomainException
-            | TypeMismatchException e) {
-          return "{}";
-        }
+      return GeodeNearCache.get(region, key);
+    }
+
+    GeodeWhereClause where = GeodeWhereClause.of(arguments);
+    if (where.matchesAll() || where.matchesNothing()) {
+      return "{}";
+    }
+    logger.info("GeodeDataFetcher - query - where clause:" + where + ", predicates:"
+        + Arrays.toString(where.getParameters()));
+    try {
+      GeodeProjection projection = GeodeProjection.of(environment);
+      SelectResults results =
+          queryCache.execute(regionName, query(projection, where), where.getParameters());
+      if (results.isEmpty()) {
+        return "{}";
       }
+      return projection.row(results.iterator().next());
+    } catch (QueryInvocationTargetException | NameResolutionException | FunctionDomainException
+        | TypeMismatchException e) {
+      return "{}";
     }
-    return "{}";
   }
 
-  private String query(String field) {
+  private String query(GeodeProjection projection, GeodeWhereClause where) {
     StringBuilder query = new StringBuilder();
-    query.append("SELECT DISTINCT * FROM /");
+    query.append(projection.select());
+    query.append(" FROM /");
     query.append(regionName);
-    query.append(" x where x.");
-    query.append(field);
-    query.append("=$1");
+    query.append(" x where ");
+    query.append(where);
+    query.append(" LIMIT 1");
 
     return query.toString();
   }
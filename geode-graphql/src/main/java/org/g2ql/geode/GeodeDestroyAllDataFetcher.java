@@ -0,0 +1,46 @@
+package org.g2ql.geode;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+
+/**
+ * Removes the {@code keys} of a bulk mutation from a region with {@link Region#removeAll}. Keys
+ * that are not in the region are reported as removed.
+ */
+public class GeodeDestroyAllDataFetcher extends GeodeBulkDataFetcher {
+  public GeodeDestroyAllDataFetcher(Cache cache, String regionName) {
+    this(cache, regionName, BATCH_SIZE);
+  }
+
+  GeodeDestroyAllDataFetcher(Cache cache, String regionName, int batchSize) {
+    super(cache, regionName, batchSize);
+  }
+
+  @Override
+  protected List<Map.Entry<Object, Object>> getEntries(Map<String, Object> arguments) {
+    @SuppressWarnings("unchecked")
+    List<Object> keys = (List<Object>) arguments.get("keys");
+    if (keys == null) {
+      return Collections.emptyList();
+    }
+    return keys.stream()
+        .<Map.Entry<Object, Object>>map(key -> new AbstractMap.SimpleEntry<>(key, null))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  protected void applyAll(Region<Object, Object> region, List<Map.Entry<Object, Object>> batch) {
+    region.removeAll(batch.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+  }
+
+  @Override
+  protected void apply(Region<Object, Object> region, Map.Entry<Object, Object> entry) {
+    region.remove(entry.getKey());
+  }
+}
@@ -24,7 +24,16 @@ public class GeodeDestroyDataFetcher implements DataFetcher {
     if (arguments.containsKey("key")) {
       Object key = arguments.get("key");
       Region region = cache.getRegion(regionName);
-      return region.destroy(key);
+      GeodeStatistics statistics = GeodeStatistics.region(cache, regionName);
+      long start = System.nanoTime();
+      try {
+        return region.destroy(key);
+      } catch (RuntimeException e) {
+        statistics.increment(GeodeStatistics.MUTATION_FAILURES);
+        throw e;
+      } finally {
+        statistics.endTime(GeodeStatistics.MUTATIONS, GeodeStatistics.MUTATION_TIME, start);
+      }
     }
     return "{}";
   }
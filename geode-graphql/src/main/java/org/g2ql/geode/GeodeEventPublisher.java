@@ -0,0 +1,305 @@
+package org.g2ql.geode;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * The changes of a region seen by a single subscriber, as maps with the {@code key} of the entry,
+ * the {@code operation} and the new {@code value}.
+ *
+ * <p>
+ * Changes are offered by the {@link GeodeRegionEvents} listener of the region, which never blocks,
+ * and are delivered on a subscription thread only as far as the subscriber requested them. Until
+ * then they wait in a queue holding the latest change per key, so a subscriber that falls behind
+ * receives the current value of a hot key once instead of every value it went through. A queue
+ * holding more than {@code g2ql.subscriptionQueueSize} keys, 1000 by default, ends the
+ * subscription with an error, and the subscriber has to subscribe again.
+ *
+ * <p>
+ * Changes are filtered on their keys and on a {@link GeodeWhereClause} like the results of a
+ * continuous query. An update of a value that no longer matches the filter is delivered as a
+ * {@link #DESTROY} without a value. Geode does not always tell the old value of a change, e.g. to
+ * the members not hosting the entry, so a destroy or an update to a value out of the filter whose
+ * old value is unknown is delivered as a {@link #DESTROY} too: the subscriber drops a key it may
+ * not hold, rather than keep one that left the filter.
+ */
+public class GeodeEventPublisher implements Publisher<Map<String, Object>> {
+  private final static Logger logger = LogManager.getLogger(GeodeEventPublisher.class);
+
+  static final int QUEUE_SIZE = Integer.getInteger("g2ql.subscriptionQueueSize", 1000);
+  static final int THREADS =
+      Integer.getInteger("g2ql.subscriptionThreads", Runtime.getRuntime().availableProcessors());
+
+  public static final String CREATE = "CREATE";
+  public static final String UPDATE = "UPDATE";
+  public static final String DESTROY = "DESTROY";
+  public static final String INVALIDATE = "INVALIDATE";
+
+  private static volatile ExecutorService executor;
+
+  private final GeodeRegionEvents events;
+  private final Collection<?> keys;
+  private final GeodeWhereClause filter;
+  private final Runnable beforeEach;
+  private final int capacity;
+  private final Executor deliveries;
+
+  // the latest change of every key not delivered yet, in the order the keys first changed
+  private final LinkedHashMap<Object, Map<String, Object>> pending = new LinkedHashMap<>();
+  private Throwable failure;
+  private boolean completed;
+  private long coalesced;
+
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+  private final AtomicLong demand = new AtomicLong();
+  private final AtomicInteger scheduled = new AtomicInteger();
+  private volatile Subscriber<? super Map<String, Object>> subscriber;
+  private volatile boolean cancelled;
+
+  GeodeEventPublisher(GeodeRegionEvents events, Collection<?> keys, GeodeWhereClause filter,
+      Runnable beforeEach, int capacity, Executor deliveries) {
+    this.events = events;
+    this.keys = keys;
+    this.filter = filter;
+    this.beforeEach = beforeEach;
+    this.capacity = capacity;
+    this.deliveries = deliveries;
+  }
+
+  /**
+   * Returns the pool changes are delivered on, starting it on first use. The pool has
+   * {@code g2ql.subscriptionThreads} threads, the number of processors by default. A delivery only
+   * starts the write of a change to the connection of the subscriber, which requests the next
+   * change once it is written, so a few threads serve any number of subscribers. Its queue holds
+   * at most one delivery per subscription.
+   */
+  static Executor getExecutor() {
+    if (executor == null) {
+      synchronized (GeodeEventPublisher.class) {
+        if (executor == null) {
+          logger.info("GeodeEventPublisher - starting " + THREADS + " subscription threads");
+          AtomicInteger count = new AtomicInteger();
+          executor = Executors.newFixedThreadPool(Math.max(THREADS, 1), runnable -> {
+            Thread thread = new Thread(runnable, "g2ql-subscription-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+        }
+      }
+    }
+    return executor;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super Map<String, Object>> subscriber) {
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Subscription() {
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+      });
+      subscriber.onError(new IllegalStateException("Changes are published to one subscriber"));
+      return;
+    }
+    this.subscriber = subscriber;
+    events.add(this);
+    subscriber.onSubscribe(new Subscription() {
+      @Override
+      public void request(long n) {
+        GeodeEventPublisher.this.request(n);
+      }
+
+      @Override
+      public void cancel() {
+        GeodeEventPublisher.this.cancel();
+      }
+    });
+  }
+
+  /**
+   * Queues a change of the region if it passes the filter. Called by the listener of the region.
+   */
+  void offer(Object key, String operation, Object newValue, Object oldValue) {
+    if (cancelled || (keys != null && !keys.contains(key))) {
+      return;
+    }
+    String delivered = operation;
+    Object value = null;
+    if (operation.equals(DESTROY) || operation.equals(INVALIDATE)) {
+      // without the old value, the subscriber may hold the key
+      if (oldValue != null && !filter.matchesAll() && !filter.matches(oldValue)) {
+        return;
+      }
+    } else if (filter.matches(newValue)) {
+      value = newValue;
+    } else if (filter.matches(oldValue)
+        || (oldValue == null && operation.equals(UPDATE))) {
+      delivered = DESTROY;
+    } else {
+      return;
+    }
+    Map<String, Object> event = new LinkedHashMap<>();
+    event.put("key", key);
+    event.put("operation", delivered);
+    event.put("value", value);
+    synchronized (pending) {
+      if (failure != null || completed) {
+        return;
+      }
+      Map<String, Object> previous = pending.get(key);
+      if (previous != null) {
+        // a value created since the last delivery is still new to the subscriber
+        if (previous.get("operation").equals(CREATE) && delivered.equals(UPDATE)) {
+          event.put("operation", CREATE);
+        }
+        coalesced++;
+      } else if (pending.size() >= capacity) {
+        logger.info("GeodeEventPublisher - ending a subscription to region "
+            + events.getRegionName() + " more than " + capacity + " keys behind");
+        failure = new IllegalStateException("Subscriber fell more than " + capacity
+            + " changed keys behind region " + events.getRegionName());
+        pending.clear();
+      }
+      if (failure == null) {
+        // replacing the change of a key keeps its place in the queue
+        pending.put(key, event);
+      }
+    }
+    schedule();
+  }
+
+  /**
+   * Ends the subscription once the pending changes are delivered, e.g. when the region is
+   * destroyed.
+   */
+  void complete() {
+    synchronized (pending) {
+      completed = true;
+    }
+    schedule();
+  }
+
+  /**
+   * Returns the number of keys waiting to be delivered.
+   */
+  public int getPendingCount() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  /**
+   * Returns the number of changes replaced by a later change of the same key before they were
+   * delivered.
+   */
+  public long getCoalescedCount() {
+    synchronized (pending) {
+      return coalesced;
+    }
+  }
+
+  private void request(long n) {
+    if (n <= 0) {
+      synchronized (pending) {
+        failure = new IllegalArgumentException("Requested " + n + " changes, must be positive");
+      }
+    } else {
+      demand.accumulateAndGet(n, (current, added) -> {
+        long sum = current + added;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+      });
+    }
+    schedule();
+  }
+
+  private void cancel() {
+    cancelled = true;
+    events.remove(this);
+    synchronized (pending) {
+      pending.clear();
+    }
+  }
+
+  private void schedule() {
+    if (scheduled.getAndIncrement() == 0) {
+      deliveries.execute(this::deliver);
+    }
+  }
+
+  /**
+   * Delivers as many pending changes as requested, on one thread at a time.
+   */
+  private void deliver() {
+    int missed = 1;
+    while (true) {
+      while (!cancelled && demand.get() > 0) {
+        Map<String, Object> event = poll();
+        if (event == null) {
+          break;
+        }
+        if (demand.get() != Long.MAX_VALUE) {
+          demand.decrementAndGet();
+        }
+        try {
+          if (beforeEach != null) {
+            beforeEach.run();
+          }
+          subscriber.onNext(event);
+        } catch (RuntimeException e) {
+          logger.warn("GeodeEventPublisher - subscriber failed, cancelling its subscription", e);
+          cancel();
+        }
+      }
+      if (cancelled) {
+        return;
+      }
+      Throwable error;
+      boolean done;
+      synchronized (pending) {
+        error = failure;
+        done = completed && pending.isEmpty();
+      }
+      if (error != null || done) {
+        cancel();
+        if (error != null) {
+          subscriber.onError(error);
+        } else {
+          subscriber.onComplete();
+        }
+        return;
+      }
+      missed = scheduled.addAndGet(-missed);
+      if (missed == 0) {
+        return;
+      }
+    }
+  }
+
+  private Map<String, Object> poll() {
+    synchronized (pending) {
+      Iterator<Map<String, Object>> iterator = pending.values().iterator();
+      if (!iterator.hasNext()) {
+        return null;
+      }
+      Map<String, Object> event = iterator.next();
+      iterator.remove();
+      return event;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package org.g2ql.geode;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.partition.PartitionRegionHelper;
+import org.apache.geode.distributed.DistributedMember;
+
+/**
+ * Per-request state shared by the Geode data fetchers of a single GraphQL operation. An instance
+ * is passed as the execution context and must not be reused across operations, since the data
+ * loaders it holds cache every value they have read.
+ */
+public class GeodeExecutionContext {
+  static final boolean ROUTING_HINTS_DISABLED = Boolean.getBoolean("g2ql.disableRoutingHints");
+
+  private final Cache cache;
+  private final DataLoaderRegistry dataLoaderRegistry = new DataLoaderRegistry();
+
+  // the members hosting a copy of every key looked up so far
+  private Set<DistributedMember> preferredMembers;
+  private boolean localKeys;
+
+  private volatile double operationCost = -1;
+  private volatile boolean throttled;
+  private volatile boolean transactional;
+
+  public GeodeExecutionContext(Cache cache) {
+    this.cache = cache;
+  }
+
+  public Cache getCache() {
+    return cache;
+  }
+
+  public DataLoaderRegistry getDataLoaderRegistry() {
+    return dataLoaderRegistry;
+  }
+
+  /**
+   * Returns the data loader reading from the given region, creating it on first use.
+   */
+  public synchronized DataLoader<Object, Object> getDataLoader(String regionName) {
+    DataLoader<Object, Object> dataLoader = dataLoaderRegistry.getDataLoader(regionName);
+    if (dataLoader == null) {
+      dataLoader = DataLoader.newDataLoader(new GeodeBatchLoader(cache, regionName));
+      dataLoaderRegistry.register(regionName, dataLoader);
+    }
+    return dataLoader;
+  }
+
+  /**
+   * Forgets the values read by the data loaders, for operations that resolve fields more than
+   * once like subscriptions.
+   */
+  public synchronized void clearDataLoaders() {
+    dataLoaderRegistry.getDataLoaders().forEach(DataLoader::clearAll);
+  }
+
+  /**
+   * Returns the estimated cost of the operation, or a negative value if it was not estimated.
+   */
+  public double getOperationCost() {
+    return operationCost;
+  }
+
+  public void setOperationCost(double operationCost) {
+    this.operationCost = operationCost;
+  }
+
+  /**
+   * Returns true if the operation holds one of the permits limiting concurrent expensive
+   * operations, which it has to give back once it completed.
+   */
+  public boolean isThrottled() {
+    return throttled;
+  }
+
+  public void setThrottled(boolean throttled) {
+    this.throttled = throttled;
+  }
+
+  /**
+   * Returns true if the operation runs inside a transaction, which its fields must not hide
+   * failures from.
+   */
+  public boolean isTransactional() {
+    return transactional;
+  }
+
+  public void setTransactional(boolean transactional) {
+    this.transactional = transactional;
+  }
+
+  /**
+   * Records the members hosting a copy of a key looked up by a root query field, its primary or
+   * a redundant one. Lookups in regions that are not partitioned are served locally by every
+   * member and are ignored.
+   */
+  public void routeKey(Region<Object, Object> region, Object key) {
+    if (ROUTING_HINTS_DISABLED || !PartitionRegionHelper.isPartitionedRegion(region)) {
+      return;
+    }
+    Set<DistributedMember> members = PartitionRegionHelper.getAllMembersForKey(region, key);
+    if (!members.isEmpty()) {
+      routeTo(members);
+    }
+  }
+
+  synchronized void routeTo(Set<DistributedMember> members) {
+    if (members.contains(cache.getDistributedSystem().getDistributedMember())) {
+      localKeys = true;
+    } else if (preferredMembers == null) {
+      preferredMembers = new LinkedHashSet<>(members);
+    } else {
+      preferredMembers.retainAll(members);
+    }
+  }
+
+  /**
+   * Returns a member hosting a copy of every key looked up by the operation, as a map with its
+   * {@code member} name and {@code host}, or null if one of the keys is hosted here or no member
+   * hosts them all. Every member serves GraphQL on the same port, so the host is enough for a
+   * client to send the next operation on the same keys there.
+   */
+  public synchronized Map<String, Object> getRoutingHint() {
+    if (localKeys || preferredMembers == null || preferredMembers.isEmpty()) {
+      return null;
+    }
+    DistributedMember preferredMember = preferredMembers.iterator().next();
+    Map<String, Object> hint = new LinkedHashMap<>();
+    hint.put("member", preferredMember.getName());
+    hint.put("host", preferredMember.getHost());
+    return hint;
+  }
+}
@@ -0,0 +1,92 @@
+package org.g2ql.geode;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The bounded pool the asynchronous data fetchers read from Geode on, shared by every schema of
+ * the member.
+ *
+ * <p>
+ * The pool has {@code g2ql.fetchThreads} threads, twice the number of processors by default, and
+ * queues up to {@code g2ql.fetchQueueSize} reads. When the queue is full the read runs on the
+ * calling request thread, which slows down the requests that overload the pool instead of failing
+ * them. Setting {@code g2ql.fetchThreads} to 0 disables asynchronous fetching.
+ *
+ * <p>
+ * With {@code g2ql.virtualFetchers} set on Java 21 or later, every read runs on its own virtual
+ * thread instead, {@code g2ql.fetchThreads} of them at a time, and the reads over that cap run on
+ * the calling thread like the reads over the queue of the pool. Starting a thread per read waiting
+ * for its turn would let a burst of requests start as many threads as it has fields.
+ */
+public class GeodeFetchExecutor {
+  private final static Logger logger = LogManager.getLogger(GeodeFetchExecutor.class);
+
+  static final int THREADS =
+      Integer.getInteger("g2ql.fetchThreads", 2 * Runtime.getRuntime().availableProcessors());
+  static final int QUEUE_SIZE = Integer.getInteger("g2ql.fetchQueueSize", 1000);
+  static final boolean VIRTUAL = Boolean.getBoolean("g2ql.virtualFetchers");
+
+  private static volatile Executor instance;
+
+  private GeodeFetchExecutor() {}
+
+  /**
+   * Returns true if data fetchers should read from Geode on the shared pool.
+   */
+  public static boolean isEnabled() {
+    return THREADS > 0;
+  }
+
+  /**
+   * Returns the shared pool, or the virtual thread executor, starting it on first use.
+   */
+  public static Executor getInstance() {
+    if (instance == null) {
+      synchronized (GeodeFetchExecutor.class) {
+        if (instance == null && VIRTUAL) {
+          GeodeVirtualThreadExecutor virtual =
+              GeodeVirtualThreadExecutor.createIfAvailable("g2ql-fetch-", THREADS, 0);
+          if (virtual != null) {
+            instance = task -> {
+              try {
+                virtual.execute(task);
+              } catch (RejectedExecutionException e) {
+                task.run();
+              }
+            };
+          }
+        }
+        if (instance == null) {
+          logger.info("GeodeFetchExecutor - starting " + THREADS + " fetch threads, queue size "
+              + QUEUE_SIZE);
+          ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60,
+              TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), new FetchThreadFactory(),
+              new ThreadPoolExecutor.CallerRunsPolicy());
+          executor.allowCoreThreadTimeOut(true);
+          instance = executor;
+        }
+      }
+    }
+    return instance;
+  }
+
+  private static class FetchThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "g2ql-fetch-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
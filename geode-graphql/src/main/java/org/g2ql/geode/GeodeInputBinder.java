@@ -0,0 +1,267 @@
+package org.g2ql.geode;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Creates instances of a value class from the input objects of mutations. The constructor and the
+ * setter of every property are looked up once per class as {@link MethodHandle}s, and input values
+ * already coerced by their GraphQL scalar are only narrowed to the numeric type of their property,
+ * instead of looking the properties up and converting the values through strings on every call
+ * like commons-beanutils does.
+ *
+ * <p>
+ * Instances are created with the constructor without parameters, or else with the constructor
+ * taking every field of the class in declaration order. Properties are then set through their
+ * public setter, or directly if they have none. Input objects given for embedded classes are bound
+ * by the binder of that class, which creates instances of inner classes with the enclosing
+ * instance. Input fields without a property are ignored.
+ */
+public class GeodeInputBinder {
+  private static final Map<Class<?>, GeodeInputBinder> binders = new ConcurrentHashMap<>();
+  private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+  private final Class<?> valueClass;
+  private final boolean inner;
+  private final Map<String, Property> properties = new LinkedHashMap<>();
+  private final MethodHandle constructor;
+  // the properties passed to the constructor, or null if it has no parameters
+  private final List<Property> constructorProperties;
+
+  GeodeInputBinder(Class<?> valueClass) {
+    this.valueClass = valueClass;
+    Class<?> enclosingClass = valueClass.getEnclosingClass();
+    this.inner = enclosingClass != null && !Modifier.isStatic(valueClass.getModifiers());
+
+    List<Property> declared = new ArrayList<>();
+    for (Class<?> type = valueClass; type != null && type != Object.class;
+        type = type.getSuperclass()) {
+      for (Field field : type.getDeclaredFields()) {
+        if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()
+            || properties.containsKey(field.getName())) {
+          continue;
+        }
+        Property property = new Property(field);
+        properties.put(field.getName(), property);
+        if (type == valueClass) {
+          declared.add(property);
+        }
+      }
+    }
+
+    List<Class<?>> parameterTypes = new ArrayList<>();
+    if (inner) {
+      parameterTypes.add(enclosingClass);
+    }
+    MethodHandle noParameters = constructor(parameterTypes);
+    if (noParameters != null) {
+      this.constructor =
+          noParameters.asType(MethodType.methodType(Object.class, genericTypes(parameterTypes)));
+      this.constructorProperties = null;
+    } else {
+      declared.forEach(property -> parameterTypes.add(property.type));
+      MethodHandle allFields = constructor(parameterTypes);
+      if (allFields == null) {
+        throw new IllegalArgumentException("Class " + valueClass.getName()
+            + " has neither a constructor without parameters nor one taking all its fields");
+      }
+      this.constructor =
+          allFields.asType(MethodType.methodType(Object.class, genericTypes(parameterTypes)))
+              .asSpreader(Object[].class, parameterTypes.size());
+      declared.forEach(property -> property.constructorParameter = true);
+      this.constructorProperties = declared;
+    }
+  }
+
+  /**
+   * Returns the binder of the given class, creating it on first use.
+   */
+  public static GeodeInputBinder of(Class<?> valueClass) {
+    GeodeInputBinder binder = binders.get(valueClass);
+    if (binder == null) {
+      binder = new GeodeInputBinder(valueClass);
+      GeodeInputBinder existing = binders.putIfAbsent(valueClass, binder);
+      if (existing != null) {
+        binder = existing;
+      }
+    }
+    return binder;
+  }
+
+  public Class<?> getValueClass() {
+    return valueClass;
+  }
+
+  /**
+   * Creates an instance of the value class with the given input object.
+   *
+   * @throws IllegalArgumentException if an input value does not fit its property, or the value
+   *         class is an inner class
+   */
+  public Object bind(Map<String, Object> input) {
+    if (inner) {
+      throw new IllegalArgumentException(
+          "Inner class " + valueClass.getName() + " can only be bound within its enclosing class");
+    }
+    return bind(input, null);
+  }
+
+  private Object bind(Map<String, Object> input, Object enclosing) {
+    Map<String, Object> values = input == null ? Collections.emptyMap() : input;
+    Object value = newInstance(values, enclosing);
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      Property property = properties.get(entry.getKey());
+      if (property != null && !property.constructorParameter) {
+        property.set(value, entry.getValue());
+      }
+    }
+    return value;
+  }
+
+  private Object newInstance(Map<String, Object> values, Object enclosing) {
+    try {
+      if (constructorProperties == null) {
+        return inner ? constructor.invokeExact(enclosing) : constructor.invokeExact();
+      }
+      int offset = inner ? 1 : 0;
+      Object[] arguments = new Object[offset + constructorProperties.size()];
+      if (inner) {
+        arguments[0] = enclosing;
+      }
+      for (int i = 0; i < constructorProperties.size(); i++) {
+        Property property = constructorProperties.get(i);
+        // embedded inner values of the instance being created get no enclosing instance
+        arguments[offset + i] = property.toValue(values.get(property.name), null);
+      }
+      return constructor.invokeExact(arguments);
+    } catch (IllegalArgumentException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new IllegalArgumentException("Could not create a " + valueClass.getName(), t);
+    }
+  }
+
+  private MethodHandle constructor(List<Class<?>> parameterTypes) {
+    try {
+      Constructor<?> constructor =
+          valueClass.getDeclaredConstructor(parameterTypes.toArray(new Class<?>[0]));
+      constructor.setAccessible(true);
+      return lookup.unreflectConstructor(constructor);
+    } catch (ReflectiveOperationException | SecurityException e) {
+      return null;
+    }
+  }
+
+  private static Class<?>[] genericTypes(List<Class<?>> parameterTypes) {
+    Class<?>[] types = new Class<?>[parameterTypes.size()];
+    Arrays.fill(types, Object.class);
+    return types;
+  }
+
+  private static class Property {
+    private final String name;
+    private final Class<?> type;
+    // null if the property can only be given to the constructor
+    private final MethodHandle setter;
+    private final Function<Object, Object> conversion;
+    private boolean constructorParameter;
+
+    Property(Field field) {
+      this.name = field.getName();
+      this.type = field.getType();
+      this.setter = setter(field);
+      this.conversion = conversion(type);
+    }
+
+    void set(Object target, Object inputValue) {
+      if (setter == null || (inputValue == null && type.isPrimitive())) {
+        return;
+      }
+      Object value = toValue(inputValue, target);
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable t) {
+        throw new IllegalArgumentException("Could not set " + name + " to " + inputValue, t);
+      }
+    }
+
+    /**
+     * Converts an input value to the type of the property, or to its default if it is missing.
+     */
+    Object toValue(Object inputValue, Object enclosing) {
+      if (inputValue == null) {
+        return type.isPrimitive() ? conversion.apply(0) : null;
+      }
+      if (inputValue instanceof Map && !Map.class.isAssignableFrom(type)) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> fields = (Map<String, Object>) inputValue;
+        return of(type).bind(fields, enclosing);
+      }
+      try {
+        return conversion.apply(inputValue);
+      } catch (ClassCastException e) {
+        throw new IllegalArgumentException("Could not set " + name + " to " + inputValue, e);
+      }
+    }
+
+    private static MethodHandle setter(Field field) {
+      String name = "set" + Character.toUpperCase(field.getName().charAt(0))
+          + field.getName().substring(1);
+      MethodType genericSetter = MethodType.methodType(void.class, Object.class, Object.class);
+      try {
+        Method method = field.getDeclaringClass().getMethod(name, field.getType());
+        method.setAccessible(true);
+        return lookup.unreflect(method).asType(genericSetter);
+      } catch (ReflectiveOperationException | SecurityException e) {
+        // no public setter, set the field itself
+      }
+      if (Modifier.isFinal(field.getModifiers())) {
+        return null;
+      }
+      try {
+        field.setAccessible(true);
+        return lookup.unreflectSetter(field).asType(genericSetter);
+      } catch (ReflectiveOperationException | SecurityException e) {
+        return null;
+      }
+    }
+
+    /**
+     * Narrows the numbers coerced by the GraphQL scalars to the type of the property.
+     */
+    private static Function<Object, Object> conversion(Class<?> type) {
+      if (type == int.class || type == Integer.class) {
+        return value -> ((Number) value).intValue();
+      } else if (type == long.class || type == Long.class) {
+        return value -> ((Number) value).longValue();
+      } else if (type == short.class || type == Short.class) {
+        return value -> ((Number) value).shortValue();
+      } else if (type == byte.class || type == Byte.class) {
+        return value -> ((Number) value).byteValue();
+      } else if (type == float.class || type == Float.class) {
+        return value -> ((Number) value).floatValue();
+      } else if (type == double.class || type == Double.class) {
+        return value -> ((Number) value).doubleValue();
+      } else if (type == boolean.class) {
+        return value -> value instanceof Number ? ((Number) value).intValue() != 0 : value;
+      } else if (type == char.class) {
+        return value -> value instanceof Number ? (char) ((Number) value).intValue()
+            : ((String) value).charAt(0);
+      }
+      return Function.identity();
+    }
+  }
+}
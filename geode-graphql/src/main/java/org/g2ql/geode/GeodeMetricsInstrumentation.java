@@ -0,0 +1,291 @@
+package org.g2ql.geode;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.NoOpInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationDataFetchParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import graphql.language.Document;
+import graphql.validation.ValidationError;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Records the latency of the parse, validate and execute phases of every operation, of the whole
+ * operation, and of each field resolver, in HdrHistograms grouped by the fingerprint of the
+ * operation, and writes them in the Prometheus text format.
+ *
+ * <p>
+ * The fingerprint hashes the text of the operation with its literals, comments and insignificant
+ * white space removed, so operations that only differ in their arguments share their histograms.
+ * It is computed once per query text, along with the name of the first operation it declares for
+ * the requests that do not name the one to execute. At most {@link #MAX_OPERATIONS} pairs of
+ * fingerprint and operation name are kept, the operations past them are recorded as
+ * {@value #OTHER}. Documents found in the parsed document cache are neither parsed nor
+ * validated, so those phases only count the cache misses.
+ *
+ * <p>
+ * Recording allocates nothing but the context of each phase: the histograms are found with a few
+ * map lookups on strings the schema and the query already hold, and record into arrays without
+ * locking. The histograms keep every value since the start of the member, in microseconds with
+ * two significant digits, and resize themselves to the range of the values recorded. They are
+ * copied when they are written out.
+ */
+public class GeodeMetricsInstrumentation extends NoOpInstrumentation {
+  static final int MAX_OPERATIONS = Integer.getInteger("g2ql.maxMetricsOperations", 100);
+  static final String OTHER = "other";
+  static final String ANONYMOUS = "anonymous";
+
+  private static final String[] PHASES = {"parse", "validate", "execute", "total"};
+  private static final int PARSE = 0;
+  private static final int VALIDATE = 1;
+  private static final int EXECUTE = 2;
+  private static final int TOTAL = 3;
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private static final Pattern COMMENTS = Pattern.compile("#[^\\n\\r]*");
+  private static final Pattern STRINGS = Pattern.compile("\"(?:[^\"\\\\]|\\\\.)*\"");
+  private static final Pattern NUMBERS =
+      Pattern.compile("(?<![\\w$])-?\\d+(?:\\.\\d+)?(?:[eE][+-]?\\d+)?");
+  private static final Pattern SEPARATORS = Pattern.compile("[\\s,]+");
+  private static final Pattern OPERATION_NAME =
+      Pattern.compile("(?:^|}) ?(?:query|mutation|subscription) ([_A-Za-z][_0-9A-Za-z]*)");
+
+  private final Cache<String, Signature> signatures =
+      Caffeine.newBuilder().maximumSize(1000).build();
+  // by fingerprint, then by operation name
+  private final Map<String, Map<String, Operation>> operations = new ConcurrentHashMap<>();
+  private final AtomicInteger operationCount = new AtomicInteger();
+  private final Operation other = new Operation(OTHER, OTHER);
+
+  @Override
+  public InstrumentationState createState() {
+    return new State();
+  }
+
+  @Override
+  public InstrumentationContext<ExecutionResult> beginExecution(
+      InstrumentationExecutionParameters parameters) {
+    State state = parameters.getInstrumentationState();
+    if (state == null || parameters.getQuery() == null) {
+      return super.beginExecution(parameters);
+    }
+    Signature signature = signatures.getIfPresent(parameters.getQuery());
+    if (signature == null) {
+      signature = new Signature(normalize(parameters.getQuery()));
+      signatures.put(parameters.getQuery(), signature);
+    }
+    String name = parameters.getOperation() == null ? signature.name : parameters.getOperation();
+    state.operation = operation(name, signature.fingerprint);
+    return time(state.operation.phases[TOTAL]);
+  }
+
+  @Override
+  public InstrumentationContext<Document> beginParse(
+      InstrumentationExecutionParameters parameters) {
+    Operation operation = operation(parameters.getInstrumentationState());
+    return operation == null ? super.beginParse(parameters) : time(operation.phases[PARSE]);
+  }
+
+  @Override
+  public InstrumentationContext<List<ValidationError>> beginValidation(
+      InstrumentationValidationParameters parameters) {
+    Operation operation = operation(parameters.getInstrumentationState());
+    return operation == null ? super.beginValidation(parameters)
+        : time(operation.phases[VALIDATE]);
+  }
+
+  @Override
+  public InstrumentationContext<ExecutionResult> beginDataFetch(
+      InstrumentationDataFetchParameters parameters) {
+    Operation operation = operation(parameters.getInstrumentationState());
+    return operation == null ? super.beginDataFetch(parameters) : time(operation.phases[EXECUTE]);
+  }
+
+  /**
+   * Times the data fetcher of the field, until the value it returned completed if it is a
+   * {@link java.util.concurrent.CompletableFuture}.
+   */
+  @Override
+  public InstrumentationContext<Object> beginFieldFetch(
+      InstrumentationFieldFetchParameters parameters) {
+    Operation operation = operation(parameters.getInstrumentationState());
+    if (operation == null) {
+      return super.beginFieldFetch(parameters);
+    }
+    String typeName = parameters.getEnvironment().getParentType().getName();
+    return time(operation.field(typeName, parameters.getField().getName()));
+  }
+
+  /**
+   * Writes the histograms as Prometheus summaries, {@code g2ql_operation_seconds} per fingerprint
+   * and phase and {@code g2ql_field_seconds} per fingerprint and field.
+   */
+  public void writeMetrics(Writer out) throws IOException {
+    out.write("# HELP g2ql_operation_seconds Latency of the phases of GraphQL operations.\n");
+    out.write("# TYPE g2ql_operation_seconds summary\n");
+    for (Operation operation : operations()) {
+      for (int phase = 0; phase < PHASES.length; phase++) {
+        write(out, "g2ql_operation_seconds",
+            operation.labels + ",phase=\"" + PHASES[phase] + "\"", operation.phases[phase]);
+      }
+    }
+    out.write("# HELP g2ql_field_seconds Latency of the data fetchers of GraphQL fields.\n");
+    out.write("# TYPE g2ql_field_seconds summary\n");
+    for (Operation operation : operations()) {
+      for (Map.Entry<String, Map<String, Latency>> type : operation.fields.entrySet()) {
+        for (Map.Entry<String, Latency> field : type.getValue().entrySet()) {
+          write(out, "g2ql_field_seconds", operation.labels + ",field=\""
+              + escape(type.getKey() + "." + field.getKey()) + "\"", field.getValue());
+        }
+      }
+    }
+  }
+
+  private static void write(Writer out, String name, String labels, Latency latency)
+      throws IOException {
+    Histogram histogram = latency.histogram.copy();
+    if (histogram.getTotalCount() == 0) {
+      return;
+    }
+    for (double quantile : QUANTILES) {
+      out.write(name + "{" + labels + ",quantile=\"" + quantile + "\"} "
+          + histogram.getValueAtPercentile(quantile * 100) / 1e6 + "\n");
+    }
+    out.write(name + "_sum{" + labels + "} " + latency.nanos.sum() / 1e9 + "\n");
+    out.write(name + "_count{" + labels + "} " + histogram.getTotalCount() + "\n");
+  }
+
+  private Operation operation(String name, String fingerprint) {
+    Map<String, Operation> byName = operations.get(fingerprint);
+    Operation operation = byName == null ? null : byName.get(name);
+    if (operation != null) {
+      return operation;
+    }
+    if (operationCount.get() >= MAX_OPERATIONS) {
+      return other;
+    }
+    return operations.computeIfAbsent(fingerprint, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(name, key -> {
+          operationCount.incrementAndGet();
+          return new Operation(name, fingerprint);
+        });
+  }
+
+  private List<Operation> operations() {
+    List<Operation> answer = new ArrayList<>();
+    operations.values().forEach(byName -> answer.addAll(byName.values()));
+    answer.add(other);
+    return answer;
+  }
+
+  private static Operation operation(InstrumentationState state) {
+    return state instanceof State ? ((State) state).operation : null;
+  }
+
+  /**
+   * Returns the first 8 bytes of the SHA-256 of the normalized text of the operation, in hex.
+   */
+  public static String fingerprint(String query) {
+    return hash(normalize(query));
+  }
+
+  private static String normalize(String query) {
+    String normalized = COMMENTS.matcher(query).replaceAll("");
+    normalized = STRINGS.matcher(normalized).replaceAll("\"\"");
+    normalized = NUMBERS.matcher(normalized).replaceAll("0");
+    return SEPARATORS.matcher(normalized).replaceAll(" ").trim();
+  }
+
+  private static String hash(String normalized) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(normalized.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for (int i = 0; i < 8; i++) {
+        hex.append(String.format("%02x", digest[i]));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static <T> InstrumentationContext<T> time(Latency latency) {
+    long start = System.nanoTime();
+    return (result, failure) -> latency.record(System.nanoTime() - start);
+  }
+
+  private static class Signature {
+    private final String fingerprint;
+    private final String name;
+
+    Signature(String normalized) {
+      this.fingerprint = hash(normalized);
+      Matcher matcher = OPERATION_NAME.matcher(normalized);
+      this.name = matcher.find() ? matcher.group(1) : ANONYMOUS;
+    }
+  }
+
+  private static class State implements InstrumentationState {
+    private volatile Operation operation;
+  }
+
+  private static class Operation {
+    private final String labels;
+    private final Latency[] phases = new Latency[PHASES.length];
+    private final Map<String, Map<String, Latency>> fields = new ConcurrentHashMap<>();
+
+    Operation(String name, String fingerprint) {
+      this.labels = "operation=\"" + escape(name) + "\",fingerprint=\"" + fingerprint + "\"";
+      for (int i = 0; i < phases.length; i++) {
+        phases[i] = new Latency();
+      }
+    }
+
+    Latency field(String typeName, String fieldName) {
+      Map<String, Latency> type = fields.get(typeName);
+      if (type == null) {
+        type = fields.computeIfAbsent(typeName, name -> new ConcurrentHashMap<>());
+      }
+      Latency latency = type.get(fieldName);
+      if (latency == null) {
+        latency = type.computeIfAbsent(fieldName, name -> new Latency());
+      }
+      return latency;
+    }
+  }
+
+  private static class Latency {
+    private final Histogram histogram = new ConcurrentHistogram(2);
+    private final LongAdder nanos = new LongAdder();
+
+    void record(long elapsedNanos) {
+      histogram.recordValue(Math.max(1, elapsedNanos / 1000));
+      nanos.add(elapsedNanos);
+    }
+  }
+}
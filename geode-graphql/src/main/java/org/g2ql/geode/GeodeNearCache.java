@@ -0,0 +1,261 @@
+package org.g2ql.geode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.EntryEvent;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionEvent;
+import org.apache.geode.cache.util.CacheListenerAdapter;
+import org.apache.geode.internal.size.Sizeable;
+import org.g2ql.annotation.GeodeGraphQLNearCache;
+
+/**
+ * A bounded local cache of the deserialized values of a region, so repeated reads of hot keys are
+ * served without going to the region or deserializing the value again.
+ *
+ * <p>
+ * Values are admitted and evicted with Caffeine's W-TinyLFU policy, bounded by their estimated
+ * size in bytes. A {@link org.apache.geode.cache.CacheListener} on the region invalidates a key as
+ * soon as its entry changes. Members with a listener are notified of the changes to every bucket
+ * of a partitioned region, including the ones they do not host. A value read while its key is
+ * being invalidated is not kept.
+ *
+ * <p>
+ * Near caches are enabled per region with {@link GeodeGraphQLNearCache} on the value class or the
+ * {@code g2ql.nearCache.<Region>} system property, and are shared by every schema of the member.
+ */
+public class GeodeNearCache {
+  private final static Logger logger = LogManager.getLogger(GeodeNearCache.class);
+
+  private static final Map<Region<?, ?>, GeodeNearCache> nearCaches = new ConcurrentHashMap<>();
+  private static final int DEFAULT_ENTRY_BYTES = 1024;
+
+  private final Region<Object, Object> region;
+  private final Cache<Object, Object> values;
+  private final AtomicLong invalidations = new AtomicLong();
+
+  GeodeNearCache(Region<Object, Object> region, long maximumBytes, long expireAfterWriteSeconds) {
+    this(region, maximumBytes, expireAfterWriteSeconds, DEFAULT_ENTRY_BYTES);
+  }
+
+  GeodeNearCache(Region<Object, Object> region, long maximumBytes, long expireAfterWriteSeconds,
+      int entryBytes) {
+    this.region = region;
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumWeight(maximumBytes)
+        .weigher((key, value) -> weigh(value, entryBytes)).recordStats();
+    if (expireAfterWriteSeconds > 0) {
+      builder.expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS);
+    }
+    this.values = builder.build();
+  }
+
+  /**
+   * Sets up the near cache of the region if its value class or the system properties ask for one.
+   * A region keeps the near cache it was given first.
+   */
+  @SuppressWarnings("unchecked")
+  public static void configure(Region<?, ?> region) {
+    if (nearCaches.containsKey(region)) {
+      return;
+    }
+    Class<?> valueClass = region.getAttributes().getValueConstraint();
+    GeodeGraphQLNearCache annotation =
+        valueClass == null ? null : valueClass.getAnnotation(GeodeGraphQLNearCache.class);
+    long maximumBytes = Long.getLong("g2ql.nearCache." + region.getName(),
+        annotation == null ? 0 : annotation.maximumBytes());
+    if (maximumBytes <= 0) {
+      return;
+    }
+    long expireAfterWriteSeconds = annotation == null ? 0 : annotation.expireAfterWriteSeconds();
+    int entryBytes = annotation == null ? DEFAULT_ENTRY_BYTES : annotation.entryBytes();
+    nearCaches.computeIfAbsent(region, r -> {
+      logger.info("GeodeNearCache - caching up to " + maximumBytes + " bytes of region "
+          + r.getName());
+      Region<Object, Object> values = (Region<Object, Object>) r;
+      GeodeNearCache nearCache =
+          new GeodeNearCache(values, maximumBytes, expireAfterWriteSeconds, entryBytes);
+      values.getAttributesMutator().addCacheListener(nearCache.new Invalidator());
+      return nearCache;
+    });
+  }
+
+  /**
+   * Estimates the size of a value without reflecting into it, which Geode's object sizers do and
+   * the module system forbids for the classes of the JDK since Java 16.
+   */
+  static int weigh(Object value, int entryBytes) {
+    if (value instanceof Sizeable) {
+      return Math.max(1, ((Sizeable) value).getSizeInBytes());
+    } else if (value instanceof String) {
+      // the header, the array and up to two bytes per character
+      return 40 + 2 * ((String) value).length();
+    } else if (value instanceof byte[]) {
+      return 16 + ((byte[]) value).length;
+    } else if (value instanceof Number || value instanceof Boolean
+        || value instanceof Character) {
+      return 16;
+    }
+    return Math.max(1, entryBytes);
+  }
+
+  /**
+   * Reads a value of the region through its near cache, if it has one.
+   */
+  @SuppressWarnings("unchecked")
+  public static Object get(Region<?, ?> region, Object key) {
+    GeodeStatistics statistics = GeodeStatistics.region(region);
+    long start = System.nanoTime();
+    try {
+      GeodeNearCache nearCache = nearCaches.get(region);
+      if (nearCache == null) {
+        return ((Region<Object, Object>) region).get(key);
+      }
+      return nearCache.get(key);
+    } finally {
+      statistics.endTime(GeodeStatistics.GETS, GeodeStatistics.GET_TIME, start);
+    }
+  }
+
+  /**
+   * Reads values of the region through its near cache, if it has one. The answer maps missing keys
+   * to {@code null} or leaves them out.
+   */
+  @SuppressWarnings("unchecked")
+  public static Map<Object, Object> getAll(Region<?, ?> region, Collection<?> keys) {
+    GeodeStatistics statistics = GeodeStatistics.region(region);
+    long start = System.nanoTime();
+    try {
+      GeodeNearCache nearCache = nearCaches.get(region);
+      if (nearCache == null) {
+        return ((Region<Object, Object>) region).getAll(keys);
+      }
+      return nearCache.getAll(keys);
+    } finally {
+      statistics.endTime(GeodeStatistics.GET_ALLS, GeodeStatistics.GET_ALL_TIME, start);
+      statistics.add(GeodeStatistics.GET_ALL_KEYS, keys.size());
+    }
+  }
+
+  /**
+   * Returns the hit, miss and eviction counts of every near cache by region name.
+   */
+  public static Map<String, Map<String, Object>> getStatistics() {
+    Map<String, Map<String, Object>> answer = new TreeMap<>();
+    for (GeodeNearCache nearCache : nearCaches.values()) {
+      CacheStats stats = nearCache.values.stats();
+      Map<String, Object> regionStats = new LinkedHashMap<>();
+      regionStats.put("size", nearCache.values.estimatedSize());
+      regionStats.put("hitCount", stats.hitCount());
+      regionStats.put("missCount", stats.missCount());
+      regionStats.put("hitRate", stats.hitRate());
+      regionStats.put("evictionCount", stats.evictionCount());
+      answer.put(nearCache.region.getName(), regionStats);
+    }
+    return answer;
+  }
+
+  Object get(Object key) {
+    Object value = values.getIfPresent(key);
+    if (value == null) {
+      long generation = invalidations.get();
+      value = region.get(key);
+      if (value != null) {
+        values.put(key, value);
+        keepIfUnchanged(generation, key);
+      }
+    }
+    return value;
+  }
+
+  Map<Object, Object> getAll(Collection<?> keys) {
+    Map<Object, Object> answer = new LinkedHashMap<>(values.getAllPresent(keys));
+    List<Object> missing = new ArrayList<>(new LinkedHashSet<>(keys));
+    missing.removeAll(answer.keySet());
+    if (!missing.isEmpty()) {
+      long generation = invalidations.get();
+      Map<Object, Object> loaded = region.getAll(missing);
+      for (Map.Entry<Object, Object> entry : loaded.entrySet()) {
+        answer.put(entry.getKey(), entry.getValue());
+        if (entry.getValue() != null) {
+          values.put(entry.getKey(), entry.getValue());
+          keepIfUnchanged(generation, entry.getKey());
+        }
+      }
+    }
+    return answer;
+  }
+
+  /**
+   * Drops a value just read from the region if an entry changed meanwhile, since it may be older
+   * than the change. Invalidations are counted before they are applied, so either this sees the
+   * count or the invalidation comes after the value was cached.
+   */
+  private void keepIfUnchanged(long generation, Object key) {
+    if (invalidations.get() != generation) {
+      values.invalidate(key);
+    }
+  }
+
+  void invalidate(Object key) {
+    invalidations.incrementAndGet();
+    values.invalidate(key);
+  }
+
+  void invalidateAll() {
+    invalidations.incrementAndGet();
+    values.invalidateAll();
+  }
+
+  private class Invalidator extends CacheListenerAdapter<Object, Object> {
+    @Override
+    public void afterCreate(EntryEvent<Object, Object> event) {
+      invalidate(event.getKey());
+    }
+
+    @Override
+    public void afterUpdate(EntryEvent<Object, Object> event) {
+      invalidate(event.getKey());
+    }
+
+    @Override
+    public void afterInvalidate(EntryEvent<Object, Object> event) {
+      invalidate(event.getKey());
+    }
+
+    @Override
+    public void afterDestroy(EntryEvent<Object, Object> event) {
+      invalidate(event.getKey());
+    }
+
+    @Override
+    public void afterRegionInvalidate(RegionEvent<Object, Object> event) {
+      invalidateAll();
+    }
+
+    @Override
+    public void afterRegionClear(RegionEvent<Object, Object> event) {
+      invalidateAll();
+    }
+
+    @Override
+    public void afterRegionDestroy(RegionEvent<Object, Object> event) {
+      invalidateAll();
+      nearCaches.remove(region);
+    }
+  }
+}
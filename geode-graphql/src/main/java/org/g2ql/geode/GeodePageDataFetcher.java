@@ -0,0 +1,210 @@
+package org.g2ql.geode;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import graphql.GraphQLException;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.query.FunctionDomainException;
+import org.apache.geode.cache.query.NameResolutionException;
+import org.apache.geode.cache.query.QueryInvocationTargetException;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.Struct;
+import org.apache.geode.cache.query.TypeMismatchException;
+
+/**
+ * Serves a Relay style page of region values, {@code first} values after the {@code after}
+ * cursor, ordered by region key.
+ *
+ * <p>
+ * Paging is pushed down into OQL as a keyset predicate on the entry key with an ORDER BY and a
+ * LIMIT above the page size, so the extra row tells if there is a next page. The LIMIT is rounded
+ * up with {@link GeodeQueryCache#bucket(int)} to bound the number of query shapes. Pages iterate
+ * the region entries, so only indexes defined on {@code /Region.entrySet} apply to their filters.
+ *
+ * <p>
+ * The total count is only computed if it is selected, from the region size when there is no
+ * filter and with a {@code COUNT(*)} query otherwise.
+ */
+public class GeodePageDataFetcher implements DataFetcher {
+  private final static Logger logger = LogManager.getLogger(GeodePageDataFetcher.class);
+
+  public static final String LIMIT = "limit";
+  public static final String OFFSET = "offset";
+  public static final String FIRST = "first";
+  public static final String AFTER = "after";
+
+  /**
+   * The most values a list or page field returns, whatever the requested size.
+   */
+  public static final int MAX_RESULTS = Integer.getInteger("g2ql.maxResults", 1000);
+
+  private Cache cache;
+  private String regionName;
+  private Class<?> keyClass;
+  private GeodeQueryCache queryCache;
+
+  public GeodePageDataFetcher(Cache cache, String regionName, Class<?> keyClass,
+      GeodeQueryCache queryCache) {
+    this.cache = cache;
+    this.regionName = regionName;
+    this.keyClass = keyClass;
+    this.queryCache = queryCache;
+  }
+
+  public String getRegionName() {
+    return regionName;
+  }
+
+  @Override
+  public Object get(DataFetchingEnvironment environment) {
+    Map<String, Object> arguments = environment.getArguments();
+    int first = pageSize((Integer) arguments.get(FIRST));
+    String after = (String) arguments.get(AFTER);
+
+    GeodeWhereClause where = GeodeWhereClause.of(arguments);
+    List<Map<String, Object>> edges = new ArrayList<>();
+    boolean hasNextPage = false;
+    if (!where.matchesNothing() && first > 0) {
+      GeodeProjection projection =
+          GeodeProjection.of(environment, getNodeType(environment), "edges/node/");
+      List<Object> parameters = new ArrayList<>(Arrays.asList(where.getParameters()));
+      String query = query(projection, where, after == null ? 0 : parameters.size() + 1, first);
+      if (after != null) {
+        parameters.add(decodeCursor(after, keyClass));
+      }
+      logger.info("GeodePageDataFetcher - oql query:" + query + ", predicates:" + parameters);
+
+      SelectResults<Struct> results = execute(query, parameters.toArray());
+      for (Struct row : results) {
+        if (edges.size() == first) {
+          hasNextPage = true;
+          break;
+        }
+        Map<String, Object> edge = new LinkedHashMap<>();
+        edge.put("cursor", encodeCursor(row.get("key")));
+        edge.put("node", projection.isProjected() ? row : row.get("value"));
+        edges.add(edge);
+      }
+    }
+
+    Map<String, Object> pageInfo = new LinkedHashMap<>();
+    pageInfo.put("hasNextPage", hasNextPage);
+    pageInfo.put("endCursor", edges.isEmpty() ? null : edges.get(edges.size() - 1).get("cursor"));
+
+    Map<String, Object> page = new LinkedHashMap<>();
+    page.put("edges", edges);
+    page.put("pageInfo", pageInfo);
+    if (environment.getSelectionSet().contains("totalCount")) {
+      page.put("totalCount", totalCount(where));
+    }
+    return page;
+  }
+
+  /**
+   * Returns the number of values to return for the requested size, bounded by
+   * {@link #MAX_RESULTS}.
+   */
+  static int pageSize(Integer requested) {
+    if (requested == null) {
+      return MAX_RESULTS;
+    }
+    return Math.min(Math.max(requested, 0), MAX_RESULTS);
+  }
+
+  static String encodeCursor(Object key) {
+    return Base64.getUrlEncoder().encodeToString(String.valueOf(key).getBytes(UTF_8));
+  }
+
+  /**
+   * Decodes a cursor back to a region key of the given type.
+   */
+  static Object decodeCursor(String cursor, Class<?> keyClass) {
+    try {
+      String key = new String(Base64.getUrlDecoder().decode(cursor), UTF_8);
+      if (Integer.class.equals(keyClass) || int.class.equals(keyClass)) {
+        return Integer.valueOf(key);
+      } else if (Long.class.equals(keyClass) || long.class.equals(keyClass)) {
+        return Long.valueOf(key);
+      } else if (Short.class.equals(keyClass) || short.class.equals(keyClass)) {
+        return Short.valueOf(key);
+      } else if (BigDecimal.class.equals(keyClass)) {
+        return new BigDecimal(key);
+      } else if (UUID.class.equals(keyClass)) {
+        return UUID.fromString(key);
+      }
+      return key;
+    } catch (IllegalArgumentException e) {
+      throw new GraphQLException("Invalid cursor: " + cursor, e);
+    }
+  }
+
+  private GraphQLType getNodeType(DataFetchingEnvironment environment) {
+    GraphQLObjectType pageType = (GraphQLObjectType) environment.getFieldType();
+    GraphQLList edgesType = (GraphQLList) pageType.getFieldDefinition("edges").getType();
+    return ((GraphQLObjectType) edgesType.getWrappedType()).getFieldDefinition("node").getType();
+  }
+
+  private String query(GeodeProjection projection, GeodeWhereClause where, int afterParameter,
+      int first) {
+    StringBuilder query = new StringBuilder();
+    query.append("SELECT DISTINCT e.key, ");
+    query.append(projection.attributes("e.value"));
+    query.append(" FROM /");
+    query.append(regionName);
+    query.append(".entrySet e");
+    if (!where.matchesAll() || afterParameter > 0) {
+      query.append(" where ");
+      if (!where.matchesAll()) {
+        query.append(where.toOql("e.value"));
+      }
+      if (!where.matchesAll() && afterParameter > 0) {
+        query.append(" AND ");
+      }
+      if (afterParameter > 0) {
+        query.append("e.key > $");
+        query.append(afterParameter);
+      }
+    }
+    query.append(" ORDER BY e.key LIMIT ");
+    query.append(GeodeQueryCache.bucket(first + 1));
+    return query.toString();
+  }
+
+  private int totalCount(GeodeWhereClause where) {
+    if (where.matchesNothing()) {
+      return 0;
+    } else if (where.matchesAll()) {
+      return cache.getRegion(regionName).size();
+    }
+    String query = "SELECT COUNT(*) FROM /" + regionName + " x where " + where;
+    SelectResults<Integer> results = execute(query, where.getParameters());
+    return results.isEmpty() ? 0 : results.iterator().next();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> SelectResults<T> execute(String query, Object[] parameters) {
+    try {
+      return (SelectResults<T>) queryCache.execute(regionName, query, parameters);
+    } catch (QueryInvocationTargetException | NameResolutionException | FunctionDomainException
+        | TypeMismatchException e) {
+      throw new GraphQLException("Failed to execute " + query, e);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package org.g2ql.geode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLModifiedType;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLType;
+
+/**
+ * Translates the selection set of a query field into the projection of an OQL select, so only
+ * the requested attributes of a region value are read and returned by Geode.
+ *
+ * <p>
+ * Projected queries return {@link org.apache.geode.cache.query.Struct} rows, which are resolved
+ * by {@link GeodePropertyDataFetcher}. Set the {@code g2ql.disableProjection} system property to
+ * always select whole values.
+ */
+class GeodeProjection {
+  static final boolean DISABLED = Boolean.getBoolean("g2ql.disableProjection");
+
+  private final List<String> fields;
+
+  private GeodeProjection(List<String> fields) {
+    this.fields = fields;
+  }
+
+  /**
+   * Returns the projection of the fields selected below the current field, or a projection of
+   * the whole value if the field does not resolve to an object type.
+   */
+  static GeodeProjection of(DataFetchingEnvironment environment) {
+    return of(environment, environment.getFieldType(), "");
+  }
+
+  /**
+   * Returns the projection of the fields selected below the given path of the current field,
+   * e.g. {@code edges/node/} for the values of a page, which resolves to the given type.
+   */
+  static GeodeProjection of(DataFetchingEnvironment environment, GraphQLType type, String path) {
+    while (type instanceof GraphQLModifiedType) {
+      type = ((GraphQLModifiedType) type).getWrappedType();
+    }
+    if (DISABLED || !(type instanceof GraphQLObjectType)) {
+      return new GeodeProjection(Collections.emptyList());
+    }
+
+    GraphQLObjectType objectType = (GraphQLObjectType) type;
+    List<String> fields = new ArrayList<>();
+    for (String selection : environment.getSelectionSet().get().keySet()) {
+      if (!selection.startsWith(path)) {
+        continue;
+      }
+      // nested selections are resolved from the embedded value of their parent field
+      String name = selection.substring(path.length());
+      if (name.indexOf('/') < 0 && objectType.getFieldDefinition(name) != null) {
+        fields.add(name);
+      }
+    }
+    return new GeodeProjection(fields);
+  }
+
+  boolean isProjected() {
+    return !fields.isEmpty();
+  }
+
+  /**
+   * Returns the select clause of the projection. Projected selects do not use DISTINCT, since
+   * rows with equal projected attributes are still different region values.
+   */
+  String select() {
+    if (!isProjected()) {
+      return "SELECT DISTINCT *";
+    }
+    return "SELECT " + attributes("x");
+  }
+
+  /**
+   * Returns the projected attributes on the given path to the region values, or the path itself
+   * if the whole value is selected.
+   */
+  String attributes(String variable) {
+    if (!isProjected()) {
+      return variable;
+    }
+    StringBuilder attributes = new StringBuilder();
+    for (int i = 0; i < fields.size(); i++) {
+      if (i > 0) {
+        attributes.append(", ");
+      }
+      attributes.append(variable).append(".").append(fields.get(i));
+    }
+    return attributes.toString();
+  }
+
+  /**
+   * Geode returns bare values instead of structs when a single attribute is projected, wrap
+   * those so the property fetchers can resolve them by name.
+   */
+  Object row(Object value) {
+    if (fields.size() == 1) {
+      return Collections.singletonMap(fields.get(0), value);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,88 @@
+package org.g2ql.geode;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.PropertyDataFetcher;
+
+import org.apache.geode.cache.query.Struct;
+import org.apache.geode.pdx.PdxInstance;
+
+/**
+ * Resolves a field of a region value, which is either the domain object itself, a
+ * {@link PdxInstance} or a {@link Struct} row of a projected OQL query.
+ *
+ * <p>
+ * When the cache is configured to read PDX serialized ({@code configure pdx
+ * --read-serialized=true}), region reads and queries return {@link PdxInstance} values and only
+ * the fields selected by the query are read from their serialized form, without the domain class.
+ */
+public class GeodePropertyDataFetcher implements DataFetcher {
+  private static final Map<Class<?>, Map<String, Field>> fields = new ConcurrentHashMap<>();
+
+  private String fieldName;
+  private PropertyDataFetcher propertyDataFetcher;
+
+  public GeodePropertyDataFetcher(String fieldName) {
+    this.fieldName = fieldName;
+    this.propertyDataFetcher = new PropertyDataFetcher(fieldName);
+  }
+
+  @Override
+  public Object get(DataFetchingEnvironment environment) {
+    Object source = environment.getSource();
+    if (source instanceof Struct) {
+      return getStructField((Struct) source, fieldName);
+    } else if (source instanceof PdxInstance) {
+      return getPdxField((PdxInstance) source, fieldName);
+    }
+    return propertyDataFetcher.get(environment);
+  }
+
+  /**
+   * Returns the named field of a projected row, or {@code null} if it was not projected.
+   */
+  static Object getStructField(Struct struct, String fieldName) {
+    try {
+      return struct.get(fieldName);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the named field of a PDX value, or {@code null} if its type has no such field.
+   */
+  static Object getPdxField(PdxInstance pdxInstance, String fieldName) {
+    return pdxInstance.hasField(fieldName) ? pdxInstance.getField(fieldName) : null;
+  }
+
+  /**
+   * Returns the named field of a region value without going through the graphql-java property
+   * lookup, used by fetchers that need a field which is not exposed as is in the schema, and by
+   * the filters of subscriptions on every change of their region. The fields of the domain classes
+   * are looked up and made accessible once per class.
+   */
+  static Object getField(Object source, String fieldName)
+      throws NoSuchFieldException, IllegalAccessException {
+    if (source instanceof Struct) {
+      return getStructField((Struct) source, fieldName);
+    } else if (source instanceof PdxInstance) {
+      return getPdxField((PdxInstance) source, fieldName);
+    } else if (source instanceof Map) {
+      return ((Map<?, ?>) source).get(fieldName);
+    }
+    Map<String, Field> classFields =
+        fields.computeIfAbsent(source.getClass(), type -> new ConcurrentHashMap<>());
+    Field field = classFields.get(fieldName);
+    if (field == null) {
+      field = source.getClass().getDeclaredField(fieldName);
+      field.setAccessible(true);
+      classFields.put(fieldName, field);
+    }
+    return field.get(source);
+  }
+}
@@ -0,0 +1,70 @@
+package org.g2ql.geode;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+
+/**
+ * Puts the {@code entries} of a bulk mutation into a region with {@link Region#putAll(Map)}. Each
+ * entry is an input object with a {@code key} and a {@code value}, which is either a scalar or the
+ * properties of a new instance of the value class.
+ */
+public class GeodePutAllDataFetcher extends GeodeBulkDataFetcher {
+  private final Class<?> valueClass;
+
+  public GeodePutAllDataFetcher(Cache cache, String regionName, Class<?> valueClass) {
+    this(cache, regionName, valueClass, BATCH_SIZE);
+  }
+
+  GeodePutAllDataFetcher(Cache cache, String regionName, Class<?> valueClass, int batchSize) {
+    super(cache, regionName, batchSize);
+    this.valueClass = valueClass;
+  }
+
+  @Override
+  protected List<Map.Entry<Object, Object>> getEntries(Map<String, Object> arguments) {
+    @SuppressWarnings("unchecked")
+    List<Map<String, Object>> entries = (List<Map<String, Object>>) arguments.get("entries");
+    if (entries == null) {
+      return Collections.emptyList();
+    }
+    return entries.stream().<Map.Entry<Object, Object>>map(
+        entry -> new AbstractMap.SimpleEntry<>(entry.get("key"), entry.get("value")))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  protected void applyAll(Region<Object, Object> region, List<Map.Entry<Object, Object>> batch)
+      throws Exception {
+    // a key given twice keeps its last value, as if the entries were put one after another
+    Map<Object, Object> values = new LinkedHashMap<>();
+    for (Map.Entry<Object, Object> entry : batch) {
+      values.put(entry.getKey(), toValue(entry.getValue()));
+    }
+    region.putAll(values);
+  }
+
+  @Override
+  protected void apply(Region<Object, Object> region, Map.Entry<Object, Object> entry)
+      throws Exception {
+    region.put(entry.getKey(), toValue(entry.getValue()));
+  }
+
+  private Object toValue(Object input) throws Exception {
+    if (input == null) {
+      throw new IllegalArgumentException("no value given");
+    }
+    if (input instanceof Map) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> fields = (Map<String, Object>) input;
+      return GeodeAbstractDataFetcher.newValue(valueClass, fields);
+    }
+    return input;
+  }
+}
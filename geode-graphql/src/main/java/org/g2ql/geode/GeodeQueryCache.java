@@ -0,0 +1,105 @@
+package org.g2ql.geode;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.query.FunctionDomainException;
+import org.apache.geode.cache.query.NameResolutionException;
+import org.apache.geode.cache.query.Query;
+import org.apache.geode.cache.query.QueryInvocationTargetException;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.TypeMismatchException;
+
+/**
+ * A bounded, least recently used cache of compiled OQL {@link Query} objects keyed by their query
+ * string, so the data fetchers parse and compile each query shape only once.
+ *
+ * <p>
+ * {@code IN set($1..$n)} parameter lists are bucketed to the next power of two, see
+ * {@link #bucket(int)} and {@link #pad(List, int)}, which keeps the number of distinct shapes per
+ * region and field logarithmic in the largest list size.
+ */
+public class GeodeQueryCache {
+  private final static Logger logger = LogManager.getLogger(GeodeQueryCache.class);
+
+  static final int MAX_QUERIES = Integer.getInteger("g2ql.queryCacheSize", 256);
+
+  private final Cache cache;
+  private final Map<String, Query> queries;
+
+  public GeodeQueryCache(Cache cache) {
+    this(cache, MAX_QUERIES);
+  }
+
+  GeodeQueryCache(Cache cache, int maxQueries) {
+    this.cache = cache;
+    this.queries = new LinkedHashMap<String, Query>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+        return size() > maxQueries;
+      }
+    };
+  }
+
+  /**
+   * Returns the compiled query for the given OQL string, compiling it on first use.
+   */
+  public Query getQuery(String oql) {
+    synchronized (queries) {
+      Query query = queries.get(oql);
+      if (query == null) {
+        logger.info("GeodeQueryCache - compiling oql query:" + oql);
+        query = cache.getQueryService().newQuery(oql);
+        queries.put(oql, query);
+      }
+      return query;
+    }
+  }
+
+  /**
+   * Executes the query for the given OQL string, counted in the statistics of the given region.
+   */
+  public SelectResults<?> execute(String regionName, String oql, Object[] parameters)
+      throws FunctionDomainException, TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    GeodeStatistics statistics = GeodeStatistics.region(cache, regionName);
+    long start = System.nanoTime();
+    SelectResults<?> results = (SelectResults<?>) getQuery(oql).execute(parameters);
+    statistics.endTime(GeodeStatistics.QUERIES, GeodeStatistics.QUERY_TIME, start);
+    statistics.add(GeodeStatistics.QUERY_RESULTS, results.size());
+    return results;
+  }
+
+  public int size() {
+    synchronized (queries) {
+      return queries.size();
+    }
+  }
+
+  /**
+   * Rounds the number of bind parameters up to the next power of two.
+   */
+  public static int bucket(int arity) {
+    if (arity <= 1) {
+      return 1;
+    }
+    return Integer.highestOneBit(arity - 1) << 1;
+  }
+
+  /**
+   * Fills the bind parameters up to the given bucket size by repeating the last parameter, which
+   * does not change the result of an {@code IN set(...)} predicate.
+   */
+  public static Object[] pad(List<Object> parameters, int bucket) {
+    Object[] answer = new Object[bucket];
+    for (int i = 0; i < bucket; i++) {
+      answer[i] = parameters.get(Math.min(i, parameters.size() - 1));
+    }
+    return answer;
+  }
+}
@@ -0,0 +1,122 @@
+package org.g2ql.geode;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.EntryEvent;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionEvent;
+import org.apache.geode.cache.util.CacheListenerAdapter;
+
+/**
+ * Publishes the changes of a region to its subscriptions. A single
+ * {@link org.apache.geode.cache.CacheListener} is added to a region on its first subscription and
+ * offers every change to the {@link GeodeEventPublisher} of each subscription, which filters and
+ * queues it without blocking the thread that applied the change. Members with a listener are
+ * notified of the changes to every bucket of a partitioned region, including the ones they do not
+ * host, so a subscription sees the changes of the whole cluster.
+ *
+ * <p>
+ * Continuous queries would filter the changes on the members hosting them, but Geode only
+ * registers them from clients, so the filters of subscriptions are evaluated here instead.
+ */
+public class GeodeRegionEvents extends CacheListenerAdapter<Object, Object> {
+  private final static Logger logger = LogManager.getLogger(GeodeRegionEvents.class);
+
+  private static final Map<Region<?, ?>, GeodeRegionEvents> regionEvents =
+      new ConcurrentHashMap<>();
+
+  private final String regionName;
+  private final Set<GeodeEventPublisher> publishers = new CopyOnWriteArraySet<>();
+
+  GeodeRegionEvents(String regionName) {
+    this.regionName = regionName;
+  }
+
+  /**
+   * Returns the events of the given region, adding the listener to the region on first use.
+   */
+  @SuppressWarnings("unchecked")
+  public static GeodeRegionEvents of(Region<?, ?> region) {
+    return regionEvents.computeIfAbsent(region, r -> {
+      logger.info("GeodeRegionEvents - listening to the changes of region " + r.getName());
+      GeodeRegionEvents events = new GeodeRegionEvents(r.getName());
+      ((Region<Object, Object>) r).getAttributesMutator().addCacheListener(events);
+      return events;
+    });
+  }
+
+  /**
+   * Returns a publisher of the changes to the given keys, or to every key if null, that match the
+   * filter. The publisher starts queueing changes once it is subscribed to.
+   *
+   * @param beforeEach run before each change is delivered, or null
+   */
+  public GeodeEventPublisher publisher(Collection<?> keys, GeodeWhereClause filter,
+      Runnable beforeEach) {
+    return new GeodeEventPublisher(this, keys, filter, beforeEach,
+        GeodeEventPublisher.QUEUE_SIZE, GeodeEventPublisher.getExecutor());
+  }
+
+  public String getRegionName() {
+    return regionName;
+  }
+
+  /**
+   * Returns the number of subscriptions to the region.
+   */
+  public int getSubscriberCount() {
+    return publishers.size();
+  }
+
+  void add(GeodeEventPublisher publisher) {
+    publishers.add(publisher);
+  }
+
+  void remove(GeodeEventPublisher publisher) {
+    publishers.remove(publisher);
+  }
+
+  @Override
+  public void afterCreate(EntryEvent<Object, Object> event) {
+    publish(GeodeEventPublisher.CREATE, event);
+  }
+
+  @Override
+  public void afterUpdate(EntryEvent<Object, Object> event) {
+    publish(GeodeEventPublisher.UPDATE, event);
+  }
+
+  @Override
+  public void afterDestroy(EntryEvent<Object, Object> event) {
+    publish(GeodeEventPublisher.DESTROY, event);
+  }
+
+  @Override
+  public void afterInvalidate(EntryEvent<Object, Object> event) {
+    publish(GeodeEventPublisher.INVALIDATE, event);
+  }
+
+  @Override
+  public void afterRegionDestroy(RegionEvent<Object, Object> event) {
+    regionEvents.remove(event.getRegion());
+    publishers.forEach(GeodeEventPublisher::complete);
+  }
+
+  private void publish(String operation, EntryEvent<Object, Object> event) {
+    if (publishers.isEmpty()) {
+      return;
+    }
+    Object newValue = event.getNewValue();
+    Object oldValue = event.getOldValue();
+    for (GeodeEventPublisher publisher : publishers) {
+      publisher.offer(event.getKey(), operation, newValue, oldValue);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package org.g2ql.geode;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * A lazily mapped window over query results. Rows are skipped, counted and converted one at a time
+ * while graphql-java completes the list, so no copy of the results is made.
+ */
+class GeodeResultIterable implements Iterable<Object> {
+  private final Iterable<?> results;
+  private final int skip;
+  private final int take;
+  private final Function<Object, Object> mapper;
+
+  GeodeResultIterable(Iterable<?> results, int skip, int take, Function<Object, Object> mapper) {
+    this.results = results;
+    this.skip = skip;
+    this.take = take;
+    this.mapper = mapper;
+  }
+
+  @Override
+  public Iterator<Object> iterator() {
+    Iterator<?> rows = results.iterator();
+    for (int i = 0; i < skip && rows.hasNext(); i++) {
+      rows.next();
+    }
+    return new Iterator<Object>() {
+      private int taken;
+
+      @Override
+      public boolean hasNext() {
+        return taken < take && rows.hasNext();
+      }
+
+      @Override
+      public Object next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        taken++;
+        return mapper.apply(rows.next());
+      }
+    };
+  }
+}
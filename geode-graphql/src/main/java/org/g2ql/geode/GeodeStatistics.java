@@ -0,0 +1,277 @@
+package org.g2ql.geode;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.StatisticDescriptor;
+import org.apache.geode.Statistics;
+import org.apache.geode.StatisticsFactory;
+import org.apache.geode.StatisticsType;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionService;
+import org.apache.geode.distributed.DistributedSystem;
+
+/**
+ * Counters of g2ql registered as Geode statistics, so they are sampled into the statistic archive
+ * of the member next to the cache statistics and can be charted in VSD. There are three types:
+ * {@value #REGION_TYPE} per region, {@value #OPERATION_TYPE} per operation name and a single
+ * {@value #SERVER_TYPE}. Times are in nanoseconds.
+ *
+ * <p>
+ * The counters are {@link LongAdder}s, which threads update in their own cells without
+ * contending, and Geode reads their sums through suppliers when it samples, about once a second.
+ * Instances are shared by every schema of the member. They are kept per distributed system, so a
+ * member reconnecting or a cache recreated in the same JVM registers new ones with its new system,
+ * and the ones of disconnected systems are dropped. They still count without a distributed
+ * system, like in the unit tests, but are not registered then.
+ */
+public class GeodeStatistics {
+  private final static Logger logger = LogManager.getLogger(GeodeStatistics.class);
+
+  public static final String REGION_TYPE = "G2QLRegionStats";
+  public static final String OPERATION_TYPE = "G2QLOperationStats";
+  public static final String SERVER_TYPE = "G2QLStats";
+
+  // REGION_TYPE
+  public static final int GETS = 0;
+  public static final int GET_TIME = 1;
+  public static final int GET_ALLS = 2;
+  public static final int GET_ALL_KEYS = 3;
+  public static final int GET_ALL_TIME = 4;
+  public static final int QUERIES = 5;
+  public static final int QUERY_TIME = 6;
+  public static final int QUERY_RESULTS = 7;
+  public static final int MUTATIONS = 8;
+  public static final int MUTATION_TIME = 9;
+  public static final int MUTATION_FAILURES = 10;
+
+  // OPERATION_TYPE
+  public static final int EXECUTIONS = 0;
+  public static final int EXECUTION_TIME = 1;
+  public static final int EXECUTION_ERRORS = 2;
+
+  // SERVER_TYPE
+  public static final int REQUESTS_IN_PROGRESS = 0;
+  public static final int REQUESTS = 1;
+  public static final int REQUEST_TIME = 2;
+
+  // operation names are chosen by the clients, the others are counted together
+  static final int MAX_OPERATIONS = Integer.getInteger("g2ql.maxOperationStats", 100);
+  static final String ANONYMOUS = "anonymous";
+  static final String OTHER = "other";
+
+  // the statistics of each distributed system, or of NO_SYSTEM without one
+  private static final Map<Object, Registry> registries = new ConcurrentHashMap<>();
+  private static final Object NO_SYSTEM = new Object();
+
+  private final LongAdder[] counters;
+
+  GeodeStatistics(StatisticsFactory factory, String typeName, String textId) {
+    StatisticsType type = factory == null ? null : type(factory, typeName);
+    String[] names = names(typeName);
+    this.counters = new LongAdder[names.length];
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = new LongAdder();
+    }
+    if (type != null) {
+      // the type orders its descriptors on its own, so they are looked up by name
+      Statistics statistics = factory.createStatistics(type, textId);
+      for (int i = 0; i < counters.length; i++) {
+        statistics.setLongSupplier(names[i], counters[i]::sum);
+      }
+    }
+  }
+
+  /**
+   * Returns the statistics of the given region, registering them on first use.
+   */
+  public static GeodeStatistics region(Region<?, ?> region) {
+    return region(region.getRegionService(), region.getName());
+  }
+
+  public static GeodeStatistics region(RegionService cache, String regionName) {
+    Registry registry = registry(cache);
+    GeodeStatistics statistics = registry.regions.get(regionName);
+    if (statistics != null) {
+      return statistics;
+    }
+    return registry.regions.computeIfAbsent(regionName,
+        name -> new GeodeStatistics(registry.factory, REGION_TYPE, name));
+  }
+
+  /**
+   * Returns the statistics of the operations with the given name, or of the anonymous ones if
+   * null. Names past the first {@link #MAX_OPERATIONS} share the statistics named
+   * {@value #OTHER}.
+   */
+  public static GeodeStatistics operation(Cache cache, String operationName) {
+    Registry registry = registry(cache);
+    String name = operationName == null ? ANONYMOUS : operationName;
+    GeodeStatistics statistics = registry.operations.get(name);
+    if (statistics != null) {
+      return statistics;
+    }
+    if (registry.operations.size() >= MAX_OPERATIONS) {
+      name = OTHER;
+    }
+    return registry.operations.computeIfAbsent(name,
+        key -> new GeodeStatistics(registry.factory, OPERATION_TYPE, key));
+  }
+
+  public static GeodeStatistics server(Cache cache) {
+    Registry registry = registry(cache);
+    GeodeStatistics statistics = registry.server;
+    if (statistics == null) {
+      synchronized (registry) {
+        if (registry.server == null) {
+          registry.server = new GeodeStatistics(registry.factory, SERVER_TYPE, "g2ql");
+        }
+        statistics = registry.server;
+      }
+    }
+    return statistics;
+  }
+
+  public void increment(int id) {
+    counters[id].increment();
+  }
+
+  public void decrement(int id) {
+    counters[id].decrement();
+  }
+
+  public void add(int id, long delta) {
+    counters[id].add(delta);
+  }
+
+  /**
+   * Counts one more of something that started at the given {@link System#nanoTime()} and adds the
+   * time it took.
+   */
+  public void endTime(int countId, int timeId, long start) {
+    counters[countId].increment();
+    counters[timeId].add(System.nanoTime() - start);
+  }
+
+  public long get(int id) {
+    return counters[id].sum();
+  }
+
+  /**
+   * Returns the statistics of the distributed system of the given cache, dropping the ones of the
+   * systems disconnected since.
+   */
+  private static Registry registry(RegionService cache) {
+    StatisticsFactory factory = factory(cache);
+    Object key = factory == null ? NO_SYSTEM : factory;
+    Registry registry = registries.get(key);
+    if (registry != null) {
+      return registry;
+    }
+    registries.keySet().removeIf(system -> system instanceof DistributedSystem
+        && !((DistributedSystem) system).isConnected());
+    return registries.computeIfAbsent(key, ignored -> new Registry(factory));
+  }
+
+  private static StatisticsFactory factory(RegionService cache) {
+    if (!(cache instanceof Cache)) {
+      return null;
+    }
+    try {
+      return ((Cache) cache).getDistributedSystem();
+    } catch (RuntimeException e) {
+      logger.warn("GeodeStatistics - statistics are not registered: " + e);
+      return null;
+    }
+  }
+
+  private static synchronized StatisticsType type(StatisticsFactory factory, String typeName) {
+    StatisticsType type = factory.findType(typeName);
+    if (type != null) {
+      return type;
+    }
+    logger.info("GeodeStatistics - registering statistics type " + typeName);
+    return factory.createType(typeName, description(typeName), descriptors(typeName, factory));
+  }
+
+  private static String description(String typeName) {
+    switch (typeName) {
+      case REGION_TYPE:
+        return "Reads, queries and mutations of a region by GraphQL operations";
+      case OPERATION_TYPE:
+        return "Executions of the GraphQL operations with a given name";
+      default:
+        return "GraphQL requests served by the member";
+    }
+  }
+
+  private static String[] names(String typeName) {
+    switch (typeName) {
+      case REGION_TYPE:
+        return new String[] {"gets", "getTime", "getAlls", "getAllKeys", "getAllTime", "queries",
+            "queryTime", "queryResults", "mutations", "mutationTime", "mutationFailures"};
+      case OPERATION_TYPE:
+        return new String[] {"executions", "executionTime", "executionErrors"};
+      default:
+        return new String[] {"requestsInProgress", "requests", "requestTime"};
+    }
+  }
+
+  private static StatisticDescriptor[] descriptors(String typeName, StatisticsFactory factory) {
+    switch (typeName) {
+      case REGION_TYPE:
+        return new StatisticDescriptor[] {
+            factory.createLongCounter("gets", "Values read by key", "operations"),
+            factory.createLongCounter("getTime", "Time spent reading values by key",
+                "nanoseconds", false),
+            factory.createLongCounter("getAlls", "Bulk reads of values by key", "operations"),
+            factory.createLongCounter("getAllKeys", "Keys read by the bulk reads", "keys"),
+            factory.createLongCounter("getAllTime", "Time spent in bulk reads", "nanoseconds",
+                false),
+            factory.createLongCounter("queries", "OQL queries executed", "operations"),
+            factory.createLongCounter("queryTime", "Time spent executing OQL queries",
+                "nanoseconds", false),
+            factory.createLongCounter("queryResults", "Rows returned by the OQL queries",
+                "rows"),
+            factory.createLongCounter("mutations", "Entries created, updated or destroyed",
+                "operations"),
+            factory.createLongCounter("mutationTime", "Time spent in mutations", "nanoseconds",
+                false),
+            factory.createLongCounter("mutationFailures", "Entries that failed to be mutated",
+                "operations")};
+      case OPERATION_TYPE:
+        return new StatisticDescriptor[] {
+            factory.createLongCounter("executions", "Operations executed", "operations"),
+            factory.createLongCounter("executionTime", "Time spent executing operations",
+                "nanoseconds", false),
+            factory.createLongCounter("executionErrors", "Operations that answered with errors",
+                "operations")};
+      default:
+        return new StatisticDescriptor[] {
+            factory.createLongGauge("requestsInProgress", "GraphQL operations being executed",
+                "operations"),
+            factory.createLongCounter("requests", "GraphQL operations executed", "operations"),
+            factory.createLongCounter("requestTime", "Time spent executing GraphQL operations",
+                "nanoseconds", false)};
+    }
+  }
+
+  /**
+   * The statistics registered with one distributed system.
+   */
+  private static class Registry {
+    private final StatisticsFactory factory;
+    private final Map<String, GeodeStatistics> regions = new ConcurrentHashMap<>();
+    private final Map<String, GeodeStatistics> operations = new ConcurrentHashMap<>();
+    private volatile GeodeStatistics server;
+
+    Registry(StatisticsFactory factory) {
+      this.factory = factory;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package org.g2ql.geode;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import org.reactivestreams.Publisher;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+
+/**
+ * Subscribes to the changes of a region, filtered on the {@code key} argument and on the
+ * indexed-field arguments like the collection query of the region.
+ *
+ * <p>
+ * The operation keeps its {@link GeodeExecutionContext} for as long as it is subscribed, so the
+ * data loaders of the context are cleared before each change is resolved, and connection fields
+ * read the values as they are at the time of the change.
+ */
+public class GeodeSubscriptionDataFetcher implements DataFetcher<Publisher<Map<String, Object>>> {
+  private final Cache cache;
+  private final String regionName;
+
+  public GeodeSubscriptionDataFetcher(Cache cache, String regionName) {
+    this.cache = cache;
+    this.regionName = regionName;
+  }
+
+  public String getRegionName() {
+    return regionName;
+  }
+
+  @Override
+  public Publisher<Map<String, Object>> get(DataFetchingEnvironment environment) {
+    Region<?, ?> region = cache.getRegion(regionName);
+    if (region == null) {
+      throw new IllegalStateException("Region " + regionName + " does not exist");
+    }
+    Map<String, Object> arguments = environment.getArguments();
+    List<?> keys = (List<?>) arguments.get("key");
+    Object context = environment.getContext();
+    Runnable beforeEach = context instanceof GeodeExecutionContext
+        ? ((GeodeExecutionContext) context)::clearDataLoaders : null;
+    return GeodeRegionEvents.of(region).publisher(keys == null ? null : new HashSet<>(keys),
+        GeodeWhereClause.of(arguments), beforeEach);
+  }
+}
@@ -0,0 +1,135 @@
+package org.g2ql.geode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQLError;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.AsyncSerialExecutionStrategy;
+import graphql.execution.ExecutionContext;
+import graphql.execution.ExecutionStrategyParameters;
+import graphql.introspection.Introspection.DirectiveLocation;
+import graphql.language.OperationDefinition;
+import graphql.schema.GraphQLDirective;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheTransactionManager;
+import org.apache.geode.cache.TransactionException;
+import org.apache.geode.cache.TransactionId;
+
+/**
+ * Runs the fields of a mutation one after another, and the ones of a mutation marked
+ * {@code @transactional} inside a single Geode transaction. The transaction commits once every
+ * field succeeded, so all the entries written by the operation are distributed together, and is
+ * rolled back as soon as one field failed, in which case the result has no data.
+ *
+ * <p>
+ * Geode transactions only span colocated data: a transactional mutation writing entries hosted by
+ * different members fails as a whole. A field starts once the previous one completed, on the
+ * thread that completed it, which is a fetch thread if the previous field selected a connection.
+ * The transaction is therefore suspended between fields and resumed on the thread that resolves
+ * the next one, and on the request thread to end it. Reads of connections in the answer are not
+ * part of the transaction.
+ */
+public class GeodeTransactionalExecutionStrategy extends AsyncSerialExecutionStrategy {
+  private final static Logger logger =
+      LogManager.getLogger(GeodeTransactionalExecutionStrategy.class);
+
+  public static final GraphQLDirective TRANSACTIONAL = GraphQLDirective.newDirective()
+      .name("transactional")
+      .description("Runs every field of the mutation in a single transaction")
+      .validLocations(DirectiveLocation.MUTATION).build();
+
+  // how long a field waits for the previous one to suspend the transaction
+  private static final long RESUME_TIMEOUT_SECONDS = 30;
+
+  private final Cache cache;
+  // the suspended transaction of each transactional operation being executed
+  private final Map<ExecutionContext, TransactionId> transactions = new ConcurrentHashMap<>();
+
+  public GeodeTransactionalExecutionStrategy(Cache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public CompletableFuture<ExecutionResult> execute(ExecutionContext executionContext,
+      ExecutionStrategyParameters parameters) {
+    OperationDefinition operation = executionContext.getOperationDefinition();
+    if (cache == null || operation.getDirective(TRANSACTIONAL.getName()) == null) {
+      return super.execute(executionContext, parameters);
+    }
+    Object context = executionContext.getContext();
+    if (context instanceof GeodeExecutionContext) {
+      ((GeodeExecutionContext) context).setTransactional(true);
+    }
+    CacheTransactionManager transactionManager = cache.getCacheTransactionManager();
+    transactionManager.begin();
+    TransactionId transaction = transactionManager.suspend();
+    transactions.put(executionContext, transaction);
+    ExecutionResult result;
+    try {
+      result = super.execute(executionContext, parameters).join();
+    } catch (RuntimeException e) {
+      resume(transactionManager, transaction);
+      transactionManager.rollback();
+      throw e;
+    } finally {
+      transactions.remove(executionContext);
+    }
+    resume(transactionManager, transaction);
+    if (!result.getErrors().isEmpty()) {
+      transactionManager.rollback();
+      return rolledBack(result, "a field failed");
+    }
+    try {
+      transactionManager.commit();
+    } catch (TransactionException e) {
+      logger.info("GeodeTransactionalExecutionStrategy - commit failed", e);
+      return rolledBack(result, e.getMessage());
+    }
+    return CompletableFuture.completedFuture(result);
+  }
+
+  /**
+   * Resolves a field of a transactional mutation with the transaction resumed on the current
+   * thread. The data fetcher of a mutation runs before this returns, and the transaction is
+   * suspended again for the next field, whichever thread that one starts on.
+   */
+  @Override
+  protected CompletableFuture<ExecutionResult> resolveField(ExecutionContext executionContext,
+      ExecutionStrategyParameters parameters) {
+    TransactionId transaction = transactions.get(executionContext);
+    if (transaction == null) {
+      return super.resolveField(executionContext, parameters);
+    }
+    CacheTransactionManager transactionManager = cache.getCacheTransactionManager();
+    resume(transactionManager, transaction);
+    try {
+      return super.resolveField(executionContext, parameters);
+    } finally {
+      transactionManager.suspend();
+    }
+  }
+
+  // the thread that resolved the previous field may not have suspended the transaction yet
+  private static void resume(CacheTransactionManager transactionManager,
+      TransactionId transaction) {
+    if (!transactionManager.tryResume(transaction, RESUME_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      throw new IllegalStateException("The transaction could not be resumed");
+    }
+  }
+
+  private CompletableFuture<ExecutionResult> rolledBack(ExecutionResult result, String reason) {
+    List<GraphQLError> errors = new ArrayList<>(result.getErrors());
+    errors.add(new AbortExecutionException("Transaction rolled back, " + reason));
+    return CompletableFuture.completedFuture(new ExecutionResultImpl(null, errors));
+  }
+}
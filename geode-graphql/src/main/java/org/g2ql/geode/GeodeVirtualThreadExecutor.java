@@ -0,0 +1,201 @@
+package org.g2ql.geode;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs every task on a new virtual thread, with at most a given number of tasks running at the
+ * same time. The permit of a task is taken on the calling thread before its virtual thread is
+ * started, waiting at most the acquire timeout, so the tasks over the cap never get a thread and
+ * are rejected with a {@link RejectedExecutionException} instead of piling up. A running task
+ * can hand its permit back early with {@link #releaseCurrentPermit()}, which lets operations that
+ * are found to be expensive wait for their own, smaller cap without holding one of these.
+ *
+ * <p>
+ * Virtual threads are created through reflection, since the project is still built for JVMs that
+ * do not have them. Check {@link #isAvailable()} before creating an executor. Geode synchronizes
+ * on monitors in many blocking paths, which pins the virtual thread to its carrier before Java 24,
+ * so the cap should stay within what the carriers and Geode can serve.
+ */
+public class GeodeVirtualThreadExecutor implements Executor {
+  private final static Logger logger = LogManager.getLogger(GeodeVirtualThreadExecutor.class);
+
+  private static final Method OF_VIRTUAL = method(Thread.class, "ofVirtual");
+  private static final Method NAME = method(builderClass(), "name", String.class, long.class);
+  private static final Method FACTORY = method(builderClass(), "factory");
+
+  // the permit held by the task running on the current thread, if it still holds it
+  private static final ThreadLocal<Permit> CURRENT_PERMIT = new ThreadLocal<>();
+
+  private final ThreadFactory threads;
+  private final Semaphore permits;
+  private final int maxConcurrency;
+  private final long acquireTimeoutMillis;
+
+  /**
+   * Creates an executor rejecting the tasks over the cap right away.
+   *
+   * @param name the prefix of the names of the threads, followed by a counter
+   * @param maxConcurrency the number of tasks running at the same time
+   * @throws IllegalStateException if the JVM has no virtual threads
+   */
+  public GeodeVirtualThreadExecutor(String name, int maxConcurrency) {
+    this(name, maxConcurrency, 0);
+  }
+
+  /**
+   * @param name the prefix of the names of the threads, followed by a counter
+   * @param maxConcurrency the number of tasks running at the same time
+   * @param acquireTimeoutMillis how long the calling thread waits for a permit before the task is
+   *        rejected
+   * @throws IllegalStateException if the JVM has no virtual threads
+   */
+  public GeodeVirtualThreadExecutor(String name, int maxConcurrency, long acquireTimeoutMillis) {
+    if (!isAvailable()) {
+      throw new IllegalStateException("Virtual threads need Java 21 or later");
+    }
+    try {
+      Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name, 0L);
+      this.threads = (ThreadFactory) FACTORY.invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create virtual threads", e);
+    }
+    this.permits = new Semaphore(maxConcurrency);
+    this.maxConcurrency = maxConcurrency;
+    this.acquireTimeoutMillis = acquireTimeoutMillis;
+  }
+
+  /**
+   * Returns true if the JVM has virtual threads.
+   */
+  public static boolean isAvailable() {
+    return OF_VIRTUAL != null && NAME != null && FACTORY != null;
+  }
+
+  /**
+   * Returns an executor capped to the given concurrency if virtual threads are available, or
+   * null after logging why they are not.
+   */
+  public static GeodeVirtualThreadExecutor createIfAvailable(String name, int maxConcurrency,
+      long acquireTimeoutMillis) {
+    if (!isAvailable()) {
+      logger.warn("GeodeVirtualThreadExecutor - virtual threads need Java 21 or later, running "
+          + name + " tasks on platform threads");
+      return null;
+    }
+    try {
+      GeodeVirtualThreadExecutor executor =
+          new GeodeVirtualThreadExecutor(name, maxConcurrency, acquireTimeoutMillis);
+      logger.info("GeodeVirtualThreadExecutor - running " + name + " tasks on virtual threads, "
+          + maxConcurrency + " at a time");
+      return executor;
+    } catch (IllegalStateException e) {
+      // e.g. a preview JVM started without --enable-preview
+      logger.warn("GeodeVirtualThreadExecutor - running " + name
+          + " tasks on platform threads: " + e.getCause());
+      return null;
+    }
+  }
+
+  /**
+   * Starts the task on a new virtual thread once a permit is free.
+   *
+   * @throws RejectedExecutionException if no permit was freed within the acquire timeout
+   */
+  @Override
+  public void execute(Runnable task) {
+    if (!acquire()) {
+      throw new RejectedExecutionException(
+          "All " + maxConcurrency + " permits are taken");
+    }
+    Permit permit = new Permit(permits);
+    try {
+      threads.newThread(() -> {
+        CURRENT_PERMIT.set(permit);
+        try {
+          task.run();
+        } finally {
+          CURRENT_PERMIT.remove();
+          permit.release();
+        }
+      }).start();
+    } catch (RuntimeException | Error e) {
+      permit.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Gives back the permit of the task running on the current thread before the task completes, so
+   * another task can start. Does nothing on other threads, or if the permit was given back
+   * already.
+   */
+  public static void releaseCurrentPermit() {
+    Permit permit = CURRENT_PERMIT.get();
+    if (permit != null) {
+      permit.release();
+    }
+  }
+
+  private boolean acquire() {
+    if (permits.tryAcquire()) {
+      return true;
+    }
+    try {
+      return acquireTimeoutMillis > 0
+          && permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Returns the number of tasks that may start running right away.
+   */
+  public int getAvailablePermits() {
+    return permits.availablePermits();
+  }
+
+  private static class Permit {
+    private final Semaphore permits;
+    private final AtomicBoolean held = new AtomicBoolean(true);
+
+    Permit(Semaphore permits) {
+      this.permits = permits;
+    }
+
+    void release() {
+      if (held.compareAndSet(true, false)) {
+        permits.release();
+      }
+    }
+  }
+
+  private static Class<?> builderClass() {
+    try {
+      return Class.forName("java.lang.Thread$Builder");
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+  }
+
+  private static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+    if (type == null) {
+      return null;
+    }
+    try {
+      return type.getMethod(name, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
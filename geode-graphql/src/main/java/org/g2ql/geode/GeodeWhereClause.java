@@ -0,0 +1,353 @@
+package org.g2ql.geode;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles the filter arguments of a query field into the predicate of a single parameterized
+ * OQL statement. Indexed-field arguments are combined with AND, and the {@value #WHERE} argument
+ * is an expression tree of indexed-field predicates combined with {@value #AND}, {@value #OR} and
+ * {@value #NOT}.
+ *
+ * <p>
+ * List values compile to {@code x.field IN set(...)} with the bind parameters bucketed as in
+ * {@link GeodeQueryCache#bucket(int)}, scalar values compile to {@code x.field=$n}. Constant
+ * subtrees such as an empty {@code IN} list are folded before rendering, so equivalent filters
+ * share one query shape and a filter that cannot match is never sent to Geode.
+ *
+ * <p>
+ * The same predicate is evaluated against single values with {@link #matches(Object)}, which is
+ * how subscriptions filter the changes of a region without running a query per change.
+ */
+public class GeodeWhereClause {
+  public static final String WHERE = "where";
+  public static final String AND = "AND";
+  public static final String OR = "OR";
+  public static final String NOT = "NOT";
+
+  private static final Set<String> NON_FILTER_ARGUMENTS =
+      new HashSet<>(asList("key", GeodePageDataFetcher.LIMIT, GeodePageDataFetcher.OFFSET,
+          GeodePageDataFetcher.FIRST, GeodePageDataFetcher.AFTER));
+
+  private static final Predicate TRUE = new Constant(true);
+  private static final Predicate FALSE = new Constant(false);
+
+  private final Predicate predicate;
+  private final List<Object> parameters = new ArrayList<>();
+  private final String oql;
+
+  private GeodeWhereClause(Predicate predicate) {
+    this.predicate = predicate;
+    this.oql = render("x", parameters);
+  }
+
+  /**
+   * Compiles the arguments of a query field, ignoring the {@code key} and paging arguments and
+   * arguments without a value.
+   */
+  @SuppressWarnings("unchecked")
+  public static GeodeWhereClause of(Map<String, Object> arguments) {
+    List<Predicate> conjuncts = new ArrayList<>();
+    for (Map.Entry<String, Object> argument : arguments.entrySet()) {
+      if (argument.getValue() == null || NON_FILTER_ARGUMENTS.contains(argument.getKey())) {
+        continue;
+      }
+      if (argument.getKey().equals(WHERE)) {
+        conjuncts.add(compile((Map<String, Object>) argument.getValue()));
+      } else {
+        conjuncts.add(field(argument.getKey(), argument.getValue()));
+      }
+    }
+    return new GeodeWhereClause(and(conjuncts));
+  }
+
+  /**
+   * Returns true if the filter matches every value of the region.
+   */
+  public boolean matchesAll() {
+    return predicate == TRUE;
+  }
+
+  /**
+   * Returns true if the filter cannot match any value of the region.
+   */
+  public boolean matchesNothing() {
+    return predicate == FALSE;
+  }
+
+  /**
+   * Returns true if the given region value satisfies the filter. Numbers are compared by value,
+   * since the GraphQL scalars coerce arguments to {@code Integer} or {@code Double} whatever the
+   * type of the field.
+   */
+  public boolean matches(Object value) {
+    return value != null && predicate.matches(value);
+  }
+
+  public Object[] getParameters() {
+    return parameters.toArray();
+  }
+
+  /**
+   * Returns the predicate in OQL, with {@code x} as the iterator variable of the region.
+   */
+  @Override
+  public String toString() {
+    return oql;
+  }
+
+  /**
+   * Returns the predicate in OQL on the given path to the region values, e.g. {@code e.value}
+   * when iterating over the region entries. The bind parameters are the same for every path.
+   */
+  public String toOql(String variable) {
+    return variable.equals("x") ? oql : render(variable, new ArrayList<>());
+  }
+
+  private String render(String variable, List<Object> parameters) {
+    StringBuilder answer = new StringBuilder();
+    predicate.render(answer, variable, parameters);
+    return answer.toString();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Predicate compile(Map<String, Object> where) {
+    List<Predicate> conjuncts = new ArrayList<>();
+    for (Map.Entry<String, Object> entry : where.entrySet()) {
+      Object value = entry.getValue();
+      if (value == null) {
+        continue;
+      }
+      switch (entry.getKey()) {
+        case AND:
+          conjuncts.add(and(compileAll((Collection<Map<String, Object>>) value)));
+          break;
+        case OR:
+          conjuncts.add(or(compileAll((Collection<Map<String, Object>>) value)));
+          break;
+        case NOT:
+          conjuncts.add(not(compile((Map<String, Object>) value)));
+          break;
+        default:
+          conjuncts.add(field(entry.getKey(), value));
+      }
+    }
+    return and(conjuncts);
+  }
+
+  private static List<Predicate> compileAll(Collection<Map<String, Object>> where) {
+    List<Predicate> answer = new ArrayList<>();
+    for (Map<String, Object> operand : where) {
+      answer.add(compile(operand));
+    }
+    return answer;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Predicate field(String name, Object value) {
+    if (value instanceof Collection) {
+      Collection<Object> values = (Collection<Object>) value;
+      return values.isEmpty() ? FALSE : new In(name, new ArrayList<>(values));
+    }
+    return new Equals(name, value);
+  }
+
+  private static Predicate and(List<Predicate> operands) {
+    List<Predicate> answer = new ArrayList<>();
+    for (Predicate operand : operands) {
+      if (operand == FALSE) {
+        return FALSE;
+      } else if (operand != TRUE) {
+        answer.add(operand);
+      }
+    }
+    if (answer.isEmpty()) {
+      return TRUE;
+    }
+    return answer.size() == 1 ? answer.get(0) : new Junction(AND, answer);
+  }
+
+  private static Predicate or(List<Predicate> operands) {
+    List<Predicate> answer = new ArrayList<>();
+    for (Predicate operand : operands) {
+      if (operand == TRUE) {
+        return TRUE;
+      } else if (operand != FALSE) {
+        answer.add(operand);
+      }
+    }
+    if (answer.isEmpty()) {
+      return FALSE;
+    }
+    return answer.size() == 1 ? answer.get(0) : new Junction(OR, answer);
+  }
+
+  private static Predicate not(Predicate operand) {
+    if (operand == TRUE) {
+      return FALSE;
+    } else if (operand == FALSE) {
+      return TRUE;
+    }
+    return new Not(operand);
+  }
+
+  private static Object fieldValue(Object value, String field) {
+    try {
+      return GeodePropertyDataFetcher.getField(value, field);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  private static boolean equal(Object fieldValue, Object argument) {
+    if (fieldValue instanceof Number && argument instanceof Number) {
+      Number a = (Number) fieldValue;
+      Number b = (Number) argument;
+      if (a instanceof Double || a instanceof Float || b instanceof Double || b instanceof Float) {
+        return a.doubleValue() == b.doubleValue();
+      }
+      return a.longValue() == b.longValue();
+    }
+    if (fieldValue instanceof Character && argument instanceof String) {
+      return argument.equals(fieldValue.toString());
+    }
+    return fieldValue == null ? argument == null : fieldValue.equals(argument);
+  }
+
+  private interface Predicate {
+    void render(StringBuilder oql, String variable, List<Object> parameters);
+
+    boolean matches(Object value);
+  }
+
+  private static class Constant implements Predicate {
+    private final boolean value;
+
+    Constant(boolean value) {
+      this.value = value;
+    }
+
+    @Override
+    public void render(StringBuilder oql, String variable, List<Object> parameters) {
+      oql.append(value);
+    }
+
+    @Override
+    public boolean matches(Object value) {
+      return this.value;
+    }
+  }
+
+  private static class Equals implements Predicate {
+    private final String field;
+    private final Object value;
+
+    Equals(String field, Object value) {
+      this.field = field;
+      this.value = value;
+    }
+
+    @Override
+    public void render(StringBuilder oql, String variable, List<Object> parameters) {
+      parameters.add(value);
+      oql.append(variable).append(".").append(field).append("=$").append(parameters.size());
+    }
+
+    @Override
+    public boolean matches(Object value) {
+      return equal(fieldValue(value, field), this.value);
+    }
+  }
+
+  private static class In implements Predicate {
+    private final String field;
+    private final List<Object> values;
+
+    In(String field, List<Object> values) {
+      this.field = field;
+      this.values = values;
+    }
+
+    @Override
+    public void render(StringBuilder oql, String variable, List<Object> parameters) {
+      int arity = GeodeQueryCache.bucket(values.size());
+      oql.append(variable).append(".").append(field).append(" IN set(");
+      for (Object value : GeodeQueryCache.pad(values, arity)) {
+        parameters.add(value);
+        oql.append("$").append(parameters.size()).append(", ");
+      }
+      oql.setLength(oql.length() - 2);
+      oql.append(")");
+    }
+
+    @Override
+    public boolean matches(Object value) {
+      Object fieldValue = fieldValue(value, field);
+      for (Object candidate : values) {
+        if (equal(fieldValue, candidate)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static class Junction implements Predicate {
+    private final String operator;
+    private final List<Predicate> operands;
+
+    Junction(String operator, List<Predicate> operands) {
+      this.operator = operator;
+      this.operands = operands;
+    }
+
+    @Override
+    public void render(StringBuilder oql, String variable, List<Object> parameters) {
+      oql.append("(");
+      for (int i = 0; i < operands.size(); i++) {
+        if (i > 0) {
+          oql.append(" ").append(operator).append(" ");
+        }
+        operands.get(i).render(oql, variable, parameters);
+      }
+      oql.append(")");
+    }
+
+    @Override
+    public boolean matches(Object value) {
+      boolean and = operator.equals(AND);
+      for (Predicate operand : operands) {
+        if (operand.matches(value) != and) {
+          return !and;
+        }
+      }
+      return and;
+    }
+  }
+
+  private static class Not implements Predicate {
+    private final Predicate operand;
+
+    Not(Predicate operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    public void render(StringBuilder oql, String variable, List<Object> parameters) {
+      oql.append("NOT (");
+      operand.render(oql, variable, parameters);
+      oql.append(")");
+    }
+
+    @Override
+    public boolean matches(Object value) {
+      return !operand.matches(value);
+    }
+  }
+}
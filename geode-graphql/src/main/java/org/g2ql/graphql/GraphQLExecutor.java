@@ -4,28 +4,66 @@ import static graphql.ExecutionInput.newExecutionInput;
 
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
 import graphql.GraphQL;
+import graphql.execution.AsyncExecutionStrategy;
+import graphql.execution.SubscriptionExecutionStrategy;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentation;
 import graphql.schema.GraphQLSchema;
 import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.internal.cache.InternalCache;
+import org.apache.geode.internal.cache.RegionListener;
+import org.g2ql.geode.GeodeCostInstrumentation;
+import org.g2ql.geode.GeodeExecutionContext;
+import org.g2ql.geode.GeodeFetchExecutor;
+import org.g2ql.geode.GeodeMetricsInstrumentation;
+import org.g2ql.geode.GeodeStatistics;
+import org.g2ql.geode.GeodeTransactionalExecutionStrategy;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A GraphQL executor capable of constructing a {@link GraphQLSchema} from a Geode Cache
  * {@link Cache}. The executor uses the constructed schema to execute queries directly from the
  * cache.
+ *
+ * <p>
+ * The schema follows the regions created and destroyed later through a {@link RegionListener}.
+ * Geode has no public API to be told about new regions, so the listener is registered with
+ * {@link InternalCache#addRegionListener}, an internal API that may change between Geode
+ * versions, and only when the cache is an {@link InternalCache}. The listener holds on to the
+ * executor until {@link #close()} removes it.
  */
-public class GraphQLExecutor {
+public class GraphQLExecutor implements AutoCloseable {
   private final static Logger logger = LogManager.getLogger(GraphQLExecutor.class);
 
-  private GraphQL graphQL;
-  private GraphQLSchema graphQLSchema;
+  // Geode has no listener for new indexes, so the operations check them every so often
+  static final long INDEX_CHECK_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(Long.getLong("g2ql.indexCheckMillis", 10_000));
+
+  // replaced as a whole, so every operation runs on a single schema and its documents
+  private volatile Snapshot snapshot = new Snapshot(0, null, null);
   private GraphQLSchema.Builder builder;
+  private final GeodeCostInstrumentation costInstrumentation = new GeodeCostInstrumentation();
+  private final GeodeMetricsInstrumentation metricsInstrumentation =
+      new GeodeMetricsInstrumentation();
 
   private Cache cache;
+  private SchemaModel model;
+  private RegionListener schemaUpdater;
+  private final AtomicLong indexesChecked = new AtomicLong(System.nanoTime());
 
   protected GraphQLExecutor() {
     createGraphQL();
@@ -38,8 +76,36 @@ public class GraphQLExecutor {
    *        objects.
    */
   public GraphQLExecutor(Cache cache) {
+    this(cache, null);
+  }
+
+  /**
+   * Creates a read-only GraphQLExecutor from the given model of the schema of the cache, saved by
+   * an earlier run of the same cluster. The regions the model does not hold are read from their
+   * classes.
+   *
+   * @param model the model of the schema, or null to read every region from its classes
+   */
+  public GraphQLExecutor(Cache cache, SchemaModel model) {
     this.cache = cache;
+    this.model = model;
     createGraphQL();
+    if (cache instanceof InternalCache) {
+      schemaUpdater = new SchemaUpdater();
+      ((InternalCache) cache).addRegionListener(schemaUpdater);
+    }
+  }
+
+  /**
+   * Stops following the regions created and destroyed in the cache. The executor keeps executing
+   * operations on the schema it has.
+   */
+  @Override
+  public synchronized void close() {
+    if (schemaUpdater != null) {
+      ((InternalCache) cache).removeRegionListener(schemaUpdater);
+      schemaUpdater = null;
+    }
   }
 
   @PostConstruct
@@ -47,12 +113,63 @@ public class GraphQLExecutor {
     if (cache != null) {
       if (builder == null) {
         logger.info("GraphQLExecutor - createGraphQL - creating schema builder");
-        this.builder = new GraphQLSchemaBuilder(cache);
+        this.builder = new GraphQLSchemaBuilder(cache, model);
       }
-      this.graphQLSchema = builder.build();
-      this.graphQL = GraphQL.newGraphQL(graphQLSchema).build();
-      logger
-          .info("GraphQLExecutor - createGraphQL - after schema builder" + this.graphQL.toString());
+      publish();
+    }
+  }
+
+  /**
+   * Returns the model of the regions in the schema, or null if the schema was not built from the
+   * cache.
+   */
+  public synchronized SchemaModel getSchemaModel() {
+    return builder instanceof GraphQLSchemaBuilder ? ((GraphQLSchemaBuilder) builder).getModel()
+        : null;
+  }
+
+  /**
+   * Builds the schema from the current state of the builder and swaps it in. Operations already
+   * running finish on the schema they started with.
+   */
+  private void publish() {
+    GraphQLSchema schema = builder.build();
+    snapshot = new Snapshot(snapshot.version + 1, schema, new PreparsedDocumentCache());
+    logger.info("GraphQLExecutor - createGraphQL - published schema version " + snapshot.version
+        + ": " + schema);
+  }
+
+  /**
+   * Adds the fields of a region created after the schema was built.
+   */
+  synchronized void regionCreated(Region<?, ?> region) {
+    if (builder instanceof GraphQLSchemaBuilder
+        && ((GraphQLSchemaBuilder) builder).addRegion(region)) {
+      logger.info("GraphQLExecutor - regionCreated - adding region " + region.getName());
+      publish();
+    }
+  }
+
+  /**
+   * Rebuilds the fields of the regions whose indexes were created or removed since their fields
+   * were built, so their queries filter on the new indexed fields.
+   */
+  synchronized void checkIndexes() {
+    if (builder instanceof GraphQLSchemaBuilder
+        && ((GraphQLSchemaBuilder) builder).updateIndexes()) {
+      logger.info("GraphQLExecutor - checkIndexes - indexes changed");
+      publish();
+    }
+  }
+
+  /**
+   * Drops the fields of a region about to be destroyed.
+   */
+  synchronized void regionDestroyed(Region<?, ?> region) {
+    if (builder instanceof GraphQLSchemaBuilder
+        && ((GraphQLSchemaBuilder) builder).removeRegion(region.getName())) {
+      logger.info("GraphQLExecutor - regionDestroyed - dropping region " + region.getName());
+      publish();
     }
   }
 
@@ -60,25 +177,134 @@ public class GraphQLExecutor {
    * @return The {@link GraphQLSchema} used by this executor.
    */
   public GraphQLSchema getGraphQLSchema() {
-    return graphQLSchema;
+    return snapshot.schema;
+  }
+
+  /**
+   * Returns the version of the schema, which grows every time the schema is replaced.
+   */
+  public long getSchemaVersion() {
+    return snapshot.version;
   }
 
   public ExecutionResult execute(String query) {
-    return graphQL.execute(query);
+    return execute(newExecutionInput().query(query));
   }
 
   public ExecutionResult execute(String query, Map<String, Object> arguments) {
     if (arguments == null)
-      return graphQL.execute(query);
-    return graphQL.execute(newExecutionInput().query(query).variables(arguments).build());
+      return execute(query);
+    return execute(newExecutionInput().query(query).variables(arguments));
   }
 
   public ExecutionResult execute(String query, Map<String, Object> arguments,
       String operationName) {
     if (arguments == null)
-      return graphQL.execute(query);
-    return graphQL.execute(
-        newExecutionInput().query(query).operationName(operationName).variables(arguments).build());
+      return execute(query);
+    return execute(
+        newExecutionInput().query(query).operationName(operationName).variables(arguments));
+  }
+
+  /**
+   * Every operation gets its own {@link GeodeExecutionContext}, so connection fields are loaded in
+   * batches per query level and each key is read at most once per operation. Query fields are
+   * resolved in parallel, their Geode reads run on the {@link GeodeFetchExecutor}, while mutation
+   * fields still run one after another, in a single transaction if the mutation is marked
+   * {@code @transactional}. The data of a subscription is a
+   * {@link org.reactivestreams.Publisher} of results, one per change of the region.
+   *
+   * <p>
+   * When the root key lookups of a partitioned region are all hosted by another member, the
+   * result carries a {@code routing} extension naming that member, so the client can send the
+   * next operation on those keys to its endpoint and save the network hop.
+   *
+   * <p>
+   * Parsed and validated documents are cached per schema, so a query text sent again is neither
+   * parsed nor validated. The operation reads the schema and its documents once, without locking,
+   * so it is not held up by a schema being rebuilt.
+   *
+   * <p>
+   * The cost of each operation is estimated before it runs, see {@link GeodeCostInstrumentation},
+   * and reported in its {@code cost} extension, including for the operations that are rejected.
+   *
+   * <p>
+   * The operations in progress, and the number and time of the executions per operation name, are
+   * counted in {@link GeodeStatistics}.
+   *
+   * <p>
+   * Every {@code g2ql.indexCheckMillis} milliseconds, 10 seconds by default, one operation checks
+   * the indexes of the regions before it reads the schema, see {@link #checkIndexes()}.
+   */
+  private ExecutionResult execute(ExecutionInput.Builder executionInput) {
+    long checked = indexesChecked.get();
+    if (System.nanoTime() - checked > INDEX_CHECK_NANOS
+        && indexesChecked.compareAndSet(checked, System.nanoTime())) {
+      try {
+        checkIndexes();
+      } catch (RuntimeException e) {
+        logger.error("GraphQLExecutor - checkIndexes - could not check the indexes", e);
+      }
+    }
+    Snapshot current = snapshot;
+    GeodeExecutionContext context = new GeodeExecutionContext(cache);
+    GraphQL graphQL = GraphQL.newGraphQL(current.schema)
+        .queryExecutionStrategy(new AsyncExecutionStrategy())
+        .mutationExecutionStrategy(new GeodeTransactionalExecutionStrategy(cache))
+        .subscriptionExecutionStrategy(new SubscriptionExecutionStrategy())
+        .instrumentation(new ChainedInstrumentation(Arrays.asList(metricsInstrumentation,
+            costInstrumentation,
+            new DataLoaderDispatcherInstrumentation(context.getDataLoaderRegistry()))))
+        .preparsedDocumentProvider(current.documents).build();
+    ExecutionInput input = executionInput.context(context).build();
+    GeodeStatistics requests = GeodeStatistics.server(cache);
+    GeodeStatistics operations = GeodeStatistics.operation(cache, input.getOperationName());
+    requests.increment(GeodeStatistics.REQUESTS_IN_PROGRESS);
+    long start = System.nanoTime();
+    ExecutionResult result = null;
+    Map<String, Object> cost;
+    try {
+      result = graphQL.execute(input);
+      cost = GeodeCostInstrumentation.getCostExtension(context);
+    } finally {
+      costInstrumentation.release(context);
+      requests.decrement(GeodeStatistics.REQUESTS_IN_PROGRESS);
+      requests.endTime(GeodeStatistics.REQUESTS, GeodeStatistics.REQUEST_TIME, start);
+      operations.endTime(GeodeStatistics.EXECUTIONS, GeodeStatistics.EXECUTION_TIME, start);
+      if (result == null || !result.getErrors().isEmpty()) {
+        operations.increment(GeodeStatistics.EXECUTION_ERRORS);
+      }
+    }
+    Map<String, Object> routingHint = context.getRoutingHint();
+    if (routingHint == null && cost == null) {
+      return result;
+    }
+    Map<Object, Object> extensions = new LinkedHashMap<>();
+    if (result.getExtensions() != null) {
+      extensions.putAll(result.getExtensions());
+    }
+    if (cost != null) {
+      extensions.put("cost", cost);
+    }
+    if (routingHint != null) {
+      extensions.put("routing", routingHint);
+    }
+    return new ExecutionResultImpl(result.getData(), result.getErrors(), extensions);
+  }
+
+  /**
+   * Writes the latency histograms of the operations and their fields in the Prometheus text
+   * format, see {@link GeodeMetricsInstrumentation}.
+   */
+  public void writeMetrics(Writer out) throws IOException {
+    metricsInstrumentation.writeMetrics(out);
+  }
+
+  /**
+   * Returns the hit and miss counts of the parsed document cache of the current schema.
+   */
+  public Map<String, Object> getDocumentCacheStatistics() {
+    PreparsedDocumentCache documents = snapshot.documents;
+    return documents == null ? Collections.emptyMap() : documents.getStatistics();
   }
 
   /**
@@ -98,7 +324,7 @@ public class GraphQLExecutor {
    * @return An instance of a {@link GraphQLSchema}.
    */
   public GraphQLSchema getSchema() {
-    return graphQLSchema;
+    return snapshot.schema;
   }
 
   /**
@@ -109,9 +335,50 @@ public class GraphQLExecutor {
    *        instances.
    * @return The same executor but with a new {@link GraphQL} schema.
    */
-  public GraphQLExecutor updateSchema(GraphQLSchema.Builder builder) {
+  public synchronized GraphQLExecutor updateSchema(GraphQLSchema.Builder builder) {
     this.builder = builder;
     createGraphQL();
     return this;
   }
+
+  /**
+   * A schema with the documents validated against it.
+   */
+  private static final class Snapshot {
+    private final long version;
+    private final GraphQLSchema schema;
+    private final PreparsedDocumentCache documents;
+
+    Snapshot(long version, GraphQLSchema schema, PreparsedDocumentCache documents) {
+      this.version = version;
+      this.schema = schema;
+      this.documents = documents;
+    }
+  }
+
+  /**
+   * Keeps the schema in step with the regions created and destroyed in the cache.
+   */
+  private class SchemaUpdater implements RegionListener {
+    @Override
+    public void afterCreate(Region region) {
+      try {
+        regionCreated(region);
+      } catch (RuntimeException e) {
+        // the region is created anyway, it is just not part of the schema
+        logger.error("GraphQLExecutor - regionCreated - could not add region " + region.getName(),
+            e);
+      }
+    }
+
+    @Override
+    public void beforeDestroyed(Region region) {
+      try {
+        regionDestroyed(region);
+      } catch (RuntimeException e) {
+        logger.error(
+            "GraphQLExecutor - regionDestroyed - could not drop region " + region.getName(), e);
+      }
+    }
+  }
 }
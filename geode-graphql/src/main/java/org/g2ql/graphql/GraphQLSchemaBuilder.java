@@ -1,55 +1,60 @@
 package org.g2ql.graphql;
 
 import static graphql.schema.GraphQLArgument.newArgument;
+import static graphql.schema.GraphQLEnumType.newEnum;
 import static graphql.schema.GraphQLFieldDefinition.newFieldDefinition;
+import static graphql.schema.GraphQLInputObjectField.newInputObjectField;
 import static graphql.schema.GraphQLInputObjectType.newInputObject;
 import static graphql.schema.GraphQLObjectType.newObject;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
+import static org.g2ql.geode.GeodeAsyncDataFetcher.async;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.AnnotatedElement;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.math.BigDecimal;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 import graphql.Scalars;
 import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLEnumType;
 import graphql.schema.GraphQLFieldDefinition;
 import graphql.schema.GraphQLInputObjectField;
 import graphql.schema.GraphQLInputObjectType;
 import graphql.schema.GraphQLInputType;
 import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNonNull;
 import graphql.schema.GraphQLObjectType;
 import graphql.schema.GraphQLOutputType;
 import graphql.schema.GraphQLScalarType;
 import graphql.schema.GraphQLSchema;
-import graphql.schema.GraphQLType;
 import graphql.schema.GraphQLTypeReference;
 import org.apache.logging.log4j.Logger;
-import org.g2ql.annotation.GeodeGraphQLConnection;
-import org.g2ql.annotation.GeodeGraphQLDocumentation;
-import org.g2ql.annotation.GeodeGraphQLIgnore;
 import org.g2ql.geode.GeodeCollectionTypeDataFetcher;
 import org.g2ql.geode.GeodeConnectionTypeDataFetcher;
 import org.g2ql.geode.GeodeCreateDataFetcher;
 import org.g2ql.geode.GeodeDataFetcher;
+import org.g2ql.geode.GeodeDestroyAllDataFetcher;
 import org.g2ql.geode.GeodeDestroyDataFetcher;
+import org.g2ql.geode.GeodeEventPublisher;
+import org.g2ql.geode.GeodeNearCache;
+import org.g2ql.geode.GeodePageDataFetcher;
+import org.g2ql.geode.GeodePropertyDataFetcher;
+import org.g2ql.geode.GeodePutAllDataFetcher;
 import org.g2ql.geode.GeodePutDataFetcher;
+import org.g2ql.geode.GeodeQueryCache;
+import org.g2ql.geode.GeodeSubscriptionDataFetcher;
+import org.g2ql.geode.GeodeTransactionalExecutionStrategy;
+import org.g2ql.geode.GeodeWhereClause;
+import org.g2ql.graphql.SchemaModel.FieldModel;
+import org.g2ql.graphql.SchemaModel.RegionModel;
+import org.g2ql.graphql.SchemaModel.TypeModel;
 
 import org.apache.geode.cache.Cache;
 import org.apache.geode.cache.Region;
@@ -57,366 +62,516 @@ import org.apache.geode.cache.RegionAttributes;
 import org.apache.geode.cache.query.Index;
 import org.apache.geode.internal.logging.LogService;
 
+/**
+ * Builds the schema of the regions of a cache. The query, mutation and subscription fields of
+ * every region are kept, so a region created or destroyed later only has its own fields generated
+ * or dropped, and the types of its value class are reused if they were already built. Not thread
+ * safe.
+ *
+ * <p>
+ * The types and data fetchers of a region are built from its {@link SchemaModel} alone. The model
+ * is read from the classes and indexes of the region, unless it is given by the model of an
+ * earlier run of an unchanged cluster, in which case the domain classes are not reflected on.
+ */
 class GraphQLSchemaBuilder extends GraphQLSchema.Builder {
   private static final Logger logger = LogService.getLogger();
-  private final Map<Class<?>, GraphQLType> valueCache = new HashMap<>();
+  private static final Map<String, GraphQLScalarType> scalars = new HashMap<>();
+
+  static {
+    Stream.of(Scalars.GraphQLString, Scalars.GraphQLInt, Scalars.GraphQLShort,
+        Scalars.GraphQLFloat, Scalars.GraphQLLong, Scalars.GraphQLBoolean,
+        Scalars.GraphQLBigDecimal, JavaScalars.GraphQLUUID, JavaScalars.GraphQLDate,
+        JavaScalars.GraphQLLocalDateTime, JavaScalars.GraphQLInstant, JavaScalars.GraphQLLocalDate)
+        .forEach(scalar -> scalars.put(scalar.getName(), scalar));
+  }
+
+  // by type name, which is the simple name of the value class
+  private final Map<String, GraphQLObjectType> valueCache = new HashMap<>();
+  private final Map<String, GraphQLObjectType> pageCache = new HashMap<>();
+  private final Map<String, RegionModel> regionModels = new TreeMap<>();
+  // the indexed expressions of every region when its fields were built
+  private final Map<String, Set<String>> regionIndexes = new HashMap<>();
+  private final Map<String, List<GraphQLFieldDefinition>> queryFields = new TreeMap<>();
+  private final Map<String, List<GraphQLFieldDefinition>> mutationFields = new TreeMap<>();
+  private final Map<String, GraphQLFieldDefinition> subscriptionFields = new TreeMap<>();
+  // the where argument of every region, shared by its query and subscription fields
+  private final Map<String, GraphQLArgument> whereArguments = new HashMap<>();
+  private GraphQLObjectType pageInfoType;
+  private GraphQLEnumType operationType;
   private Cache cache;
+  private GeodeQueryCache queryCache;
 
   GraphQLSchemaBuilder(Cache cache) {
+    this(cache, null);
+  }
+
+  /**
+   * Builds the schema of the regions of the cache with the given model, reading the model of the
+   * regions it does not have from their classes.
+   *
+   * @param model the model saved by an earlier run of the same cluster, or null
+   */
+  GraphQLSchemaBuilder(Cache cache, SchemaModel model) {
     this.cache = cache;
+    this.queryCache = new GeodeQueryCache(cache);
+    cache.rootRegions().stream().filter(SchemaModel::isSchemaRegion)
+        .forEach(region -> addRegionFields(region,
+            model == null ? null : model.getRegion(region.getName())));
+    updateTypes();
+    super.additionalDirectives(
+        Collections.singleton(GeodeTransactionalExecutionStrategy.TRANSACTIONAL));
+  }
+
+  /**
+   * Returns the model of the regions currently in the schema.
+   */
+  SchemaModel getModel() {
+    return new SchemaModel(new ArrayList<>(regionModels.values()));
+  }
+
+  /**
+   * Adds the fields of a region created after the schema was built, if it is a root region of
+   * the cache that is part of the schema.
+   *
+   * @return true if the schema changed
+   */
+  boolean addRegion(Region<?, ?> region) {
+    if (region.getParentRegion() != null || !cache.rootRegions().contains(region)
+        || !SchemaModel.isSchemaRegion(region)) {
+      return false;
+    }
+    addRegionFields(region, null);
+    updateTypes();
+    return true;
+  }
+
+  /**
+   * Rebuilds the fields of the regions whose indexes changed since their fields were built, as
+   * Geode tells no one about the indexes created or removed later.
+   *
+   * @return true if the schema changed
+   */
+  boolean updateIndexes() {
+    boolean changed = false;
+    for (String regionName : new ArrayList<>(regionModels.keySet())) {
+      Region<?, ?> region = cache.getRegion(regionName);
+      if (region != null && !getIndexedExpressions(cache.getQueryService().getIndexes(region))
+          .equals(regionIndexes.get(regionName))) {
+        logger.info("Indexes of region {} changed, rebuilding its fields", regionName);
+        addRegionFields(region, null);
+        changed = true;
+      }
+    }
+    if (changed) {
+      updateTypes();
+    }
+    return changed;
+  }
+
+  /**
+   * Drops the fields of a region.
+   *
+   * @return true if the schema changed
+   */
+  boolean removeRegion(String regionName) {
+    boolean removed = queryFields.remove(regionName) != null;
+    removed |= mutationFields.remove(regionName) != null;
+    removed |= subscriptionFields.remove(regionName) != null;
+    whereArguments.remove(regionName);
+    regionModels.remove(regionName);
+    regionIndexes.remove(regionName);
+    if (removed) {
+      updateTypes();
+    }
+    return removed;
+  }
+
+  private void addRegionFields(Region<?, ?> region, RegionModel model) {
+    Collection<Index> indexes = cache.getQueryService().getIndexes(region);
+    regionIndexes.put(region.getName(), getIndexedExpressions(indexes));
+    if (model == null) {
+      logger.info("Indexed fields for region {} are {}", region.getName(),
+          indexes.stream().map(Index::getIndexedExpression).collect(joining(",")));
+      model = SchemaModel.of(region, indexes);
+    }
+    GeodeNearCache.configure(region);
+    regionModels.put(region.getName(), model);
+
+    // the fetchers convert keys and values to the classes of the region
+    RegionAttributes<?, ?> attributes = region.getAttributes();
+    Class<?> keyClass = attributes.getKeyConstraint();
+    if (keyClass == null)
+      keyClass = String.class;
+    Class<?> valueClass = attributes.getValueConstraint();
+    if (valueClass == null)
+      valueClass = String.class;
+
+    queryFields.put(region.getName(), getQueryFieldDefinition(model, keyClass));
+    mutationFields.put(region.getName(), getMutationFieldDefinition(model, valueClass));
+    subscriptionFields.put(region.getName(), getSubscriptionFieldDefinition(model));
+  }
+
+  private static Set<String> getIndexedExpressions(Collection<Index> indexes) {
+    return indexes.stream().map(Index::getIndexedExpression).collect(toSet());
+  }
+
+  private void updateTypes() {
     super.query(getQueryType());
     super.mutation(getMutationType());
+    super.subscription(subscriptionFields.isEmpty() ? null : getSubscriptionType());
   }
 
   private GraphQLObjectType getQueryType() {
     GraphQLObjectType.Builder queryType = newObject().name("QueryType_Geode")
         .description("All encompassing schema for this Geode Cluster");
-    Set<Region<?, ?>> userRegions = cache.rootRegions();
-
-    userRegions.stream().filter(r -> isNotIgnored(r.getAttributes().getValueConstraint()))
-        .forEach(region -> queryType.fields(getQueryFieldDefinition(region.getName(),
-            region.getAttributes(), cache.getQueryService().getIndexes(region))));
-
+    queryFields.values().forEach(queryType::fields);
     return queryType.build();
   }
 
   private GraphQLObjectType getMutationType() {
     GraphQLObjectType.Builder mutationType = newObject().name("MutationType_Geode")
         .description("All encompassing schema for this Geode Cluster");
-
-    Set<Region<?, ?>> userRegions = cache.rootRegions();
-
-    userRegions.stream().filter(r -> isNotIgnored(r.getAttributes().getValueConstraint()))
-        .forEach(region -> mutationType
-            .fields(getMutationFieldDefinition(region.getName(), region.getAttributes())));
-
+    mutationFields.values().forEach(mutationType::fields);
     return mutationType.build();
   }
 
-  private List<GraphQLFieldDefinition> getMutationFieldDefinition(String regionName,
-      RegionAttributes<?, ?> regionAttributes) {
-    Class<?> valueClass = regionAttributes.getValueConstraint();
-    if (valueClass == null) {
-      valueClass = String.class;
-    }
-
-    String schemaDocumentation = getSchemaDocumentation(regionAttributes.getValueConstraint());
-    GraphQLArgument key = getArgument(regionAttributes.getKeyConstraint());
+  private GraphQLObjectType getSubscriptionType() {
+    return newObject().name("SubscriptionType_Geode")
+        .description("The changes of the entries of this Geode Cluster")
+        .fields(new ArrayList<>(subscriptionFields.values())).build();
+  }
 
-    List<GraphQLFieldDefinition> mutations = new ArrayList<>();
-    if (isBasicAttributeType(valueClass)) {
-      GraphQLArgument input = getScalarInputArgument(valueClass);
-      GraphQLScalarType type = (GraphQLScalarType) getScalarType(valueClass);
-
-      mutations.add(newFieldDefinition().name("create" + regionName)
-          .description(schemaDocumentation).type(type).argument(key).argument(input)
-          .dataFetcher(new GeodeCreateDataFetcher(cache, regionName, valueClass)).build());
-      mutations.add(newFieldDefinition().name("put" + regionName).description(schemaDocumentation)
-          .type(type).argument(key).argument(input)
-          .dataFetcher(new GeodePutDataFetcher(cache, regionName, valueClass)).build());
-      mutations.add(newFieldDefinition().name("destroy" + regionName)
-          .description(schemaDocumentation).type(type).argument(key).argument(input)
-          .dataFetcher(new GeodeDestroyDataFetcher(cache, regionName)).build());
+  private List<GraphQLFieldDefinition> getMutationFieldDefinition(RegionModel model,
+      Class<?> valueClass) {
+    String regionName = model.getName();
+    String schemaDocumentation = model.getDescription();
+    GraphQLArgument key = getArgument(model.getKeyType());
+
+    GraphQLArgument input;
+    GraphQLOutputType type;
+    if (model.getValue() == null) {
+      input = getScalarInputArgument(model.getValueType());
+      type = getScalarType(model.getValueType());
     } else {
-      GraphQLArgument input = getObjectInputArgument(regionName, valueClass);
-      GraphQLObjectType type = (GraphQLObjectType) getObjectType(regionName, valueClass);
-
-      mutations.add(newFieldDefinition().name("create" + regionName)
-          .description(schemaDocumentation).type(type).argument(key).argument(input)
-          .dataFetcher(new GeodeCreateDataFetcher(cache, regionName, valueClass)).build());
-      mutations.add(newFieldDefinition().name("put" + regionName).description(schemaDocumentation)
-          .type(type).argument(key).argument(input)
-          .dataFetcher(new GeodePutDataFetcher(cache, regionName, valueClass)).build());
-      mutations.add(newFieldDefinition().name("destroy" + regionName)
-          .description(schemaDocumentation).type(type).argument(key).argument(input)
-          .dataFetcher(new GeodeDestroyDataFetcher(cache, regionName)).build());
+      input = getObjectInputArgument(regionName, model.getValue());
+      type = getObjectType(regionName, model.getValue());
     }
+
+    List<GraphQLFieldDefinition> mutations = new ArrayList<>();
+    mutations.add(newFieldDefinition().name("create" + regionName)
+        .description(schemaDocumentation).type(type).argument(key).argument(input)
+        .dataFetcher(new GeodeCreateDataFetcher(cache, regionName, valueClass)).build());
+    mutations.add(newFieldDefinition().name("put" + regionName).description(schemaDocumentation)
+        .type(type).argument(key).argument(input)
+        .dataFetcher(new GeodePutDataFetcher(cache, regionName, valueClass)).build());
+    mutations.add(newFieldDefinition().name("destroy" + regionName)
+        .description(schemaDocumentation).type(type).argument(key).argument(input)
+        .dataFetcher(new GeodeDestroyDataFetcher(cache, regionName)).build());
+    mutations.addAll(getBulkMutationFieldDefinitions(regionName, model.getKeyType(), valueClass,
+        input, schemaDocumentation));
     return mutations;
   }
 
-  private List<GraphQLFieldDefinition> getQueryFieldDefinition(String regionName,
-      RegionAttributes<?, ?> regionAttributes, Collection<Index> indexes) {
-    Class<?> valueClass = regionAttributes.getValueConstraint();
-    if (valueClass == null)
-      valueClass = String.class;
+  /**
+   * Bulk mutations taking a list of entries or keys, and answering with the status of each.
+   */
+  private List<GraphQLFieldDefinition> getBulkMutationFieldDefinitions(String regionName,
+      String keyType, Class<?> valueClass, GraphQLArgument input, String schemaDocumentation) {
+    GraphQLScalarType keyScalar = getScalarType(keyType);
+
+    GraphQLInputObjectType entryType = newInputObject().name(regionName + "EntryInput")
+        .field(newInputObjectField().name("key").type(new GraphQLNonNull(keyScalar)))
+        .field(newInputObjectField().name("value").type(input.getType())).build();
+    GraphQLObjectType statusType = newObject().name(regionName + "EntryStatus")
+        .field(newFieldDefinition().name("key").type(keyScalar))
+        .field(newFieldDefinition().name("status").type(Scalars.GraphQLString))
+        .field(newFieldDefinition().name("error").type(Scalars.GraphQLString)).build();
+
+    List<GraphQLFieldDefinition> mutations = new ArrayList<>();
+    mutations.add(newFieldDefinition().name("putAll" + regionName)
+        .description(schemaDocumentation).type(new GraphQLList(statusType))
+        .argument(newArgument().name("entries").type(new GraphQLList(entryType)))
+        .dataFetcher(new GeodePutAllDataFetcher(cache, regionName, valueClass)).build());
+    mutations.add(newFieldDefinition().name("destroyAll" + regionName)
+        .description(schemaDocumentation).type(new GraphQLList(statusType))
+        .argument(newArgument().name("keys").type(new GraphQLList(keyScalar)))
+        .dataFetcher(new GeodeDestroyAllDataFetcher(cache, regionName)).build());
+    return mutations;
+  }
 
-    String schemaDocumentation = getSchemaDocumentation(valueClass);
+  private List<GraphQLFieldDefinition> getQueryFieldDefinition(RegionModel model,
+      Class<?> keyClass) {
+    String regionName = model.getName();
+    String schemaDocumentation = model.getDescription();
 
     List<GraphQLFieldDefinition> queries = new ArrayList<>();
-    if (isBasicAttributeType(valueClass)) {
+    if (model.getValue() == null) {
       queries.add(newFieldDefinition().name(regionName).description(schemaDocumentation)
-          .type((GraphQLScalarType) getScalarType(valueClass))
-          .dataFetcher(new GeodeDataFetcher(cache, regionName))
-          .argument(getArgument(regionAttributes.getKeyConstraint())).build());
+          .type(getScalarType(model.getValueType()))
+          .dataFetcher(async(new GeodeDataFetcher(cache, regionName, queryCache)))
+          .argument(getArgument(model.getKeyType())).build());
 
       queries.add(newFieldDefinition().name(regionName + "s").description(schemaDocumentation)
-          .type(new GraphQLList(getScalarType(valueClass)))
-          .dataFetcher(new GeodeCollectionTypeDataFetcher(cache, regionName))
-          .argument(getListArgument(regionAttributes.getKeyConstraint())).build());
+          .type(new GraphQLList(getScalarType(model.getValueType())))
+          .dataFetcher(async(new GeodeCollectionTypeDataFetcher(cache, regionName, queryCache)))
+          .argument(getListArgument(model.getKeyType()))
+          .argument(getPagingArgument(GeodePageDataFetcher.LIMIT, Scalars.GraphQLInt))
+          .argument(getPagingArgument(GeodePageDataFetcher.OFFSET, Scalars.GraphQLInt)).build());
     } else {
       List<GraphQLArgument> arguments = new ArrayList<>();
-      arguments.add(getArgument(regionAttributes.getKeyConstraint()));
+      arguments.add(getArgument(model.getKeyType()));
 
-      Set<String> indexedFields =
-          indexes.stream().map(Index::getIndexedExpression).collect(toSet());
-      logger.info("Indexed fields for region {} are {}", regionName,
-          indexedFields.stream().collect(joining(",")));
+      List<FieldModel> filterFields = model.getFilterFields();
       // add arguments for each indexed field
-      arguments.addAll(Arrays.stream(regionAttributes.getValueConstraint().getDeclaredFields())
-          .filter(field -> indexedFields.contains(field.getName()))
-          .filter(field -> isBasicAttributeType(field.getType())).map(this::getArgumentForField)
-          .collect(toList()));
+      arguments.addAll(filterFields.stream().map(this::getArgumentForField).collect(toList()));
+
+      // boolean filter over the indexed fields, shared by both query fields
+      GraphQLArgument where =
+          filterFields.isEmpty() ? null : getWhereArgument(regionName, filterFields);
+      if (where != null) {
+        arguments.add(where);
+      }
 
       queries.add(newFieldDefinition().name(regionName).description(schemaDocumentation)
-          .type((GraphQLObjectType) getObjectType(regionName, valueClass))
-          .dataFetcher(new GeodeDataFetcher(cache, regionName)).argument(arguments).build());
+          .type(getObjectType(regionName, model.getValue()))
+          .dataFetcher(async(new GeodeDataFetcher(cache, regionName, queryCache)))
+          .argument(arguments).build());
 
       List<GraphQLArgument> collectionArguments = new ArrayList<>();
-      collectionArguments.add(getListArgument(regionAttributes.getKeyConstraint()));
+      collectionArguments.add(getListArgument(model.getKeyType()));
 
       // add arguments for each indexed field
-      collectionArguments
-          .addAll(Arrays.stream(regionAttributes.getValueConstraint().getDeclaredFields())
-              .filter(field -> indexedFields.contains(field.getName()))
-              .filter(field -> isBasicAttributeType(field.getType()))
-              .map(this::getListArgumentForField).collect(toList()));
+      List<GraphQLArgument> filterArguments =
+          filterFields.stream().map(this::getListArgumentForField).collect(toList());
+      if (where != null) {
+        filterArguments.add(where);
+      }
+      collectionArguments.addAll(filterArguments);
+      collectionArguments.add(getPagingArgument(GeodePageDataFetcher.LIMIT, Scalars.GraphQLInt));
+      collectionArguments.add(getPagingArgument(GeodePageDataFetcher.OFFSET, Scalars.GraphQLInt));
 
       queries.add(newFieldDefinition().name(regionName + "s").description(schemaDocumentation)
-          .type(new GraphQLList(getObjectType(regionName, regionAttributes.getValueConstraint())))
-          .dataFetcher(new GeodeCollectionTypeDataFetcher(cache, regionName))
+          .type(new GraphQLList(getObjectType(regionName, model.getValue())))
+          .dataFetcher(async(new GeodeCollectionTypeDataFetcher(cache, regionName, queryCache)))
           .argument(collectionArguments).build());
+
+      queries.add(newFieldDefinition().name(regionName + "sPage").description(schemaDocumentation)
+          .type(getPageType(regionName, model.getValue()))
+          .dataFetcher(async(new GeodePageDataFetcher(cache, regionName, keyClass, queryCache)))
+          .argument(filterArguments)
+          .argument(getPagingArgument(GeodePageDataFetcher.FIRST, Scalars.GraphQLInt))
+          .argument(getPagingArgument(GeodePageDataFetcher.AFTER, Scalars.GraphQLString)).build());
     }
     return queries;
   }
 
-  private GraphQLType getScalarType(Class<?> valueClass) {
-    if (valueCache.containsKey(valueClass))
-      return valueCache.get(valueClass);
+  /**
+   * Creates the subscription to the changes of a region, filtered with the same arguments as the
+   * collection query of the region.
+   */
+  private GraphQLFieldDefinition getSubscriptionFieldDefinition(RegionModel model) {
+    String regionName = model.getName();
+    List<GraphQLArgument> arguments = new ArrayList<>();
+    arguments.add(getListArgument(model.getKeyType()));
+    GraphQLOutputType valueType;
+    if (model.getValue() == null) {
+      valueType = getScalarType(model.getValueType());
+    } else {
+      valueType = getObjectType(regionName, model.getValue());
+      List<FieldModel> filterFields = model.getFilterFields();
+      arguments.addAll(filterFields.stream().map(this::getListArgumentForField).collect(toList()));
+      if (!filterFields.isEmpty()) {
+        arguments.add(getWhereArgument(regionName, filterFields));
+      }
+    }
 
-    GraphQLType valueType = getBasicAttributeType(valueClass);
-    valueCache.put(valueClass, valueType);
-    return valueType;
+    GraphQLObjectType eventType = newObject().name(regionName + "Event")
+        .description("A change of an entry of " + regionName)
+        .field(newFieldDefinition().name("key").type(getScalarType(model.getKeyType())))
+        .field(newFieldDefinition().name("operation").type(new GraphQLNonNull(getOperationType())))
+        .field(newFieldDefinition().name("value").description("The new value, null if the entry "
+            + "was destroyed or no longer matches the filter").type(valueType))
+        .build();
+    return newFieldDefinition().name("on" + regionName + "Changed")
+        .description(model.getDescription()).type(eventType).argument(arguments)
+        .dataFetcher(new GeodeSubscriptionDataFetcher(cache, regionName)).build();
   }
 
-  private GraphQLType getObjectType(String regionName, Class<?> valueClass) {
-    if (valueCache.containsKey(valueClass))
-      return valueCache.get(valueClass);
+  private GraphQLEnumType getOperationType() {
+    if (operationType == null) {
+      operationType = newEnum().name("EntryOperation")
+          .description("The operation that changed an entry")
+          .value(GeodeEventPublisher.CREATE).value(GeodeEventPublisher.UPDATE)
+          .value(GeodeEventPublisher.DESTROY).value(GeodeEventPublisher.INVALIDATE).build();
+    }
+    return operationType;
+  }
 
-    GraphQLObjectType.Builder objectType = newObject().name(valueClass.getSimpleName())
-        .description(getSchemaDocumentation(valueClass));
+  private GraphQLScalarType getScalarType(String name) {
+    GraphQLScalarType scalar = scalars.get(name);
+    if (scalar == null) {
+      throw new UnsupportedOperationException("Unknown scalar '" + name + "'");
+    }
+    return scalar;
+  }
+
+  private GraphQLObjectType getObjectType(String regionName, TypeModel valueType) {
+    if (valueCache.containsKey(valueType.getName()))
+      return valueCache.get(valueType.getName());
+
+    GraphQLObjectType.Builder objectType =
+        newObject().name(valueType.getName()).description(valueType.getDescription());
 
     // non connection type
-    List<GraphQLFieldDefinition> fields = Arrays.stream(valueClass.getDeclaredFields())
-        .filter(f -> !isConnectionType(f)).map(this::getObjectField).collect(toList());
+    List<GraphQLFieldDefinition> fields = valueType.getFields().stream()
+        .filter(f -> f.getConnection() == null).map(this::getObjectField).collect(toList());
 
     // connection type
-    fields.addAll(Arrays.stream(valueClass.getDeclaredFields()).filter(this::isConnectionType)
+    fields.addAll(valueType.getFields().stream().filter(f -> f.getConnection() != null)
         .map(f -> getConnectionType(regionName, f)).collect(toList()));
 
     GraphQLObjectType answer = objectType.fields(fields).build();
-    valueCache.put(valueClass, answer);
+    valueCache.put(valueType.getName(), answer);
 
     return answer;
   }
 
-  private GraphQLArgument getArgument(Class<?> key) {
-    if (key == null)
-      key = String.class;
-    GraphQLType type = getBasicAttributeType(key);
+  /**
+   * Creates the Relay style page type of a value class, holding the edges of one page with their
+   * cursors, the page info and the total count of matching values.
+   */
+  private GraphQLObjectType getPageType(String regionName, TypeModel valueType) {
+    if (pageCache.containsKey(valueType.getName()))
+      return pageCache.get(valueType.getName());
+
+    if (pageInfoType == null) {
+      pageInfoType = newObject().name("PageInfo")
+          .field(newFieldDefinition().name("hasNextPage")
+              .type(new GraphQLNonNull(Scalars.GraphQLBoolean)))
+          .field(newFieldDefinition().name("endCursor").type(Scalars.GraphQLString)).build();
+    }
+
+    GraphQLObjectType edgeType = newObject().name(valueType.getName() + "Edge")
+        .field(newFieldDefinition().name("cursor").type(new GraphQLNonNull(Scalars.GraphQLString)))
+        .field(newFieldDefinition().name("node").type(getObjectType(regionName, valueType)))
+        .build();
+
+    GraphQLObjectType answer = newObject().name(valueType.getName() + "Page")
+        .description(valueType.getDescription())
+        .field(newFieldDefinition().name("totalCount").type(Scalars.GraphQLInt))
+        .field(newFieldDefinition().name("pageInfo").type(new GraphQLNonNull(pageInfoType)))
+        .field(newFieldDefinition().name("edges").type(new GraphQLList(edgeType))).build();
+    pageCache.put(valueType.getName(), answer);
+    return answer;
+  }
+
+  private GraphQLArgument getPagingArgument(String name, GraphQLInputType type) {
+    return newArgument().name(name).type(type).build();
+  }
+
+  private GraphQLArgument getArgument(String keyType) {
     return newArgument().name("key") // key is the argument for any type in geode
-        .type((GraphQLInputType) type).build();
+        .type(getScalarType(keyType)).build();
   }
 
-  private GraphQLArgument getScalarInputArgument(Class<?> value) {
-    GraphQLType type = getBasicAttributeType(value);
+  private GraphQLArgument getScalarInputArgument(String valueType) {
     return newArgument().name("value") // value is the argument for scalar KV
-        .type((GraphQLInputType) type).build();
+        .type(getScalarType(valueType)).build();
   }
 
-  private GraphQLArgument getObjectInputArgument(String regionName, Class<?> valueClass) {
+  private GraphQLArgument getObjectInputArgument(String regionName, TypeModel valueType) {
     GraphQLInputObjectType.Builder inputType =
-        newInputObject().name(valueClass.getSimpleName() + "Input");
+        newInputObject().name(valueType.getName() + "Input");
 
     // non connection type
-    List<GraphQLInputObjectField> fields = Arrays.stream(valueClass.getDeclaredFields())
-        .filter(f -> !isConnectionType(f)).map(this::getInputObjectField).collect(toList());
-
-    // connection type
-    // fields.addAll(Arrays.stream(valueClass.getDeclaredFields()).filter(f -> isConnectionType(f))
-    // .map(f -> getConnectionInputType(regionName, f)).collect(Collectors.toList()));
+    List<GraphQLInputObjectField> fields = valueType.getFields().stream()
+        .filter(f -> f.getConnection() == null).map(this::getInputObjectField).collect(toList());
 
     GraphQLInputObjectType answer = inputType.fields(fields).build();
     return newArgument().name(regionName).type(answer).build();
   }
 
-  private GraphQLArgument getListArgument(Class<?> key) {
-    if (key == null)
-      key = String.class;
-    GraphQLType type = getBasicAttributeType(key);
+  private GraphQLArgument getListArgument(String keyType) {
     return newArgument().name("key") // key is the argument for any type in geode
-        .type(new GraphQLList(type)).build();
+        .type(new GraphQLList(getScalarType(keyType))).build();
+  }
+
+  private GraphQLArgument getArgumentForField(FieldModel field) {
+    return newArgument().name(field.getName()).type(getScalarType(field.getType())).build();
   }
 
-  private GraphQLArgument getArgumentForField(Field field) {
-    GraphQLType type = getBasicAttributeType(field.getType());
-    return newArgument().name(field.getName()).type((GraphQLInputType) type).build();
+  private GraphQLArgument getListArgumentForField(FieldModel field) {
+    return newArgument().name(field.getName())
+        .type(new GraphQLList(getScalarType(field.getType()))).build();
   }
 
-  private GraphQLArgument getListArgumentForField(Field field) {
-    GraphQLType type = getBasicAttributeType(field.getType());
-    return newArgument().name(field.getName()).type(new GraphQLList(type)).build();
+  /**
+   * Creates the {@code where} argument of a region, a boolean expression over its indexed fields
+   * that is compiled into a single OQL predicate by {@link GeodeWhereClause}.
+   */
+  private GraphQLArgument getWhereArgument(String regionName, List<FieldModel> indexedFields) {
+    if (whereArguments.containsKey(regionName))
+      return whereArguments.get(regionName);
+
+    String typeName = regionName + "Where";
+    GraphQLTypeReference whereType = new GraphQLTypeReference(typeName);
+
+    List<GraphQLInputObjectField> fields = indexedFields.stream()
+        .map(field -> newInputObjectField().name(field.getName())
+            .description(field.getDescription())
+            .type(new GraphQLList(getScalarType(field.getType()))).build())
+        .collect(toList());
+    fields.add(newInputObjectField().name(GeodeWhereClause.AND)
+        .type(new GraphQLList(whereType)).build());
+    fields.add(newInputObjectField().name(GeodeWhereClause.OR)
+        .type(new GraphQLList(whereType)).build());
+    fields.add(newInputObjectField().name(GeodeWhereClause.NOT).type(whereType).build());
+
+    GraphQLInputObjectType answer = newInputObject().name(typeName)
+        .description("Filter on the indexed fields of " + regionName).fields(fields).build();
+    GraphQLArgument argument = newArgument().name(GeodeWhereClause.WHERE).type(answer).build();
+    whereArguments.put(regionName, argument);
+    return argument;
   }
 
-  private GraphQLFieldDefinition getObjectField(Field field) {
-    try {
-      GraphQLType type = getBasicAttributeType(field.getType());
-      return newFieldDefinition().name(field.getName()).description(getSchemaDocumentation(field))
-          .type((GraphQLOutputType) type).build();
-    } catch (UnsupportedOperationException ex) {
-      // the field is non-java, so go deep
-      GraphQLObjectType embedded = newObject().name(field.getType().getSimpleName())
-          .description(getSchemaDocumentation(field))
-          .fields(Arrays.stream(field.getType().getDeclaredFields())
-              .filter(f -> !f.getName().equalsIgnoreCase("this$0")).map(this::getObjectField)
-              .collect(toList()))
-          .build();
-      return newFieldDefinition().name(field.getName()).type(embedded).build();
+  private GraphQLFieldDefinition getObjectField(FieldModel field) {
+    if (field.getEmbedded() == null) {
+      return newFieldDefinition().name(field.getName()).description(field.getDescription())
+          .type(getScalarType(field.getType()))
+          .dataFetcher(new GeodePropertyDataFetcher(field.getName())).build();
     }
+    // the field is non-java, so go deep
+    TypeModel embeddedType = field.getEmbedded();
+    GraphQLObjectType embedded = newObject().name(embeddedType.getName())
+        .description(embeddedType.getDescription())
+        .fields(embeddedType.getFields().stream().map(this::getObjectField).collect(toList()))
+        .build();
+    return newFieldDefinition().name(field.getName()).type(embedded)
+        .dataFetcher(new GeodePropertyDataFetcher(field.getName())).build();
   }
 
-  private GraphQLInputObjectField getInputObjectField(Field field) {
-    try {
-      GraphQLType type = getBasicAttributeType(field.getType());
+  private GraphQLInputObjectField getInputObjectField(FieldModel field) {
+    if (field.getEmbedded() == null) {
       return GraphQLInputObjectField.newInputObjectField().name(field.getName())
-          .description(getSchemaDocumentation(field)).type((GraphQLInputType) type).build();
-    } catch (UnsupportedOperationException ex) {
-      // the field is non-java, so go deep
-      GraphQLInputType embedded = newInputObject().name(field.getType().getSimpleName() + "Input")
-          .description(getSchemaDocumentation(field))
-          .fields(Arrays.stream(field.getType().getDeclaredFields())
-              .filter(f -> !f.getName().equalsIgnoreCase("this$0")).map(this::getInputObjectField)
-              .collect(toList()))
-          .build();
-      return GraphQLInputObjectField.newInputObjectField().name(field.getName()).type(embedded)
-          .build();
-
+          .description(field.getDescription()).type(getScalarType(field.getType())).build();
     }
+    // the field is non-java, so go deep
+    TypeModel embeddedType = field.getEmbedded();
+    GraphQLInputType embedded = newInputObject().name(embeddedType.getName() + "Input")
+        .description(embeddedType.getDescription())
+        .fields(embeddedType.getFields().stream().map(this::getInputObjectField)
+            .collect(toList()))
+        .build();
+    return GraphQLInputObjectField.newInputObjectField().name(field.getName()).type(embedded)
+        .build();
   }
 
-  private GraphQLFieldDefinition getConnectionType(String regionName, Field field) {
-    String connectionName = getConnectionName(field);
-    GraphQLOutputType connectionType = new GraphQLList(new GraphQLTypeReference(connectionName));
-    return newFieldDefinition().name(field.getName()).description(getSchemaDocumentation(field))
+  private GraphQLFieldDefinition getConnectionType(String regionName, FieldModel field) {
+    GraphQLOutputType connectionType =
+        new GraphQLList(new GraphQLTypeReference(field.getConnection()));
+    return newFieldDefinition().name(field.getName()).description(field.getDescription())
         .type(connectionType)
         .dataFetcher(new GeodeConnectionTypeDataFetcher(cache, regionName, field.getName()))
         .build();
   }
-
-  private boolean isBasicAttributeType(Class type) {
-    try {
-      return getBasicAttributeType(type) != null;
-    } catch (UnsupportedOperationException e) {
-      return false;
-    }
-  }
-
-  private GraphQLType getBasicAttributeType(Class javaType) {
-    if (String.class.isAssignableFrom(javaType))
-      return Scalars.GraphQLString;
-    else if (UUID.class.isAssignableFrom(javaType))
-      return JavaScalars.GraphQLUUID;
-    else if (Integer.class.isAssignableFrom(javaType) || int.class.isAssignableFrom(javaType))
-      return Scalars.GraphQLInt;
-    else if (Short.class.isAssignableFrom(javaType) || short.class.isAssignableFrom(javaType))
-      return Scalars.GraphQLShort;
-    else if (Float.class.isAssignableFrom(javaType) || float.class.isAssignableFrom(javaType)
-        || Double.class.isAssignableFrom(javaType) || double.class.isAssignableFrom(javaType))
-      return Scalars.GraphQLFloat;
-    else if (Long.class.isAssignableFrom(javaType) || long.class.isAssignableFrom(javaType))
-      return Scalars.GraphQLLong;
-    else if (Boolean.class.isAssignableFrom(javaType) || boolean.class.isAssignableFrom(javaType))
-      return Scalars.GraphQLBoolean;
-    else if (Date.class.isAssignableFrom(javaType))
-      return JavaScalars.GraphQLDate;
-    else if (LocalDateTime.class.isAssignableFrom(javaType))
-      return JavaScalars.GraphQLLocalDateTime;
-    else if (Instant.class.isAssignableFrom(javaType))
-      return JavaScalars.GraphQLInstant;
-    else if (LocalDate.class.isAssignableFrom(javaType))
-      return JavaScalars.GraphQLLocalDate;
-    else if (BigDecimal.class.isAssignableFrom(javaType)) {
-      return Scalars.GraphQLBigDecimal;
-    }
-
-    throw new UnsupportedOperationException(
-        "Class could not be mapped to GraphQL: '" + javaType.getTypeName() + "'");
-  }
-
-  private String getConnectionName(AnnotatedElement annotatedElement) {
-    if (annotatedElement != null) {
-      // GeodeGraphQLConnection connection =
-      // annotatedElement.getAnnotation(GeodeGraphQLConnection.class);
-      // return connection != null ? connection.value() : null;
-      for (Annotation a : annotatedElement.getAnnotations()) {
-        if (GeodeGraphQLConnection.class.getName().equalsIgnoreCase(a.annotationType().getName())) {
-          return getAnnotationValue(a);
-        }
-      }
-    }
-    return null;
-  }
-
-  private boolean isConnectionType(AnnotatedElement annotatedElement) {
-    if (annotatedElement != null) {
-      // GeodeGraphQLConnection connection =
-      // annotatedElement.getDeclaredAnnotation(GeodeGraphQLConnection.class);
-      // return connection != null;
-      for (Annotation a : annotatedElement.getAnnotations()) {
-        if (GeodeGraphQLConnection.class.getName().equalsIgnoreCase(a.annotationType().getName())) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-
-  private boolean isNotIgnored(AnnotatedElement annotatedElement) {
-    if (annotatedElement != null) {
-      // GeodeGraphQLIgnore ignore =
-      // annotatedElement.getDeclaredAnnotation(GeodeGraphQLIgnore.class);
-      // return ignore == null;
-      for (Annotation a : annotatedElement.getAnnotations()) {
-        if (GeodeGraphQLIgnore.class.getName().equalsIgnoreCase(a.annotationType().getName())) {
-          return false;
-        }
-      }
-    }
-    return true; // for now consider it for regions created with out explicit value class
-  }
-
-  private String getSchemaDocumentation(AnnotatedElement annotatedElement) {
-    if (annotatedElement != null) {
-      // GeodeGraphQLDocumentation schemaDocumentation =
-      // annotatedElement.getAnnotation(GeodeGraphQLDocumentation.class);
-      // return schemaDocumentation != null ? schemaDocumentation.value() : null;
-      for (Annotation a : annotatedElement.getAnnotations()) {
-        if (GeodeGraphQLDocumentation.class.getName()
-            .equalsIgnoreCase(a.annotationType().getName())) {
-          return getAnnotationValue(a);
-        }
-      }
-    }
-    return null;
-  }
-
-  private String getAnnotationValue(Annotation a) {
-    for (Method method : a.annotationType().getDeclaredMethods()) {
-      try {
-        return (String) method.invoke(a, (Object[]) null);
-      } catch (IllegalAccessException | InvocationTargetException e) {
-        e.printStackTrace();
-      }
-    }
-    return null;
-  }
 }
@@ -0,0 +1,56 @@
+package org.g2ql.graphql;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import graphql.ErrorType;
+import graphql.GraphQLError;
+import graphql.GraphQLException;
+import graphql.language.SourceLocation;
+
+/**
+ * Rejects a request whose persisted query cannot be used. The messages are the ones Apollo clients
+ * look for, a client retries with the full query text on {@link #NOT_FOUND}.
+ */
+public class PersistedQueryException extends GraphQLException implements GraphQLError {
+  private static final long serialVersionUID = 1L;
+
+  public static final String NOT_FOUND = "PersistedQueryNotFound";
+  public static final String NOT_SUPPORTED = "PersistedQueryNotSupported";
+  public static final String HASH_MISMATCH = "provided sha does not match query";
+
+  private final String code;
+
+  PersistedQueryException(String message, String code) {
+    super(message);
+    this.code = code;
+  }
+
+  static PersistedQueryException notFound() {
+    return new PersistedQueryException(NOT_FOUND, "PERSISTED_QUERY_NOT_FOUND");
+  }
+
+  static PersistedQueryException notSupported() {
+    return new PersistedQueryException(NOT_SUPPORTED, "PERSISTED_QUERY_NOT_SUPPORTED");
+  }
+
+  static PersistedQueryException hashMismatch() {
+    return new PersistedQueryException(HASH_MISMATCH, "BAD_USER_INPUT");
+  }
+
+  @Override
+  public List<SourceLocation> getLocations() {
+    return null;
+  }
+
+  @Override
+  public ErrorType getErrorType() {
+    return ErrorType.ValidationError;
+  }
+
+  @Override
+  public Map<String, Object> getExtensions() {
+    return Collections.singletonMap("code", code);
+  }
+}
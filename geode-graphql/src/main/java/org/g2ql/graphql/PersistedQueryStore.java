@@ -0,0 +1,141 @@
+package org.g2ql.graphql;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionExistsException;
+import org.apache.geode.cache.RegionShortcut;
+
+/**
+ * Stores query documents by the sha256 hash of their text for automatic persisted queries. A
+ * client sends the hash in the {@code persistedQuery} extension of a request instead of the query,
+ * and sends the full text along with the hash only once the server answered
+ * {@link PersistedQueryException#NOT_FOUND}.
+ *
+ * <p>
+ * The store keeps the {@code g2ql.persistedQueries} most recently used documents, 10000 by
+ * default. If {@code g2ql.persistedQueryRegion} names a region, registrations are also mirrored
+ * into that replicated, heap-evicted region so every member knows the documents registered on any
+ * of them. That region is never exposed in the GraphQL schema.
+ */
+public class PersistedQueryStore {
+  private final static Logger logger = LogManager.getLogger(PersistedQueryStore.class);
+
+  static final int MAX_QUERIES = Integer.getInteger("g2ql.persistedQueries", 10000);
+  static final String REGION_NAME = System.getProperty("g2ql.persistedQueryRegion");
+
+  private static final String PERSISTED_QUERY = "persistedQuery";
+  private static final String SHA256_HASH = "sha256Hash";
+  private static final String VERSION = "version";
+
+  private final com.github.benmanes.caffeine.cache.Cache<String, String> queries;
+  private final Region<String, String> region;
+
+  public PersistedQueryStore(Cache cache) {
+    this(REGION_NAME == null ? null : getOrCreateRegion(cache, REGION_NAME), MAX_QUERIES);
+  }
+
+  PersistedQueryStore(Region<String, String> region, int maxQueries) {
+    this.region = region;
+    this.queries = Caffeine.newBuilder().maximumSize(maxQueries).build();
+  }
+
+  /**
+   * Returns the query text of a request. Without a {@code persistedQuery} extension this is the
+   * given query, otherwise the given query is registered under its hash, or looked up by the hash
+   * when it is missing.
+   *
+   * @throws PersistedQueryException if the hash is unknown or does not match the query
+   */
+  @SuppressWarnings("unchecked")
+  public String resolve(String query, Map<String, Object> extensions) {
+    Object persistedQuery = extensions == null ? null : extensions.get(PERSISTED_QUERY);
+    if (!(persistedQuery instanceof Map)) {
+      return query;
+    }
+    Map<String, Object> hashed = (Map<String, Object>) persistedQuery;
+    Object version = hashed.get(VERSION);
+    Object hash = hashed.get(SHA256_HASH);
+    if (!(hash instanceof String) || (version != null && !"1".equals(version.toString()))) {
+      throw PersistedQueryException.notSupported();
+    }
+    if (query == null) {
+      String answer = get((String) hash);
+      if (answer == null) {
+        throw PersistedQueryException.notFound();
+      }
+      return answer;
+    }
+    if (!sha256(query).equalsIgnoreCase((String) hash)) {
+      throw PersistedQueryException.hashMismatch();
+    }
+    put(((String) hash).toLowerCase(), query);
+    return query;
+  }
+
+  String get(String hash) {
+    String key = hash.toLowerCase();
+    String query = queries.getIfPresent(key);
+    if (query == null && region != null) {
+      query = region.get(key);
+      if (query != null) {
+        queries.put(key, query);
+      }
+    }
+    return query;
+  }
+
+  void put(String hash, String query) {
+    if (queries.getIfPresent(hash) == null) {
+      logger.info("PersistedQueryStore - registering query " + hash);
+      queries.put(hash, query);
+      if (region != null) {
+        region.putIfAbsent(hash, query);
+      }
+    }
+  }
+
+  /**
+   * Returns true if the region mirrors the persisted queries, rather than holding user data.
+   */
+  static boolean isStoreRegion(Region<?, ?> region) {
+    return REGION_NAME != null && REGION_NAME.equals(region.getName());
+  }
+
+  static String sha256(String query) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(query.getBytes(UTF_8));
+      StringBuilder answer = new StringBuilder(2 * digest.length);
+      for (byte b : digest) {
+        answer.append(Character.forDigit((b >> 4) & 0xf, 16));
+        answer.append(Character.forDigit(b & 0xf, 16));
+      }
+      return answer.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Region<String, String> getOrCreateRegion(Cache cache, String regionName) {
+    Region<String, String> region = cache.getRegion(regionName);
+    if (region == null) {
+      try {
+        region = cache.<String, String>createRegionFactory(RegionShortcut.REPLICATE_HEAP_LRU)
+            .setKeyConstraint(String.class).setValueConstraint(String.class).create(regionName);
+        logger.info("PersistedQueryStore - created region " + regionName);
+      } catch (RegionExistsException e) {
+        region = cache.getRegion(regionName);
+      }
+    }
+    return region;
+  }
+}
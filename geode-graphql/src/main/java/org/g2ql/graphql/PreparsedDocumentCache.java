@@ -0,0 +1,61 @@
+package org.g2ql.graphql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+
+/**
+ * A bounded cache of parsed and validated query documents keyed by query text, so the operations
+ * clients send over and over are parsed and validated against the schema only once.
+ *
+ * <p>
+ * A document is only valid for the schema it was validated against, so every schema gets its own
+ * cache. Documents with syntax or validation errors are not kept. The cache keeps the
+ * {@code g2ql.documentCacheSize} most used documents, 1000 by default.
+ */
+public class PreparsedDocumentCache implements PreparsedDocumentProvider {
+  static final int MAX_DOCUMENTS = Integer.getInteger("g2ql.documentCacheSize", 1000);
+
+  private final Cache<String, PreparsedDocumentEntry> documents;
+
+  public PreparsedDocumentCache() {
+    this(MAX_DOCUMENTS);
+  }
+
+  PreparsedDocumentCache(int maxDocuments) {
+    this.documents = Caffeine.newBuilder().maximumSize(maxDocuments).recordStats().build();
+  }
+
+  @Override
+  public PreparsedDocumentEntry get(String query,
+      Function<String, PreparsedDocumentEntry> parseAndValidate) {
+    PreparsedDocumentEntry entry = documents.getIfPresent(query);
+    if (entry == null) {
+      entry = parseAndValidate.apply(query);
+      if (!entry.hasErrors()) {
+        documents.put(query, entry);
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Returns the hit and miss counts of the cache since the schema was built.
+   */
+  public Map<String, Object> getStatistics() {
+    CacheStats stats = documents.stats();
+    Map<String, Object> answer = new LinkedHashMap<>();
+    answer.put("size", documents.estimatedSize());
+    answer.put("hitCount", stats.hitCount());
+    answer.put("missCount", stats.missCount());
+    answer.put("hitRate", stats.hitRate());
+    answer.put("evictionCount", stats.evictionCount());
+    return answer;
+  }
+}
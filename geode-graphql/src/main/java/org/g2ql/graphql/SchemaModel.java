@@ -0,0 +1,407 @@
+package org.g2ql.graphql;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import graphql.Scalars;
+import graphql.schema.GraphQLScalarType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.g2ql.annotation.GeodeGraphQLConnection;
+import org.g2ql.annotation.GeodeGraphQLDocumentation;
+import org.g2ql.annotation.GeodeGraphQLIgnore;
+import org.g2ql.geode.GeodeInputBinder;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionAttributes;
+import org.apache.geode.cache.query.Index;
+
+/**
+ * What the schema of a cache is derived from: the regions in the schema, the types of their keys
+ * and values, the fields of their value classes and the indexed fields their queries filter on.
+ * {@link GraphQLSchemaBuilder} builds the types and data fetchers of a region from its model
+ * alone, so the model saved by an earlier run of an unchanged cluster spares the reflection over
+ * the domain classes. Scalars are named by their GraphQL type.
+ *
+ * <p>
+ * The models are plain beans, so they can be written and read with Jackson.
+ */
+public class SchemaModel {
+  private final static Logger logger = LogManager.getLogger(SchemaModel.class);
+
+  private List<RegionModel> regions = new ArrayList<>();
+
+  public SchemaModel() {}
+
+  public SchemaModel(List<RegionModel> regions) {
+    this.regions = regions;
+  }
+
+  public List<RegionModel> getRegions() {
+    return regions;
+  }
+
+  public void setRegions(List<RegionModel> regions) {
+    this.regions = regions;
+  }
+
+  /**
+   * Returns the model of the given region, or null if it is not in the model.
+   */
+  public RegionModel getRegion(String name) {
+    return regions.stream().filter(region -> region.getName().equals(name)).findFirst()
+        .orElse(null);
+  }
+
+  /**
+   * Returns true if the region is in the schema, that is it does not hold persisted queries and
+   * its value class is not ignored.
+   */
+  static boolean isSchemaRegion(Region<?, ?> region) {
+    return !PersistedQueryStore.isStoreRegion(region)
+        && isNotIgnored(region.getAttributes().getValueConstraint());
+  }
+
+  /**
+   * Reads the model of a region from its key and value classes and its indexes. The input
+   * binders of the value classes are looked up along the way, so the first mutation does not pay
+   * for it and a class that cannot be bound is reported when the schema is built.
+   */
+  static RegionModel of(Region<?, ?> region, Collection<Index> indexes) {
+    RegionAttributes<?, ?> attributes = region.getAttributes();
+    Class<?> keyClass = attributes.getKeyConstraint();
+    Class<?> valueClass = attributes.getValueConstraint();
+    if (valueClass == null) {
+      valueClass = String.class;
+    }
+
+    RegionModel model = new RegionModel();
+    model.setName(region.getName());
+    model.setKeyType(scalarType(keyClass == null ? String.class : keyClass).getName());
+    model.setDescription(getSchemaDocumentation(valueClass));
+    if (isBasicAttributeType(valueClass)) {
+      model.setValueType(scalarType(valueClass).getName());
+    } else {
+      model.setValue(getTypeModel(valueClass, valueClass.getSimpleName(),
+          getSchemaDocumentation(valueClass), false));
+      model.setFilterFields(getFilterFields(valueClass, indexes));
+    }
+    return model;
+  }
+
+  /**
+   * Returns the scalar a class is mapped to.
+   *
+   * @throws UnsupportedOperationException if the class is not mapped to a scalar
+   */
+  static GraphQLScalarType scalarType(Class<?> javaType) {
+    if (String.class.isAssignableFrom(javaType))
+      return Scalars.GraphQLString;
+    else if (UUID.class.isAssignableFrom(javaType))
+      return JavaScalars.GraphQLUUID;
+    else if (Integer.class.isAssignableFrom(javaType) || int.class.isAssignableFrom(javaType))
+      return Scalars.GraphQLInt;
+    else if (Short.class.isAssignableFrom(javaType) || short.class.isAssignableFrom(javaType))
+      return Scalars.GraphQLShort;
+    else if (Float.class.isAssignableFrom(javaType) || float.class.isAssignableFrom(javaType)
+        || Double.class.isAssignableFrom(javaType) || double.class.isAssignableFrom(javaType))
+      return Scalars.GraphQLFloat;
+    else if (Long.class.isAssignableFrom(javaType) || long.class.isAssignableFrom(javaType))
+      return Scalars.GraphQLLong;
+    else if (Boolean.class.isAssignableFrom(javaType) || boolean.class.isAssignableFrom(javaType))
+      return Scalars.GraphQLBoolean;
+    else if (Date.class.isAssignableFrom(javaType))
+      return JavaScalars.GraphQLDate;
+    else if (LocalDateTime.class.isAssignableFrom(javaType))
+      return JavaScalars.GraphQLLocalDateTime;
+    else if (Instant.class.isAssignableFrom(javaType))
+      return JavaScalars.GraphQLInstant;
+    else if (LocalDate.class.isAssignableFrom(javaType))
+      return JavaScalars.GraphQLLocalDate;
+    else if (BigDecimal.class.isAssignableFrom(javaType)) {
+      return Scalars.GraphQLBigDecimal;
+    }
+
+    throw new UnsupportedOperationException(
+        "Class could not be mapped to GraphQL: '" + javaType.getTypeName() + "'");
+  }
+
+  /**
+   * Returns the model of a value class, or of a class embedded in one. The fields of embedded
+   * classes are never connections, and their reference to their enclosing instance is skipped.
+   */
+  private static TypeModel getTypeModel(Class<?> type, String name, String description,
+      boolean embedded) {
+    prepareBinder(type);
+    List<FieldModel> fields = new ArrayList<>();
+    for (Field field : type.getDeclaredFields()) {
+      if (embedded && field.getName().equalsIgnoreCase("this$0")) {
+        continue;
+      }
+      FieldModel model = new FieldModel();
+      model.setName(field.getName());
+      model.setDescription(getSchemaDocumentation(field));
+      if (!embedded && isConnectionType(field)) {
+        model.setConnection(getConnectionName(field));
+      } else if (isBasicAttributeType(field.getType())) {
+        model.setType(scalarType(field.getType()).getName());
+      } else {
+        // the field is non-java, so go deep
+        model.setEmbedded(getTypeModel(field.getType(), field.getType().getSimpleName(),
+            model.getDescription(), true));
+      }
+      fields.add(model);
+    }
+    TypeModel model = new TypeModel();
+    model.setName(name);
+    model.setDescription(description);
+    model.setFields(fields);
+    return model;
+  }
+
+  /**
+   * Returns the fields of a value class that have an index and a scalar type, which queries and
+   * subscriptions filter on.
+   */
+  private static List<FieldModel> getFilterFields(Class<?> valueClass,
+      Collection<Index> indexes) {
+    Set<String> indexedFields =
+        indexes.stream().map(Index::getIndexedExpression).collect(toSet());
+    return Arrays.stream(valueClass.getDeclaredFields())
+        .filter(field -> indexedFields.contains(field.getName()))
+        .filter(field -> isBasicAttributeType(field.getType())).map(field -> {
+          FieldModel model = new FieldModel();
+          model.setName(field.getName());
+          model.setDescription(getSchemaDocumentation(field));
+          model.setType(scalarType(field.getType()).getName());
+          return model;
+        }).collect(toList());
+  }
+
+  private static void prepareBinder(Class<?> valueClass) {
+    try {
+      GeodeInputBinder.of(valueClass);
+    } catch (IllegalArgumentException e) {
+      logger.warn("SchemaModel - values of " + valueClass.getName()
+          + " cannot be created from mutation input: " + e.getMessage());
+    }
+  }
+
+  private static boolean isBasicAttributeType(Class<?> type) {
+    try {
+      return scalarType(type) != null;
+    } catch (UnsupportedOperationException e) {
+      return false;
+    }
+  }
+
+  private static String getConnectionName(AnnotatedElement annotatedElement) {
+    for (Annotation a : annotatedElement.getAnnotations()) {
+      if (GeodeGraphQLConnection.class.getName().equalsIgnoreCase(a.annotationType().getName())) {
+        return getAnnotationValue(a);
+      }
+    }
+    return null;
+  }
+
+  private static boolean isConnectionType(AnnotatedElement annotatedElement) {
+    return getConnectionName(annotatedElement) != null;
+  }
+
+  private static boolean isNotIgnored(AnnotatedElement annotatedElement) {
+    if (annotatedElement != null) {
+      for (Annotation a : annotatedElement.getAnnotations()) {
+        if (GeodeGraphQLIgnore.class.getName().equalsIgnoreCase(a.annotationType().getName())) {
+          return false;
+        }
+      }
+    }
+    return true; // for now consider it for regions created with out explicit value class
+  }
+
+  private static String getSchemaDocumentation(AnnotatedElement annotatedElement) {
+    if (annotatedElement != null) {
+      for (Annotation a : annotatedElement.getAnnotations()) {
+        if (GeodeGraphQLDocumentation.class.getName()
+            .equalsIgnoreCase(a.annotationType().getName())) {
+          return getAnnotationValue(a);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String getAnnotationValue(Annotation a) {
+    for (Method method : a.annotationType().getDeclaredMethods()) {
+      try {
+        return (String) method.invoke(a, (Object[]) null);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        e.printStackTrace();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A region of the schema. Its values are either of the scalar {@code valueType}, or of the
+   * object type {@code value} filtered on the {@code filterFields}.
+   */
+  public static class RegionModel {
+    private String name;
+    private String description;
+    private String keyType;
+    private String valueType;
+    private TypeModel value;
+    private List<FieldModel> filterFields = new ArrayList<>();
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    public void setDescription(String description) {
+      this.description = description;
+    }
+
+    public String getKeyType() {
+      return keyType;
+    }
+
+    public void setKeyType(String keyType) {
+      this.keyType = keyType;
+    }
+
+    public String getValueType() {
+      return valueType;
+    }
+
+    public void setValueType(String valueType) {
+      this.valueType = valueType;
+    }
+
+    public TypeModel getValue() {
+      return value;
+    }
+
+    public void setValue(TypeModel value) {
+      this.value = value;
+    }
+
+    public List<FieldModel> getFilterFields() {
+      return filterFields;
+    }
+
+    public void setFilterFields(List<FieldModel> filterFields) {
+      this.filterFields = filterFields;
+    }
+  }
+
+  /**
+   * A value class, or a class embedded in one, with its fields in declaration order.
+   */
+  public static class TypeModel {
+    private String name;
+    private String description;
+    private List<FieldModel> fields = new ArrayList<>();
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    public void setDescription(String description) {
+      this.description = description;
+    }
+
+    public List<FieldModel> getFields() {
+      return fields;
+    }
+
+    public void setFields(List<FieldModel> fields) {
+      this.fields = fields;
+    }
+  }
+
+  /**
+   * A field of a scalar {@code type}, of an {@code embedded} type, or holding the keys of the
+   * entries of the {@code connection} region.
+   */
+  public static class FieldModel {
+    private String name;
+    private String description;
+    private String type;
+    private TypeModel embedded;
+    private String connection;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    public void setDescription(String description) {
+      this.description = description;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public void setType(String type) {
+      this.type = type;
+    }
+
+    public TypeModel getEmbedded() {
+      return embedded;
+    }
+
+    public void setEmbedded(TypeModel embedded) {
+      this.embedded = embedded;
+    }
+
+    public String getConnection() {
+      return connection;
+    }
+
+    public void setConnection(String connection) {
+      this.connection = connection;
+    }
+  }
+}
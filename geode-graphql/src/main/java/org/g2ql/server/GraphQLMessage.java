@@ -0,0 +1,34 @@
+package org.g2ql.server;
+
+/**
+ * A message of the {@code graphql-ws} protocol, received on {@code /graphql/ws}.
+ */
+class GraphQLMessage {
+  private String type;
+  private String id;
+  private GraphQLRequest payload;
+
+  public String getType() {
+    return type;
+  }
+
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public GraphQLRequest getPayload() {
+    return payload;
+  }
+
+  public void setPayload(GraphQLRequest payload) {
+    this.payload = payload;
+  }
+}
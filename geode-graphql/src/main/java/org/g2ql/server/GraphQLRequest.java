@@ -7,6 +7,7 @@ class GraphQLRequest {
   private String query;
   private Map<String, Object> variables = new HashMap<>();
   private String operationName;
+  private Map<String, Object> extensions;
 
   public String getQuery() {
     return query;
@@ -32,9 +33,17 @@ class GraphQLRequest {
     this.operationName = operationName;
   }
 
+  public Map<String, Object> getExtensions() {
+    return extensions;
+  }
+
+  public void setExtensions(Map<String, Object> extensions) {
+    this.extensions = extensions;
+  }
+
   @Override
   public String toString() {
     return "GraphQLRequest{" + "query='" + query + '\'' + ", variables=" + variables
-        + ", operationName='" + operationName + '\'' + '}';
+        + ", operationName='" + operationName + '\'' + ", extensions=" + extensions + '}';
   }
 }
@@ -0,0 +1,278 @@
+package org.g2ql.server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads a {@link GraphQLRequest} in a single pass over the body of the request, without holding
+ * the body as a {@code String}. The variables are built as they are parsed, so a list of many keys
+ * costs its values and nothing more.
+ *
+ * <p>
+ * Every size is checked before the part it limits is buffered. A body whose declared length is too
+ * large is rejected before it is read, and one sent chunked once it has sent too much. The query
+ * is rejected on the length of its token, the variables and extensions as soon as they extend
+ * past their limit, with a {@link RequestTooLargeException}. The limits are the
+ * {@code g2ql.maxRequestBytes}, {@code g2ql.maxQueryLength} and {@code g2ql.maxVariablesBytes}
+ * system properties, 16 MiB, 256 Ki characters and 8 MiB by default.
+ */
+class GraphQLRequestReader {
+  static final long MAX_REQUEST_BYTES = Long.getLong("g2ql.maxRequestBytes", 16L << 20);
+  static final int MAX_QUERY_LENGTH = Integer.getInteger("g2ql.maxQueryLength", 256 << 10);
+  static final long MAX_VARIABLES_BYTES = Long.getLong("g2ql.maxVariablesBytes", 8L << 20);
+
+  private final JsonFactory factory = new JsonFactory();
+  private final long maxRequestBytes;
+  private final int maxQueryLength;
+  private final long maxVariablesBytes;
+
+  GraphQLRequestReader() {
+    this(MAX_REQUEST_BYTES, MAX_QUERY_LENGTH, MAX_VARIABLES_BYTES);
+  }
+
+  GraphQLRequestReader(long maxRequestBytes, int maxQueryLength, long maxVariablesBytes) {
+    this.maxRequestBytes = maxRequestBytes;
+    this.maxQueryLength = maxQueryLength;
+    this.maxVariablesBytes = maxVariablesBytes;
+  }
+
+  /**
+   * Reads the JSON body of a POST request.
+   */
+  GraphQLRequest read(HttpServletRequest request) throws IOException {
+    if (request.getContentLengthLong() > maxRequestBytes) {
+      throw new RequestTooLargeException(
+          "The request is larger than " + maxRequestBytes + " bytes");
+    }
+    return read(request.getInputStream());
+  }
+
+  GraphQLRequest read(InputStream body) throws IOException {
+    try (JsonParser parser = factory.createParser(new LimitedInputStream(body))) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "The request should be a JSON object");
+      }
+      return readRequest(parser);
+    }
+  }
+
+  /**
+   * Reads a message of the {@code graphql-ws} protocol. Its {@code payload} is read as a request,
+   * with the limits of the body of a POST.
+   */
+  GraphQLMessage readMessage(String text) throws IOException {
+    if (text.length() > maxRequestBytes) {
+      throw new RequestTooLargeException(
+          "The message is larger than " + maxRequestBytes + " bytes");
+    }
+    try (JsonParser parser = factory.createParser(text)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "The message should be a JSON object");
+      }
+      GraphQLMessage message = new GraphQLMessage();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        switch (field) {
+          case "type":
+            message.setType(token == JsonToken.VALUE_NULL ? null : parser.getText());
+            break;
+          case "id":
+            message.setId(token == JsonToken.VALUE_NULL ? null : parser.getText());
+            break;
+          case "payload":
+            if (token == JsonToken.START_OBJECT) {
+              message.setPayload(readRequest(parser));
+            } else {
+              parser.skipChildren();
+            }
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+      return message;
+    }
+  }
+
+  /**
+   * Reads the fields of a request, starting at the start of its object.
+   */
+  private GraphQLRequest readRequest(JsonParser parser) throws IOException {
+    GraphQLRequest request = new GraphQLRequest();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      switch (field) {
+        case "query":
+          request.setQuery(readQuery(parser));
+          break;
+        case "operationName":
+          request.setOperationName(token == JsonToken.VALUE_NULL ? null : parser.getText());
+          break;
+        case "variables":
+          Map<String, Object> variables = readObject(parser, "variables");
+          if (variables != null) {
+            request.setVariables(variables);
+          }
+          break;
+        case "extensions":
+          request.setExtensions(readObject(parser, "extensions"));
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    return request;
+  }
+
+  /**
+   * Reads the variables or the extensions sent as a parameter of a GET request.
+   *
+   * @param name the name of the parameter, for the messages
+   */
+  Map<String, Object> readParameter(String json, String name) throws IOException {
+    if (json.length() > maxVariablesBytes) {
+      throw new RequestTooLargeException(
+          "The " + name + " are larger than " + maxVariablesBytes + " bytes");
+    }
+    try (JsonParser parser = factory.createParser(json)) {
+      parser.nextToken();
+      return readObject(parser, name);
+    }
+  }
+
+  private String readQuery(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    if (parser.getCurrentToken() != JsonToken.VALUE_STRING) {
+      throw new JsonParseException(parser, "The query should be a string");
+    }
+    if (parser.getTextLength() > maxQueryLength) {
+      throw new RequestTooLargeException(
+          "The query is longer than " + maxQueryLength + " characters");
+    }
+    return parser.getText();
+  }
+
+  /**
+   * Reads an object, or a string holding one like GraphiQL sends the variables, starting at the
+   * current token of the parser.
+   */
+  private Map<String, Object> readObject(JsonParser parser, String name) throws IOException {
+    switch (parser.getCurrentToken()) {
+      case VALUE_NULL:
+        return null;
+      case VALUE_STRING:
+        return readParameter(parser.getText(), name);
+      case START_OBJECT:
+        long limit = offset(parser) + maxVariablesBytes;
+        @SuppressWarnings("unchecked")
+        Map<String, Object> object = (Map<String, Object>) readValue(parser, limit, name);
+        return object;
+      default:
+        throw new JsonParseException(parser,
+            "The " + name + " should be either an object or a string");
+    }
+  }
+
+  private Object readValue(JsonParser parser, long limit, String name) throws IOException {
+    switch (parser.getCurrentToken()) {
+      case START_OBJECT:
+        Map<String, Object> object = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          parser.nextToken();
+          checkLimit(parser, limit, name);
+          object.put(field, readValue(parser, limit, name));
+        }
+        return object;
+      case START_ARRAY:
+        List<Object> array = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          checkLimit(parser, limit, name);
+          array.add(readValue(parser, limit, name));
+        }
+        return array;
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+        return parser.getNumberValue();
+      case VALUE_NUMBER_FLOAT:
+        return parser.getDoubleValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_NULL:
+        return null;
+      default:
+        throw new JsonParseException(parser, "Unexpected " + parser.getCurrentToken());
+    }
+  }
+
+  private void checkLimit(JsonParser parser, long limit, String name) throws IOException {
+    if (offset(parser) > limit) {
+      throw new RequestTooLargeException(
+          "The " + name + " are larger than " + maxVariablesBytes + " bytes");
+    }
+  }
+
+  // past the current token, in bytes when parsing the body, in characters when parsing a parameter
+  private static long offset(JsonParser parser) {
+    JsonLocation location = parser.getCurrentLocation();
+    return location.getByteOffset() >= 0 ? location.getByteOffset() : location.getCharOffset();
+  }
+
+  /**
+   * Fails the read once more than the maximum size of a request has been read, for bodies sent
+   * without a length.
+   */
+  private class LimitedInputStream extends FilterInputStream {
+    private long count;
+
+    LimitedInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count(n);
+      }
+      return n;
+    }
+
+    private void count(int n) throws RequestTooLargeException {
+      count += n;
+      if (count > maxRequestBytes) {
+        throw new RequestTooLargeException(
+            "The request is larger than " + maxRequestBytes + " bytes");
+      }
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package org.g2ql.server;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import graphql.ExecutionResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.g2ql.graphql.GraphQLExecutor;
+import org.reactivestreams.Publisher;
+
+/**
+ * A WebSocket connection speaking the {@code graphql-ws} protocol: the client sends
+ * {@code connection_init}, then {@code start} messages with an {@code id} and the operation as
+ * {@code payload}, and {@code stop} to end one of them. Each result is sent back in a
+ * {@code data} message with the id of its operation, followed by {@code complete} once the
+ * operation is over. Queries and mutations are answered with a single result.
+ *
+ * <p>
+ * Operations run on the request executor of {@code /graphql}, so they are admitted like its
+ * requests, and the messages are read with the same size limits as their bodies. An operation
+ * that is not admitted is answered with an {@code error} message.
+ *
+ * <p>
+ * Each subscription of the connection requests its next change only once its previous result was
+ * sent, so a slow connection has its changes coalesced in the queues of its subscriptions. A
+ * single {@code ka} keep alive is sent for all of them.
+ */
+class GraphQLWebSocket implements WebSocketListener {
+  private final static Logger logger = LogManager.getLogger(GraphQLWebSocket.class);
+
+  private static final ObjectMapper mapper =
+      new ObjectMapper().disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+  private static final GraphQLRequestReader requestReader = new GraphQLRequestReader();
+
+  private final GraphQLExecutor executor;
+  private final Executor requests;
+  private final Map<String, SubscriptionWriter> subscriptions = new ConcurrentHashMap<>();
+  // the messages sent and not written yet
+  private final AtomicInteger sending = new AtomicInteger();
+  private volatile Session session;
+  private volatile ScheduledFuture<?> keepAlive;
+
+  /**
+   * @param requests runs the operations, or null to run them on the thread receiving them
+   */
+  GraphQLWebSocket(GraphQLExecutor executor, Executor requests) {
+    this.executor = executor;
+    this.requests = requests;
+  }
+
+  @Override
+  public void onWebSocketConnect(Session session) {
+    this.session = session;
+    keepAlive = SubscriptionWriter.scheduleKeepAlive(this::keepAlive);
+  }
+
+  @Override
+  public void onWebSocketText(String text) {
+    try {
+      GraphQLMessage message = requestReader.readMessage(text);
+      String id = message.getId();
+      String type = String.valueOf(message.getType());
+      switch (type) {
+        case "connection_init":
+          send(message("connection_ack", null, null));
+          break;
+        case "start":
+          start(id, message.getPayload());
+          break;
+        case "stop":
+          SubscriptionWriter writer = subscriptions.remove(id);
+          if (writer != null) {
+            writer.cancel();
+            send(message("complete", id, null));
+          }
+          break;
+        case "connection_terminate":
+          session.close();
+          break;
+        default:
+          send(message("error", id, error("Unknown message type " + type)));
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.info("GraphQLWebSocket - bad message: " + e.getMessage());
+      send(message("connection_error", null, error(e.getMessage()))).exceptionally(failure -> {
+        session.close();
+        return null;
+      });
+    }
+  }
+
+  @Override
+  public void onWebSocketBinary(byte[] payload, int offset, int length) {
+    session.close(1003, "graphql-ws messages are text");
+  }
+
+  @Override
+  public void onWebSocketClose(int statusCode, String reason) {
+    ScheduledFuture<?> current = keepAlive;
+    if (current != null) {
+      current.cancel(false);
+    }
+    subscriptions.values().forEach(SubscriptionWriter::cancel);
+    subscriptions.clear();
+  }
+
+  @Override
+  public void onWebSocketError(Throwable cause) {
+    logger.info("GraphQLWebSocket - connection failed: " + cause);
+    onWebSocketClose(0, null);
+  }
+
+  /**
+   * Runs an operation on the request executor, like the requests of {@code /graphql}. Its id is
+   * taken before it runs, so a {@code stop} sent meanwhile cancels it.
+   */
+  private void start(String id, GraphQLRequest request) {
+    if (id == null || subscriptions.containsKey(id)) {
+      send(message("error", id, error("Operation id is missing or already in use")));
+      return;
+    } else if (request == null) {
+      send(message("error", id, error("The operation is missing")));
+      return;
+    }
+    SubscriptionWriter writer =
+        new SubscriptionWriter(new Operation(id), SubscriptionWriter.WRITE_TIMEOUT_SECONDS, false);
+    subscriptions.put(id, writer);
+    if (requests == null) {
+      execute(id, request, writer);
+      return;
+    }
+    try {
+      requests.execute(() -> execute(id, request, writer));
+    } catch (RejectedExecutionException e) {
+      logger.info("GraphQLWebSocket - operation rejected: " + e.getMessage());
+      subscriptions.remove(id, writer);
+      send(message("error", id, error("Too many requests")));
+    }
+  }
+
+  private void execute(String id, GraphQLRequest request, SubscriptionWriter writer) {
+    ExecutionResult result;
+    try {
+      result = executor.execute(request.getQuery(), request.getVariables(),
+          request.getOperationName());
+    } catch (RuntimeException e) {
+      logger.info("GraphQLWebSocket - operation failed: " + e.getMessage());
+      if (subscriptions.remove(id, writer)) {
+        send(message("error", id, error(e.getMessage())));
+      }
+      return;
+    }
+    if (!(result.getData() instanceof Publisher)) {
+      // unless it was stopped meanwhile
+      if (subscriptions.remove(id, writer)) {
+        send(message("data", id, result.toSpecification()));
+        send(message("complete", id, null));
+      }
+      return;
+    }
+    Publisher<ExecutionResult> publisher = result.getData();
+    publisher.subscribe(writer);
+  }
+
+  /**
+   * Sends a single keep alive for all the subscriptions of the connection, unless a message is
+   * being sent, and cancels the subscriptions whose result is being sent for too long.
+   */
+  private void keepAlive() {
+    subscriptions.values().forEach(SubscriptionWriter::checkWrite);
+    if (sending.get() == 0) {
+      send(message("ka", null, null));
+    }
+  }
+
+  /**
+   * Starts sending a message, which the connection queues behind the messages sent before it, and
+   * returns a future completed once it is sent.
+   */
+  private CompletableFuture<Void> send(Map<String, Object> message) {
+    CompletableFuture<Void> sent = new CompletableFuture<>();
+    Session current = session;
+    if (current == null || !current.isOpen()) {
+      sent.completeExceptionally(new IOException("WebSocket is closed"));
+      return sent;
+    }
+    try {
+      String text = mapper.writeValueAsString(message);
+      sending.incrementAndGet();
+      synchronized (this) {
+        current.getRemote().sendString(text, new WriteCallback() {
+          @Override
+          public void writeFailed(Throwable failure) {
+            sending.decrementAndGet();
+            sent.completeExceptionally(failure);
+          }
+
+          @Override
+          public void writeSuccess() {
+            sending.decrementAndGet();
+            sent.complete(null);
+          }
+        });
+      }
+    } catch (IOException | RuntimeException e) {
+      sent.completeExceptionally(e);
+    }
+    return sent;
+  }
+
+  private static Map<String, Object> message(String type, String id, Object payload) {
+    Map<String, Object> message = new LinkedHashMap<>();
+    message.put("type", type);
+    if (id != null) {
+      message.put("id", id);
+    }
+    if (payload != null) {
+      message.put("payload", payload);
+    }
+    return message;
+  }
+
+  private static Map<String, Object> error(String message) {
+    return Collections.singletonMap("message", String.valueOf(message));
+  }
+
+  /**
+   * Writes the results of one subscription of the connection.
+   */
+  private class Operation implements SubscriptionWriter.Sink {
+    private final String id;
+
+    Operation(String id) {
+      this.id = id;
+    }
+
+    @Override
+    public CompletableFuture<Void> next(Map<String, Object> result) {
+      return send(message("data", id, result));
+    }
+
+    @Override
+    public CompletableFuture<Void> error(Throwable failure) {
+      subscriptions.remove(id);
+      return send(message("error", id, GraphQLWebSocket.error(failure.getMessage())));
+    }
+
+    @Override
+    public CompletableFuture<Void> complete() {
+      subscriptions.remove(id);
+      return send(message("complete", id, null));
+    }
+
+    @Override
+    public CompletableFuture<Void> keepAlive() {
+      return send(message("ka", null, null));
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package org.g2ql.server;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.websocket.server.WebSocketHandler;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.g2ql.graphql.GraphQLExecutor;
+
+/**
+ * Accepts the WebSocket connections of {@code /graphql/ws}, which speak the {@code graphql-ws}
+ * protocol of the Apollo subscriptions transport, see {@link GraphQLWebSocket}.
+ */
+public class GraphQLWebSocketHandler extends WebSocketHandler {
+  static final String PATH = "/graphql/ws";
+  static final String PROTOCOL = "graphql-ws";
+
+  private final Supplier<GraphQLExecutor> executors;
+  private final Supplier<Executor> requests;
+
+  /**
+   * @param executors returns the executor, or null until the schema is built
+   * @param requests returns the executor running the requests of {@code /graphql}, or null if
+   *        they run on the Jetty thread
+   */
+  public GraphQLWebSocketHandler(Supplier<GraphQLExecutor> executors,
+      Supplier<Executor> requests) {
+    this.executors = executors;
+    this.requests = requests;
+  }
+
+  @Override
+  public void configure(WebSocketServletFactory factory) {
+    // idle connections are kept open by their keep alive messages
+    factory.getPolicy().setIdleTimeout(0);
+    // larger messages are refused before being buffered
+    factory.getPolicy().setMaxTextMessageSize(
+        (int) Math.min(GraphQLRequestReader.MAX_REQUEST_BYTES, Integer.MAX_VALUE));
+    factory.setCreator((request, response) -> {
+      if (request.getSubProtocols().contains(PROTOCOL)) {
+        response.setAcceptedSubProtocol(PROTOCOL);
+      }
+      return new GraphQLWebSocket(executors.get(), requests.get());
+    });
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request,
+      HttpServletResponse response) throws IOException, ServletException {
+    if (!PATH.equals(target)) {
+      return;
+    }
+    if (executors.get() == null) {
+      baseRequest.setHandled(true);
+      response.setHeader("Retry-After", "1");
+      response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      return;
+    }
+    super.handle(target, baseRequest, request, response);
+    if (!baseRequest.isHandled()) {
+      baseRequest.setHandled(true);
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+    }
+  }
+}
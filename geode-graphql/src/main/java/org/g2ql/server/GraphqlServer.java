@@ -1,24 +1,62 @@
 package org.g2ql.server;
 
 import org.apache.geode.cache.Cache;
+import org.g2ql.geode.GeodeVirtualThreadExecutor;
 import org.g2ql.graphql.GraphQLExecutor;
+import org.g2ql.graphql.SchemaModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.introspection.IntrospectionQuery;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.HandlerList;
 
+/**
+ * Serves GraphQL on port 3000. The port is bound right away, and the schema is built on a
+ * background thread meanwhile, so the init function returns without waiting for it. Until the
+ * schema is built every request is answered with a 503, except for {@code /graphql/schema.json}
+ * which is served from the {@link SchemaSnapshot} of an earlier run of an unchanged cluster. The
+ * schema of such a cluster is rebuilt from the model in the snapshot, without reflecting on the
+ * domain classes.
+ *
+ * <p>
+ * Subscriptions are served as Server-Sent Events on {@code /graphql/sse} and over WebSocket on
+ * {@code /graphql/ws}.
+ *
+ * <p>
+ * With {@code g2ql.virtualRequests} set on Java 21 or later, every request runs on its own virtual
+ * thread, {@code g2ql.maxConcurrentRequests} of them at a time, 256 by default, so requests
+ * blocked on slow Geode reads do not hold the bounded Jetty pool the fast ones need. A request
+ * that finds no free slot within {@code g2ql.requestPermitTimeoutMillis}, 100 by default, is
+ * answered with a 503 and a {@code Retry-After} header. Operations over the throttling cost of
+ * {@link org.g2ql.geode.GeodeCostInstrumentation} give their slot back and wait for one of the
+ * fewer slots of expensive operations instead. See {@link GeodeVirtualThreadExecutor}.
+ */
 public class GraphqlServer {
+  static final boolean VIRTUAL_REQUESTS = Boolean.getBoolean("g2ql.virtualRequests");
+  static final int MAX_CONCURRENT_REQUESTS =
+      Integer.getInteger("g2ql.maxConcurrentRequests", 256);
+  static final long REQUEST_PERMIT_TIMEOUT_MILLIS =
+      Long.getLong("g2ql.requestPermitTimeoutMillis", 100);
+
   final int PORT = 3000;
   Server server = null;
 
   public GraphqlServer(Cache cache) {
     cache.getLogger().info("GraphqlServer - init!");
+    cache.getLogger().info("GraphqlServer - PDX read serialized: " + cache.getPdxReadSerialized());
     server = new Server(PORT);
-    GraphQLExecutor executor = new GraphQLExecutor(cache);
-    QueryHandler queryHandler = new QueryHandler(cache, executor);
+    SchemaSnapshot snapshot = SchemaSnapshot.of(cache);
+    QueryHandler queryHandler = new QueryHandler(cache, snapshot.read());
+    if (VIRTUAL_REQUESTS) {
+      queryHandler.setRequestExecutor(GeodeVirtualThreadExecutor.createIfAvailable(
+          "g2ql-request-", MAX_CONCURRENT_REQUESTS, REQUEST_PERMIT_TIMEOUT_MILLIS));
+    }
     cache.getLogger().info("GraphqlServer - queryHandler is initialized!");
 
     HandlerList handlers = new HandlerList();
-    handlers.setHandlers(new Handler[] {queryHandler});
+    handlers.setHandlers(new Handler[] {new SubscriptionHandler(queryHandler::getExecutor),
+        new GraphQLWebSocketHandler(queryHandler::getExecutor, queryHandler::getRequestExecutor),
+        queryHandler});
     server.setHandler(handlers);
     cache.getLogger().info("GraphqlServer - handlers are set!");
 
@@ -28,5 +66,28 @@ public class GraphqlServer {
     } catch (Exception e) {
       cache.getLogger().error("GraphqlServer - Errrrrr while starting graphql", e);
     }
+
+    Thread schemaBuilder = new Thread(() -> buildSchema(cache, queryHandler, snapshot),
+        "g2ql-schema-builder");
+    schemaBuilder.setDaemon(true);
+    schemaBuilder.start();
+  }
+
+  private static void buildSchema(Cache cache, QueryHandler queryHandler,
+      SchemaSnapshot snapshot) {
+    try {
+      long start = System.currentTimeMillis();
+      SchemaModel model = snapshot.readModel();
+      GraphQLExecutor executor = new GraphQLExecutor(cache, model);
+      queryHandler.setExecutor(executor);
+      cache.getLogger().info("GraphqlServer - schema is built in "
+          + (System.currentTimeMillis() - start) + " ms"
+          + (model == null ? "" : " from its snapshot") + ", serving queries");
+      snapshot.writeModel(executor.getSchemaModel());
+      snapshot.write(new ObjectMapper().writeValueAsString(
+          executor.execute(IntrospectionQuery.INTROSPECTION_QUERY).toSpecification()));
+    } catch (Exception e) {
+      cache.getLogger().error("GraphqlServer - could not build the schema", e);
+    }
   }
 }
@@ -0,0 +1,85 @@
+package org.g2ql.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import graphql.ExecutionResult;
+
+/**
+ * Writes JSON straight to the output stream of a response, without building the whole document
+ * as a {@code String} first. The generator encodes into the buffers Jackson recycles per thread
+ * and flushes them into the response, which Jetty sends chunked once the document outgrows its
+ * own buffer, so a large list is held once, as the result of the operation, instead of three
+ * times.
+ *
+ * <p>
+ * The maps, lists and scalars that make up the data of a result are written as they are walked.
+ * Anything else, like an unusual scalar value, is handed to the mapper.
+ */
+class JsonResponseWriter {
+  private final JsonFactory factory;
+  // writes the other values without flushing the response after each of them
+  private final ObjectWriter writer;
+
+  JsonResponseWriter(ObjectMapper mapper) {
+    this.factory = mapper.getFactory();
+    this.writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  }
+
+  /**
+   * Writes the given result as specified by GraphQL. The specification map only refers to the
+   * data of the result, which is not copied.
+   */
+  void write(OutputStream out, ExecutionResult result) throws IOException {
+    write(out, (Object) result.toSpecification());
+  }
+
+  void write(OutputStream out, Object value) throws IOException {
+    try (JsonGenerator generator = factory.createGenerator(out, JsonEncoding.UTF8)) {
+      writeValue(generator, value);
+    }
+  }
+
+  private void writeValue(JsonGenerator generator, Object value) throws IOException {
+    if (value == null) {
+      generator.writeNull();
+    } else if (value instanceof String) {
+      generator.writeString((String) value);
+    } else if (value instanceof Map) {
+      generator.writeStartObject();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        generator.writeFieldName(String.valueOf(entry.getKey()));
+        writeValue(generator, entry.getValue());
+      }
+      generator.writeEndObject();
+    } else if (value instanceof Iterable) {
+      generator.writeStartArray();
+      for (Object element : (Iterable<?>) value) {
+        writeValue(generator, element);
+      }
+      generator.writeEndArray();
+    } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+        || value instanceof Byte) {
+      generator.writeNumber(((Number) value).longValue());
+    } else if (value instanceof Double || value instanceof Float) {
+      generator.writeNumber(((Number) value).doubleValue());
+    } else if (value instanceof BigDecimal) {
+      generator.writeNumber((BigDecimal) value);
+    } else if (value instanceof BigInteger) {
+      generator.writeNumber((BigInteger) value);
+    } else if (value instanceof Boolean) {
+      generator.writeBoolean((Boolean) value);
+    } else {
+      writer.writeValue(generator, value);
+    }
+  }
+}
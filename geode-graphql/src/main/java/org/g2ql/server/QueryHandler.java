@@ -1,62 +1,159 @@
 package org.g2ql.server;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
 import graphql.introspection.IntrospectionQuery;
 import org.apache.geode.cache.Cache;
+import org.g2ql.geode.GeodeNearCache;
 import org.g2ql.graphql.GraphQLExecutor;
+import org.g2ql.graphql.PersistedQueryException;
+import org.g2ql.graphql.PersistedQueryStore;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class QueryHandler extends AbstractHandler {
   private final static Logger logger = LogManager.getLogger(QueryHandler.class);
 
-  private GraphQLExecutor executor;
+  // null until the schema is built
+  private volatile GraphQLExecutor executor;
+  // the introspection result saved by an earlier run, served until the schema is built
+  private final String schemaSnapshot;
+  private volatile Executor requestExecutor;
+  private PersistedQueryStore persistedQueries;
   private Cache cache;
+  private static final Map<String, Object> NOT_READY = Collections.singletonMap("errors",
+      Collections.singletonList(Collections.singletonMap("message", "Schema is being built")));
+  private static final Map<String, Object> BUSY = Collections.singletonMap("errors",
+      Collections.singletonList(Collections.singletonMap("message", "Too many requests")));
   private static final ObjectMapper mapper =
       new ObjectMapper().disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+  private static final JsonResponseWriter jsonWriter = new JsonResponseWriter(mapper);
+  private static final GraphQLRequestReader requestReader = new GraphQLRequestReader();
+  // the queries and variables are logged at debug only, and cut to this many characters
+  private static final int MAX_LOGGED_CHARACTERS = 1000;
 
   public QueryHandler(Cache cache, GraphQLExecutor executor) {
+    this(cache, (String) null);
+    this.executor = executor;
+  }
+
+  /**
+   * Creates a handler answering 503 until {@link #setExecutor} is called, except for the schema
+   * that is served from the given snapshot if there is one.
+   */
+  public QueryHandler(Cache cache, String schemaSnapshot) {
     this.cache = cache;
+    this.schemaSnapshot = schemaSnapshot;
+    this.persistedQueries = new PersistedQueryStore(cache);
+  }
+
+  /**
+   * Starts executing operations with the given executor once its schema is built.
+   */
+  public void setExecutor(GraphQLExecutor executor) {
     this.executor = executor;
   }
 
+  /**
+   * Runs the requests on the given executor instead of the Jetty thread that received them, or on
+   * the Jetty thread if null. The requests the executor rejects are answered with a 503.
+   */
+  public void setRequestExecutor(Executor requestExecutor) {
+    this.requestExecutor = requestExecutor;
+  }
+
+  /**
+   * Returns the executor running the requests, or null if they run on the Jetty thread.
+   */
+  public Executor getRequestExecutor() {
+    return requestExecutor;
+  }
+
+  /**
+   * Returns the executor, or null until the schema is built.
+   */
+  public GraphQLExecutor getExecutor() {
+    return executor;
+  }
+
+  public boolean isReady() {
+    return executor != null;
+  }
+
   @Override
   public void handle(String target, Request baseRequest, HttpServletRequest request,
       HttpServletResponse response) {
-    if ("/graphql".equals(target)) {
+    if ("/graphql".equals(target) || target.startsWith("/graphql/")) {
       baseRequest.setHandled(true);
-      handleGraphql(request, response);
+      Executor requests = requestExecutor;
+      if (requests == null) {
+        handleGraphql(request, response);
+        return;
+      }
+      // the Jetty thread goes back to the pool while the operation blocks on Geode
+      AsyncContext async = request.startAsync();
+      async.setTimeout(0);
+      try {
+        requests.execute(() -> {
+          try {
+            handleGraphql(request, response);
+          } finally {
+            async.complete();
+          }
+        });
+      } catch (RejectedExecutionException ree) {
+        logger.info("QueryHandler - handle - request rejected: " + ree.getMessage());
+        try {
+          response.setHeader("Retry-After", "1");
+          writeJson(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+              mapper.writeValueAsString(BUSY), request.getHeader("Origin"));
+        } catch (IOException ioe) {
+          logger.error("Failed to answer a rejected request.", ioe);
+        } finally {
+          async.complete();
+        }
+      }
     }
   }
 
   private void handleGraphql(HttpServletRequest request, HttpServletResponse response) {
     try {
-      String requestBody = requestBody(request);
       String method = request.getMethod();
       String path = request.getPathInfo();
       String queryString = request.getQueryString();
       String queryAsParameter = request.getParameter("query");
       String variablesAsParameter = request.getParameter("variables");
+      String extensionsAsParameter = request.getParameter("extensions");
       String origin = request.getHeader("Origin");
 
       logger.info("QueryHandler - handleGraphql:: method - " + method);
       logger.info("QueryHandler - handleGraphql:: path - " + path);
-      logger.info("QueryHandler - handleGraphql:: body - " + requestBody);
       logger.info("QueryHandler - handleGraphql:: query string - " + queryString);
-      logger.info("QueryHandler - handleGraphql:: query parameter - " + queryAsParameter);
-      logger.info("QueryHandler - handleGraphql:: variables parameter - " + variablesAsParameter);
+      if (logger.isDebugEnabled()) {
+        logger.debug("QueryHandler - handleGraphql:: query parameter - "
+            + abbreviate(queryAsParameter));
+        logger.debug("QueryHandler - handleGraphql:: variables parameter - "
+            + abbreviate(variablesAsParameter));
+        logger.debug("QueryHandler - handleGraphql:: extensions parameter - "
+            + abbreviate(extensionsAsParameter));
+      }
       logger.info("QueryHandler - handleGraphql:: Origin: " + origin);
 
       if (method.equalsIgnoreCase("OPTIONS")) {
@@ -65,20 +162,47 @@ public class QueryHandler extends AbstractHandler {
         response.setHeader("Access-Control-Allow-Methods", "OPTIONS, GET, POST");
         response.setHeader("Access-Control-Allow-Credentials", "true");
         response.setHeader("Access-Control-Allow-Headers", "content-type, accept");
+      } else if (!isReady()) {
+        if (path == null) {
+          path = request.getServletPath();
+        }
+        if (schemaSnapshot != null && method.equalsIgnoreCase("GET")
+            && path.contentEquals("/graphql/schema.json")) {
+          writeJson(response, HttpServletResponse.SC_OK, schemaSnapshot, origin);
+        } else {
+          logger.info("QueryHandler - handleGraphql - schema is not built yet");
+          response.setHeader("Retry-After", "1");
+          writeJson(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+              mapper.writeValueAsString(NOT_READY), origin);
+        }
       } else if (method.equalsIgnoreCase("GET")) {
         if (path == null) {
           path = request.getServletPath();
         }
-        if (path.contentEquals("/graphql/schema.json")) {
+        if (path.contentEquals("/graphql/ready")) {
+          writeJson(response, Collections.singletonMap("schemaVersion",
+              executor.getSchemaVersion()), origin);
+        } else if (path.contentEquals("/graphql/schema.json")) {
           ExecutionResult result = query(IntrospectionQuery.INTROSPECTION_QUERY);
           returnAsJson(response, result, origin);
+        } else if (path.contentEquals("/graphql/nearcache.json")) {
+          writeJson(response, GeodeNearCache.getStatistics(), origin);
+        } else if (path.contentEquals("/graphql/documentcache.json")) {
+          writeJson(response, executor.getDocumentCacheStatistics(), origin);
+        } else if (path.contentEquals("/graphql/metrics")) {
+          writeMetrics(response);
         } else {
-          if (queryAsParameter != null) {
+          if (queryAsParameter != null || extensionsAsParameter != null) {
             final Map<String, Object> variables = new HashMap<>();
-            if (variablesAsParameter != null) {
-              variables.putAll(deserializeVariables(variablesAsParameter));
+            Map<String, Object> parameter = variablesAsParameter == null ? null
+                : requestReader.readParameter(variablesAsParameter, "variables");
+            if (parameter != null) {
+              variables.putAll(parameter);
             }
-            ExecutionResult result = query(queryAsParameter, variables);
+            Map<String, Object> extensions = extensionsAsParameter == null ? null
+                : requestReader.readParameter(extensionsAsParameter, "extensions");
+            String query = persistedQueries.resolve(queryAsParameter, extensions);
+            ExecutionResult result = query(query, variables);
             returnAsJson(response, result, origin);
           } else {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -88,52 +212,50 @@ public class QueryHandler extends AbstractHandler {
         }
       } else if (method.equalsIgnoreCase("POST")) {
         logger.info("QueryHandler - handleGraphql - serving post request......");
-        GraphQLRequest graphQLRequest = mapper.readValue(requestBody, GraphQLRequest.class);
-        logger.info("QueryHandler - handleGraphql - query from body:" + graphQLRequest + " received");
+        GraphQLRequest graphQLRequest = requestReader.read(request);
+        String bodyQuery = graphQLRequest.getQuery();
+        logger.info("QueryHandler - handleGraphql - query of "
+            + (bodyQuery == null ? 0 : bodyQuery.length()) + " characters received with "
+            + graphQLRequest.getVariables().size() + " variables");
+        if (logger.isDebugEnabled()) {
+          logger.debug("QueryHandler - handleGraphql - query from body:" + abbreviate(bodyQuery));
+        }
+        String query =
+            persistedQueries.resolve(graphQLRequest.getQuery(), graphQLRequest.getExtensions());
         if (graphQLRequest.getOperationName() != null) {
-          ExecutionResult result = query(graphQLRequest.getQuery(), graphQLRequest.getVariables(),
+          ExecutionResult result = query(query, graphQLRequest.getVariables(),
               graphQLRequest.getOperationName());
           returnAsJson(response, result, origin);
         } else {
-          ExecutionResult result = query(graphQLRequest.getQuery(), graphQLRequest.getVariables());
+          ExecutionResult result = query(query, graphQLRequest.getVariables());
           returnAsJson(response, result, origin);
         }
       }
+    } catch (PersistedQueryException pqe) {
+      // answered like any GraphQL error, so the client can retry with the full query
+      logger.info("QueryHandler - handleGraphql - persisted query rejected: " + pqe.getMessage());
+      try {
+        returnAsJson(response, new ExecutionResultImpl(pqe), request.getHeader("Origin"));
+      } catch (IOException ioe) {
+        logger.error("Failed to answer a persisted query request.", ioe);
+      }
+    } catch (RequestTooLargeException rtle) {
+      // the rest of the body is not read, Jetty closes the connection if it is still sent
+      logger.info("QueryHandler - handleGraphql - request rejected: " + rtle.getMessage());
+      try {
+        writeJson(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+            mapper.writeValueAsString(Collections.singletonMap("errors", Collections.singletonList(
+                Collections.singletonMap("message", rtle.getMessage())))),
+            request.getHeader("Origin"));
+      } catch (IOException ioe) {
+        logger.error("Failed to answer a request that is too large.", ioe);
+      }
     } catch (IOException ioe) {
       response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
       logger.error("Bad request received with payload.", ioe);
     }
   }
 
-  protected String requestBody(HttpServletRequest request) throws IOException {
-    return request.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
-  }
-
-  private Map<String, Object> deserializeVariables(String variables) {
-    try {
-      return deserializeVariablesObject(mapper.readValue(variables, Object.class), mapper);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-  private static Map<String, Object> deserializeVariablesObject(Object variables,
-      ObjectMapper mapper) {
-    if (variables instanceof Map) {
-      @SuppressWarnings("unchecked")
-      Map<String, Object> genericVariables = (Map<String, Object>) variables;
-      return genericVariables;
-    } else if (variables instanceof String) {
-      try {
-        return mapper.readValue((String) variables, new TypeReference<Map<String, Object>>() {});
-      } catch (IOException e) {
-        throw new RuntimeException(e);
-      }
-    } else {
-      throw new RuntimeException("variables should be either an object or a string");
-    }
-  }
-
   private ExecutionResult query(String query) {
     return executor.execute(query);
   }
@@ -148,13 +270,48 @@ public class QueryHandler extends AbstractHandler {
 
   private void returnAsJson(HttpServletResponse response, ExecutionResult executionResult, String origin)
       throws IOException {
+    setJsonHeaders(response, HttpServletResponse.SC_OK, origin);
+    jsonWriter.write(response.getOutputStream(), executionResult);
+  }
+
+  private void writeJson(HttpServletResponse response, Object body, String origin)
+      throws IOException {
+    setJsonHeaders(response, HttpServletResponse.SC_OK, origin);
+    jsonWriter.write(response.getOutputStream(), body);
+  }
+
+  private void writeJson(HttpServletResponse response, int status, String json, String origin)
+      throws IOException {
+    setJsonHeaders(response, status, origin);
+    response.getOutputStream().write(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void writeMetrics(HttpServletResponse response) throws IOException {
+    response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+    response.setStatus(HttpServletResponse.SC_OK);
+    Writer out = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+    executor.writeMetrics(out);
+    out.flush();
+  }
+
+  /**
+   * Cuts a query or its variables to {@link #MAX_LOGGED_CHARACTERS}, as they may be large and hold
+   * the values of the clients.
+   */
+  static String abbreviate(String text) {
+    if (text == null || text.length() <= MAX_LOGGED_CHARACTERS) {
+      return text;
+    }
+    return text.substring(0, MAX_LOGGED_CHARACTERS) + "... (" + text.length() + " characters)";
+  }
+
+  private void setJsonHeaders(HttpServletResponse response, int status, String origin) {
     response.setHeader("Access-Control-Allow-Origin", origin);
     response.setHeader("Access-Control-Allow-Methods", "OPTIONS, GET, POST");
     response.setHeader("Access-Control-Allow-Credentials", "true");
     response.setHeader("Access-Control-Allow-Headers", "content-type, accept");
-    response.setContentType("application/json");
-    response.setStatus(HttpServletResponse.SC_OK);
-    response.getWriter().write(mapper.writeValueAsString(executionResult.toSpecification()));
+    response.setContentType("application/json;charset=utf-8");
+    response.setStatus(status);
   }
 
 }
@@ -0,0 +1,15 @@
+package org.g2ql.server;
+
+import java.io.IOException;
+
+/**
+ * Rejects a request, or a part of it, larger than the server accepts, which is answered with a 413
+ * without reading the rest of the request.
+ */
+class RequestTooLargeException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  RequestTooLargeException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,276 @@
+package org.g2ql.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionAttributes;
+import org.apache.geode.cache.query.Index;
+import org.g2ql.geode.GeodePageDataFetcher;
+import org.g2ql.geode.GeodeWhereClause;
+import org.g2ql.graphql.GraphQLExecutor;
+import org.g2ql.graphql.SchemaModel;
+
+/**
+ * The introspection result and the {@link SchemaModel} of the schema, kept on disk in the
+ * {@code g2ql.schemaSnapshotDir} directory, {@code g2ql-schema} by default. The introspection
+ * result is served on {@code /graphql/schema.json} as soon as the server is listening, and the
+ * schema is rebuilt from the model without reflecting on the domain classes. Snapshots are keyed
+ * by a fingerprint of the root regions, their key and value constraints, their indexes, the
+ * bytecode of the domain classes the schema is derived from and of the classes that build it, so
+ * a snapshot is only ever used for the cluster it was taken of. An empty
+ * {@code g2ql.schemaSnapshotDir} disables the snapshots.
+ */
+public class SchemaSnapshot {
+  private final static Logger logger = LogManager.getLogger(SchemaSnapshot.class);
+
+  static final String DIRECTORY = System.getProperty("g2ql.schemaSnapshotDir", "g2ql-schema");
+
+  private static final ObjectMapper mapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+      .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+  private final Path file;
+  private final Path modelFile;
+  private final String fingerprint;
+
+  SchemaSnapshot(Path directory, String fingerprint) {
+    this.file = directory == null ? null : directory.resolve("schema-" + fingerprint + ".json");
+    this.modelFile =
+        directory == null ? null : directory.resolve("model-" + fingerprint + ".json");
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * Returns the snapshot of the schema of the given cache as it is now.
+   */
+  public static SchemaSnapshot of(Cache cache) {
+    return new SchemaSnapshot(DIRECTORY.isEmpty() ? null : Paths.get(DIRECTORY),
+        fingerprint(cache));
+  }
+
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Returns the introspection result saved for this fingerprint, or null if there is none.
+   */
+  public String read() {
+    return read(file);
+  }
+
+  /**
+   * Saves the introspection result for this fingerprint, unless it was already saved.
+   */
+  public void write(String json) {
+    write(file, json);
+  }
+
+  /**
+   * Returns the model of the schema saved for this fingerprint, or null if there is none.
+   */
+  public SchemaModel readModel() {
+    String json = read(modelFile);
+    if (json == null) {
+      return null;
+    }
+    try {
+      return mapper.readValue(json, SchemaModel.class);
+    } catch (IOException e) {
+      logger.warn("SchemaSnapshot - could not parse snapshot " + modelFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * Saves the model of the schema for this fingerprint, unless it was already saved.
+   */
+  public void writeModel(SchemaModel model) {
+    if (modelFile == null || model == null || Files.exists(modelFile)) {
+      return;
+    }
+    try {
+      write(modelFile, mapper.writeValueAsString(model));
+    } catch (IOException e) {
+      logger.warn("SchemaSnapshot - could not save snapshot " + modelFile, e);
+    }
+  }
+
+  private static String read(Path file) {
+    if (file == null) {
+      return null;
+    }
+    try {
+      String json = new String(Files.readAllBytes(file), UTF_8);
+      logger.info("SchemaSnapshot - found snapshot " + file);
+      return json;
+    } catch (NoSuchFileException e) {
+      logger.info("SchemaSnapshot - no snapshot " + file);
+    } catch (IOException e) {
+      logger.warn("SchemaSnapshot - could not read snapshot " + file, e);
+    }
+    return null;
+  }
+
+  /**
+   * Writes the file aside and moves it in place, so a concurrent reader never sees a partial
+   * snapshot.
+   */
+  private static void write(Path file, String json) {
+    if (file == null || Files.exists(file)) {
+      return;
+    }
+    try {
+      Files.createDirectories(file.getParent());
+      Path temporary = Files.createTempFile(file.getParent(), "schema-", ".tmp");
+      Files.write(temporary, json.getBytes(UTF_8));
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      logger.info("SchemaSnapshot - saved snapshot " + file);
+    } catch (IOException e) {
+      logger.warn("SchemaSnapshot - could not save snapshot " + file, e);
+    }
+  }
+
+  /**
+   * Returns the sha256 hash of everything the schema of the given cache is derived from.
+   */
+  static String fingerprint(Cache cache) {
+    MessageDigest digest = sha256();
+    // the schema also changes with the way it is built, and the model with the way it is read
+    digest.update(bytecode(GraphQLExecutor.class, "GraphQLSchemaBuilder.class"));
+    for (Class<?> type : Arrays.asList(SchemaModel.class, SchemaModel.RegionModel.class,
+        SchemaModel.TypeModel.class, SchemaModel.FieldModel.class, GeodeWhereClause.class,
+        GeodePageDataFetcher.class)) {
+      digest.update(bytecode(type));
+    }
+    Set<Class<?>> classes = new HashSet<>();
+
+    TreeMap<String, Region<?, ?>> regions = new TreeMap<>();
+    cache.rootRegions().forEach(region -> regions.put(region.getName(), region));
+    for (Region<?, ?> region : regions.values()) {
+      RegionAttributes<?, ?> attributes = region.getAttributes();
+      Class<?> keyClass = attributes == null ? null : attributes.getKeyConstraint();
+      Class<?> valueClass = attributes == null ? null : attributes.getValueConstraint();
+      update(digest, "region " + region.getName() + " " + name(keyClass) + " " + name(valueClass));
+      for (String index : indexes(cache, region)) {
+        update(digest, "index " + index);
+      }
+      addClass(digest, valueClass, classes);
+    }
+    return hex(digest.digest());
+  }
+
+  private static List<String> indexes(Cache cache, Region<?, ?> region) {
+    Collection<Index> indexes = cache.getQueryService().getIndexes(region);
+    if (indexes == null) {
+      return Collections.emptyList();
+    }
+    return indexes.stream()
+        .map(index -> index.getName() + " " + index.getType() + " " + index.getIndexedExpression()
+            + " " + index.getFromClause())
+        .sorted().collect(Collectors.toList());
+  }
+
+  /**
+   * Adds the bytecode of a domain class and of every class its fields refer to.
+   */
+  private static void addClass(MessageDigest digest, Class<?> type, Set<Class<?>> visited) {
+    Deque<Class<?>> pending = new ArrayDeque<>();
+    if (type != null) {
+      pending.push(type);
+    }
+    while (!pending.isEmpty()) {
+      Class<?> current = pending.pop();
+      if (current.isArray()) {
+        current = current.getComponentType();
+      }
+      if (current.isPrimitive() || current.getName().startsWith("java.")
+          || !visited.add(current)) {
+        continue;
+      }
+      update(digest, "class " + current.getName());
+      digest.update(bytecode(current));
+      for (Field field : current.getDeclaredFields()) {
+        pending.push(field.getType());
+      }
+      if (current.getSuperclass() != null) {
+        pending.push(current.getSuperclass());
+      }
+    }
+  }
+
+  private static byte[] bytecode(Class<?> type) {
+    return bytecode(type, "/" + type.getName().replace('.', '/') + ".class");
+  }
+
+  private static byte[] bytecode(Class<?> type, String resource) {
+    try (InputStream in = type.getResourceAsStream(resource)) {
+      if (in == null) {
+        return new byte[0];
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+        bytes.write(buffer, 0, read);
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      return new byte[0];
+    }
+  }
+
+  private static String name(Class<?> type) {
+    return type == null ? "-" : type.getName();
+  }
+
+  private static void update(MessageDigest digest, String line) {
+    digest.update((line + "\n").getBytes(UTF_8));
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder answer = new StringBuilder(2 * bytes.length);
+    for (byte b : bytes) {
+      answer.append(Character.forDigit((b >> 4) & 0xf, 16));
+      answer.append(Character.forDigit(b & 0xf, 16));
+    }
+    return answer.toString();
+  }
+}
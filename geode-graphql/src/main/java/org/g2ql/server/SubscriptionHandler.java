@@ -0,0 +1,271 @@
+package org.g2ql.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import graphql.ExecutionResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.g2ql.graphql.GraphQLExecutor;
+import org.reactivestreams.Publisher;
+
+/**
+ * Serves subscriptions as Server-Sent Events on {@code /graphql/sse}. The operation is sent as the
+ * {@code query}, {@code variables} and {@code operationName} parameters of a GET, which is all an
+ * {@code EventSource} can send, or as the JSON body of a POST. Every change is sent as a
+ * {@code next} event holding the result as JSON, and the stream ends with a {@code complete} or an
+ * {@code error} event.
+ */
+public class SubscriptionHandler extends AbstractHandler {
+  private final static Logger logger = LogManager.getLogger(SubscriptionHandler.class);
+
+  static final String PATH = "/graphql/sse";
+
+  private static final ObjectMapper mapper =
+      new ObjectMapper().disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+  private static final GraphQLRequestReader requestReader = new GraphQLRequestReader();
+
+  private final Supplier<GraphQLExecutor> executors;
+
+  /**
+   * @param executors returns the executor, or null until the schema is built
+   */
+  public SubscriptionHandler(Supplier<GraphQLExecutor> executors) {
+    this.executors = executors;
+  }
+
+  @Override
+  public void handle(String target, Request baseRequest, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    if (!PATH.equals(target)) {
+      return;
+    }
+    baseRequest.setHandled(true);
+    String origin = request.getHeader("Origin");
+    response.setHeader("Access-Control-Allow-Origin", origin);
+    response.setHeader("Access-Control-Allow-Credentials", "true");
+    GraphQLExecutor executor = executors.get();
+    if (executor == null) {
+      response.setHeader("Retry-After", "1");
+      response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      return;
+    }
+
+    GraphQLRequest graphQLRequest;
+    try {
+      graphQLRequest = graphQLRequest(request);
+    } catch (RequestTooLargeException e) {
+      logger.info("SubscriptionHandler - subscription request rejected: " + e.getMessage());
+      response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+      return;
+    } catch (IOException e) {
+      logger.info("SubscriptionHandler - bad subscription request: " + e.getMessage());
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      return;
+    }
+    Map<String, Object> variables = graphQLRequest.getVariables() == null ? new HashMap<>()
+        : graphQLRequest.getVariables();
+    ExecutionResult result = executor.execute(graphQLRequest.getQuery(), variables,
+        graphQLRequest.getOperationName());
+    if (!(result.getData() instanceof Publisher)) {
+      // a failed subscription, or an operation that is not a subscription
+      response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      response.setContentType("application/json");
+      response.getWriter().write(mapper.writeValueAsString(result.toSpecification()));
+      return;
+    }
+    Publisher<ExecutionResult> publisher = result.getData();
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    AsyncContext async = request.startAsync();
+    async.setTimeout(0);
+    // the headers are sent before the stream is made non-blocking
+    response.flushBuffer();
+    ServletOutputStream out = response.getOutputStream();
+    SubscriptionWriter writer = new SubscriptionWriter(new EventStream(out, async));
+    async.addListener(new AsyncListener() {
+      @Override
+      public void onComplete(AsyncEvent event) {
+        writer.cancel();
+      }
+
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        writer.cancel();
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+        writer.cancel();
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {}
+    });
+    publisher.subscribe(writer);
+  }
+
+  private GraphQLRequest graphQLRequest(HttpServletRequest request) throws IOException {
+    if (request.getMethod().equalsIgnoreCase("POST")) {
+      return requestReader.read(request);
+    }
+    GraphQLRequest graphQLRequest = new GraphQLRequest();
+    graphQLRequest.setQuery(request.getParameter("query"));
+    graphQLRequest.setOperationName(request.getParameter("operationName"));
+    String variables = request.getParameter("variables");
+    if (variables != null) {
+      graphQLRequest.setVariables(requestReader.readParameter(variables, "variables"));
+    }
+    return graphQLRequest;
+  }
+
+  /**
+   * Writes the results of a subscription as events of the stream, without blocking: an event the
+   * stream cannot take at once is written when the container reports the stream ready again.
+   */
+  private static class EventStream implements SubscriptionWriter.Sink, WriteListener {
+    private final ServletOutputStream out;
+    private final AsyncContext async;
+
+    // the event being written, the event once written and not flushed yet, and its future
+    private byte[] pending;
+    private boolean flushed;
+    private CompletableFuture<Void> written;
+
+    EventStream(ServletOutputStream out, AsyncContext async) {
+      this.out = out;
+      this.async = async;
+      out.setWriteListener(this);
+    }
+
+    @Override
+    public CompletableFuture<Void> next(Map<String, Object> result) {
+      try {
+        return write("event: next\ndata: " + mapper.writeValueAsString(result) + "\n\n");
+      } catch (IOException e) {
+        return failed(e);
+      }
+    }
+
+    @Override
+    public CompletableFuture<Void> error(Throwable failure) {
+      CompletableFuture<Void> sent;
+      try {
+        sent = write("event: error\ndata: " + mapper.writeValueAsString(Collections
+            .singletonMap("errors", Collections.singletonList(Collections.singletonMap("message",
+                String.valueOf(failure.getMessage()))))) + "\n\n");
+      } catch (IOException e) {
+        sent = failed(e);
+      }
+      return sent.whenComplete((ignored, e) -> async.complete());
+    }
+
+    @Override
+    public CompletableFuture<Void> complete() {
+      return write("event: complete\ndata:\n\n").whenComplete((ignored, e) -> async.complete());
+    }
+
+    @Override
+    public CompletableFuture<Void> keepAlive() {
+      return write(":\n\n");
+    }
+
+    @Override
+    public void onWritePossible() {
+      CompletableFuture<Void> done;
+      synchronized (this) {
+        done = resume();
+      }
+      if (done != null) {
+        done.complete(null);
+      }
+    }
+
+    @Override
+    public void onError(Throwable failure) {
+      CompletableFuture<Void> failed;
+      synchronized (this) {
+        failed = written;
+        written = null;
+        pending = null;
+      }
+      if (failed != null) {
+        failed.completeExceptionally(failure);
+      }
+    }
+
+    private CompletableFuture<Void> write(String event) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      CompletableFuture<Void> done;
+      synchronized (this) {
+        pending = event.getBytes(UTF_8);
+        flushed = false;
+        written = future;
+        done = resume();
+      }
+      if (done != null) {
+        done.complete(null);
+      }
+      return future;
+    }
+
+    /**
+     * Writes and flushes the pending event as far as the stream is ready, and returns its future
+     * once it is flushed. Otherwise the container calls {@link #onWritePossible()} when the stream
+     * is ready again.
+     */
+    private CompletableFuture<Void> resume() {
+      try {
+        while (written != null && out.isReady()) {
+          if (pending != null) {
+            byte[] event = pending;
+            pending = null;
+            out.write(event);
+          } else if (!flushed) {
+            flushed = true;
+            out.flush();
+          } else {
+            CompletableFuture<Void> done = written;
+            written = null;
+            return done;
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        CompletableFuture<Void> failed = written;
+        written = null;
+        pending = null;
+        if (failed != null) {
+          failed.completeExceptionally(e);
+        }
+      }
+      return null;
+    }
+
+    private static CompletableFuture<Void> failed(Throwable failure) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(failure);
+      return failed;
+    }
+  }
+}
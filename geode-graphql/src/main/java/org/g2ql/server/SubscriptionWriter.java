@@ -0,0 +1,200 @@
+package org.g2ql.server;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import graphql.ExecutionResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Writes the results of a subscription to a connection, requesting the next change only once the
+ * previous result was written. A slow connection thus holds the changes back in the queue of the
+ * subscription, where the changes of a key are coalesced, instead of buffering them here. Writes
+ * never block: each one is started once the previous one completed, so neither the thread
+ * delivering the changes nor the keep alive thread waits for a slow connection.
+ *
+ * <p>
+ * Every {@code g2ql.subscriptionKeepAliveSeconds} seconds, 30 by default, a keep alive is written
+ * so idle connections are not closed by proxies, and closed connections are noticed without
+ * waiting for a change. No keep alive is written while a write is in progress. A write still in
+ * progress after {@code g2ql.subscriptionWriteTimeoutSeconds} seconds, 60 by default, cancels the
+ * subscription, as the client stopped reading.
+ */
+class SubscriptionWriter implements Subscriber<ExecutionResult> {
+  private final static Logger logger = LogManager.getLogger(SubscriptionWriter.class);
+
+  static final long KEEP_ALIVE_SECONDS = Long.getLong("g2ql.subscriptionKeepAliveSeconds", 30);
+  static final long WRITE_TIMEOUT_SECONDS =
+      Long.getLong("g2ql.subscriptionWriteTimeoutSeconds", 60);
+
+  private static final ScheduledExecutorService keepAlives =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "g2ql-subscription-keep-alive");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * The connection a subscription writes to. Each call starts a write without waiting for it and
+   * returns a future completed once it is written, or failed if the connection is gone. A write
+   * is started only once the previous one completed.
+   */
+  interface Sink {
+    CompletableFuture<Void> next(Map<String, Object> result);
+
+    CompletableFuture<Void> error(Throwable failure);
+
+    CompletableFuture<Void> complete();
+
+    CompletableFuture<Void> keepAlive();
+  }
+
+  private final Sink sink;
+  private final long writeTimeoutNanos;
+  private final boolean keepsAlive;
+  private volatile Subscription subscription;
+  private volatile ScheduledFuture<?> keepAlive;
+  private volatile boolean cancelled;
+
+  // the last write started, guarded by this
+  private CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+  private volatile long writeStarted;
+
+  SubscriptionWriter(Sink sink) {
+    this(sink, WRITE_TIMEOUT_SECONDS, true);
+  }
+
+  SubscriptionWriter(Sink sink, long writeTimeoutSeconds) {
+    this(sink, writeTimeoutSeconds, true);
+  }
+
+  /**
+   * @param keepsAlive false if the connection writes its own keep alives and calls
+   *        {@link #checkWrite()} instead, as when it carries several subscriptions
+   */
+  SubscriptionWriter(Sink sink, long writeTimeoutSeconds, boolean keepsAlive) {
+    this.sink = sink;
+    this.writeTimeoutNanos = TimeUnit.SECONDS.toNanos(writeTimeoutSeconds);
+    this.keepsAlive = keepsAlive;
+  }
+
+  /**
+   * Runs a task every {@code g2ql.subscriptionKeepAliveSeconds} on the keep alive thread, or never
+   * if keep alives are disabled. The task must not block.
+   */
+  static ScheduledFuture<?> scheduleKeepAlive(Runnable keepAlive) {
+    if (KEEP_ALIVE_SECONDS <= 0) {
+      return null;
+    }
+    return keepAlives.scheduleAtFixedRate(keepAlive, KEEP_ALIVE_SECONDS, KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    this.subscription = subscription;
+    if (cancelled) {
+      subscription.cancel();
+      return;
+    }
+    if (keepsAlive) {
+      keepAlive = scheduleKeepAlive(this::keepAlive);
+    }
+    subscription.request(1);
+  }
+
+  @Override
+  public void onNext(ExecutionResult result) {
+    write(() -> sink.next(result.toSpecification())).thenRun(() -> subscription.request(1));
+  }
+
+  @Override
+  public void onError(Throwable failure) {
+    write(() -> sink.error(failure));
+    stopKeepAlive();
+  }
+
+  @Override
+  public void onComplete() {
+    write(sink::complete);
+    stopKeepAlive();
+  }
+
+  /**
+   * Stops the subscription, e.g. when the connection is closed or the client unsubscribes.
+   */
+  void cancel() {
+    cancelled = true;
+    stopKeepAlive();
+    Subscription current = subscription;
+    if (current != null) {
+      current.cancel();
+    }
+  }
+
+  /**
+   * Writes a keep alive unless a write is in progress, and cancels the subscription if that write
+   * is in progress for too long. Runs on the keep alive thread shared by every subscription.
+   */
+  void keepAlive() {
+    if (checkWrite()) {
+      write(sink::keepAlive);
+    }
+  }
+
+  /**
+   * Returns true if no write is in progress, and cancels the subscription if a write is in
+   * progress for too long.
+   */
+  boolean checkWrite() {
+    synchronized (this) {
+      if (writes.isDone()) {
+        return true;
+      } else if (System.nanoTime() - writeStarted < writeTimeoutNanos) {
+        return false;
+      }
+    }
+    logger.info("SubscriptionWriter - nothing written for " + writeTimeoutNanos / 1_000_000_000L
+        + " seconds, cancelling subscription");
+    cancel();
+    return false;
+  }
+
+  private void stopKeepAlive() {
+    ScheduledFuture<?> current = keepAlive;
+    if (current != null) {
+      current.cancel(false);
+    }
+  }
+
+  /**
+   * Starts a write once the previous one completed, cancelling the subscription if the connection
+   * is gone. The returned future fails if the write, or one before it, failed.
+   */
+  private synchronized CompletableFuture<Void> write(Supplier<CompletableFuture<Void>> write) {
+    writes = writes.thenCompose(ignored -> {
+      if (cancelled) {
+        CompletableFuture<Void> skipped = new CompletableFuture<>();
+        skipped.completeExceptionally(new IllegalStateException("Subscription cancelled"));
+        return skipped;
+      }
+      writeStarted = System.nanoTime();
+      return write.get();
+    });
+    writes.whenComplete((ignored, failure) -> {
+      if (failure != null && !cancelled) {
+        logger.info("SubscriptionWriter - connection closed, cancelling subscription: " + failure);
+        cancel();
+      }
+    });
+    return writes;
+  }
+}
@@ -0,0 +1,112 @@
+package org.g2ql.geode;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import graphql.schema.DataFetchingEnvironment;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.client.ServerOperationException;
+import org.apache.geode.internal.cache.PutAllPartialResultException;
+import org.apache.geode.internal.cache.PutAllPartialResultException.PutAllPartialResult;
+import org.g2ql.categories.UnitTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class GeodeBulkDataFetcherTest {
+  private Cache cache;
+  private Region<Object, Object> region;
+
+  @Before
+  public void setUp() {
+    cache = mock(Cache.class);
+    region = mock(Region.class);
+    doReturn(region).when(cache).getRegion("Name");
+  }
+
+  @Test
+  public void testEntriesArePutInBatches() {
+    GeodePutAllDataFetcher fetcher = new GeodePutAllDataFetcher(cache, "Name", String.class, 2);
+    List<Map<String, Object>> statuses =
+        fetcher.get(environment("entries", asList(entry("1", "a"), entry("2", "b"),
+            entry("3", "c"))));
+    assertThat(statuses).extracting(status -> status.get("status")).containsOnly("OK");
+    verify(region, times(2)).putAll(anyMap());
+  }
+
+  @Test
+  public void testFailedBatchReportsEachEntry() {
+    doThrow(new IllegalStateException("batch failed")).when(region).putAll(anyMap());
+    doThrow(new IllegalStateException("entry failed")).when(region).put("2", "b");
+    GeodePutAllDataFetcher fetcher = new GeodePutAllDataFetcher(cache, "Name", String.class, 10);
+    List<Map<String, Object>> statuses =
+        fetcher.get(environment("entries", asList(entry("1", "a"), entry("2", "b"),
+            entry("3", null))));
+    assertThat(statuses).extracting(status -> status.get("status")).containsExactly("OK",
+        "FAILED", "FAILED");
+    assertThat(statuses.get(1)).containsEntry("error", "entry failed");
+    verify(region).put("1", "a");
+  }
+
+  @Test
+  public void testEntriesAppliedByAFailedBatchAreNotAppliedAgain() {
+    PutAllPartialResult result = new PutAllPartialResult(3);
+    result.addKeys(asList("1"));
+    result.saveFailedKey("2", new IllegalStateException("batch failed"));
+    doThrow(new ServerOperationException(new PutAllPartialResultException(result))).when(region)
+        .putAll(anyMap());
+    doThrow(new IllegalStateException("entry failed")).when(region).put("3", "c");
+    GeodeStatistics statistics = GeodeStatistics.region(cache, "Name");
+    long mutations = statistics.get(GeodeStatistics.MUTATIONS);
+    long failures = statistics.get(GeodeStatistics.MUTATION_FAILURES);
+
+    GeodePutAllDataFetcher fetcher = new GeodePutAllDataFetcher(cache, "Name", String.class, 10);
+    List<Map<String, Object>> statuses = fetcher.get(environment("entries",
+        asList(entry("1", "a"), entry("2", "b"), entry("3", "c"))));
+    assertThat(statuses).extracting(status -> status.get("status")).containsExactly("OK", "OK",
+        "FAILED");
+    verify(region, never()).put(eq("1"), any());
+    verify(region).put("2", "b");
+    assertThat(statistics.get(GeodeStatistics.MUTATIONS) - mutations).isEqualTo(2);
+    assertThat(statistics.get(GeodeStatistics.MUTATION_FAILURES) - failures).isEqualTo(1);
+  }
+
+  @Test
+  public void testKeysAreRemovedInBatches() {
+    GeodeDestroyAllDataFetcher fetcher = new GeodeDestroyAllDataFetcher(cache, "Name", 2);
+    List<Map<String, Object>> statuses =
+        fetcher.get(environment("keys", asList("1", "2", "3")));
+    assertThat(statuses).extracting(status -> status.get("key")).containsExactly("1", "2", "3");
+    verify(region).removeAll(asList("1", "2"));
+    verify(region).removeAll(asList("3"));
+  }
+
+  private Map<String, Object> entry(Object key, Object value) {
+    Map<String, Object> entry = new HashMap<>();
+    entry.put("key", key);
+    entry.put("value", value);
+    return entry;
+  }
+
+  private DataFetchingEnvironment environment(String name, Object value) {
+    DataFetchingEnvironment environment = mock(DataFetchingEnvironment.class);
+    doReturn(Collections.singletonMap(name, value)).when(environment).getArguments();
+    return environment;
+  }
+}
@@ -0,0 +1,135 @@
+package org.g2ql.geode;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.g2ql.categories.UnitTest;
+import org.g2ql.domain.Person;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+@Category(UnitTest.class)
+public class GeodeEventPublisherTest {
+  private Person luke = new Person("1", "Luke", "Skywalker", 30, "Pivotal");
+  private Person james = new Person("2", "James", "Gosling", 60, "AWS");
+
+  private GeodeRegionEvents events;
+  private List<Map<String, Object>> received;
+  private List<Throwable> failures;
+  private Subscription subscription;
+
+  @Before
+  public void setUp() {
+    events = new GeodeRegionEvents("Person");
+    received = new ArrayList<>();
+    failures = new ArrayList<>();
+  }
+
+  @Test
+  public void testChangesOfAKeyAreCoalescedUntilRequested() {
+    GeodeEventPublisher publisher =
+        subscribe(null, GeodeWhereClause.of(Collections.emptyMap()), 10);
+    publisher.offer("1", GeodeEventPublisher.CREATE, luke, null);
+    publisher.offer("2", GeodeEventPublisher.UPDATE, james, james);
+    publisher.offer("1", GeodeEventPublisher.UPDATE, luke, luke);
+    assertThat(received).isEmpty();
+    assertThat(publisher.getPendingCount()).isEqualTo(2);
+    assertThat(publisher.getCoalescedCount()).isEqualTo(1);
+
+    subscription.request(1);
+    assertThat(received).hasSize(1);
+    assertThat(received.get(0)).containsEntry("key", "1")
+        .containsEntry("operation", GeodeEventPublisher.CREATE).containsEntry("value", luke);
+
+    subscription.request(5);
+    assertThat(received).extracting(event -> event.get("key")).containsExactly("1", "2");
+    publisher.offer("1", GeodeEventPublisher.DESTROY, null, luke);
+    assertThat(received).hasSize(3);
+    assertThat(received.get(2)).containsEntry("operation", GeodeEventPublisher.DESTROY)
+        .containsEntry("value", null);
+  }
+
+  @Test
+  public void testChangesAreFilteredOnKeysAndValues() {
+    GeodeEventPublisher publisher = subscribe(asList("1", "2"),
+        GeodeWhereClause.of(Collections.singletonMap("company", asList("Pivotal"))), 10);
+    subscription.request(Long.MAX_VALUE);
+
+    publisher.offer("3", GeodeEventPublisher.CREATE, luke, null);
+    publisher.offer("2", GeodeEventPublisher.CREATE, james, null);
+    publisher.offer("1", GeodeEventPublisher.CREATE, luke, null);
+    Person moved = new Person("1", "Luke", "Skywalker", 30, "AWS");
+    publisher.offer("1", GeodeEventPublisher.UPDATE, moved, luke);
+    publisher.offer("1", GeodeEventPublisher.UPDATE, moved, moved);
+
+    assertThat(received).extracting(event -> event.get("operation"))
+        .containsExactly(GeodeEventPublisher.CREATE, GeodeEventPublisher.DESTROY);
+  }
+
+  @Test
+  public void testChangesWithoutAnOldValueAreDeliveredAsDestroys() {
+    GeodeEventPublisher publisher = subscribe(null,
+        GeodeWhereClause.of(Collections.singletonMap("company", asList("Pivotal"))), 10);
+    subscription.request(Long.MAX_VALUE);
+
+    publisher.offer("1", GeodeEventPublisher.DESTROY, null, null);
+    publisher.offer("2", GeodeEventPublisher.UPDATE, james, null);
+    // a new value out of the filter was never held
+    publisher.offer("3", GeodeEventPublisher.CREATE, james, null);
+    publisher.offer("4", GeodeEventPublisher.DESTROY, null, james);
+
+    assertThat(received).extracting(event -> event.get("key")).containsExactly("1", "2");
+    assertThat(received).extracting(event -> event.get("operation"))
+        .containsOnly(GeodeEventPublisher.DESTROY);
+  }
+
+  @Test
+  public void testSubscriberFallingBehindIsEnded() {
+    GeodeEventPublisher publisher = subscribe(null, GeodeWhereClause.of(Collections.emptyMap()), 1);
+    assertThat(events.getSubscriberCount()).isEqualTo(1);
+
+    publisher.offer("1", GeodeEventPublisher.UPDATE, luke, luke);
+    publisher.offer("1", GeodeEventPublisher.UPDATE, luke, luke);
+    assertThat(failures).isEmpty();
+    publisher.offer("2", GeodeEventPublisher.UPDATE, james, james);
+
+    assertThat(failures).hasSize(1);
+    assertThat(failures.get(0)).hasMessageContaining("fell more than 1 changed keys behind");
+    assertThat(received).isEmpty();
+    assertThat(events.getSubscriberCount()).isEqualTo(0);
+  }
+
+  private GeodeEventPublisher subscribe(List<String> keys, GeodeWhereClause filter,
+      int capacity) {
+    GeodeEventPublisher publisher =
+        new GeodeEventPublisher(events, keys, filter, null, capacity, Runnable::run);
+    publisher.subscribe(new Subscriber<Map<String, Object>>() {
+      @Override
+      public void onSubscribe(Subscription s) {
+        subscription = s;
+      }
+
+      @Override
+      public void onNext(Map<String, Object> event) {
+        received.add(event);
+      }
+
+      @Override
+      public void onError(Throwable failure) {
+        failures.add(failure);
+      }
+
+      @Override
+      public void onComplete() {}
+    });
+    return publisher;
+  }
+}
@@ -0,0 +1,91 @@
+package org.g2ql.geode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.distributed.DistributedMember;
+import org.apache.geode.distributed.DistributedSystem;
+import org.g2ql.categories.UnitTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class GeodeExecutionContextTest {
+  private Cache cache;
+  private DistributedMember local;
+  private DistributedMember remote;
+
+  @Before
+  public void setUp() {
+    cache = mock(Cache.class);
+    DistributedSystem system = mock(DistributedSystem.class);
+    doReturn(system).when(cache).getDistributedSystem();
+    local = member("server1", "10.0.0.1");
+    remote = member("server2", "10.0.0.2");
+    doReturn(local).when(system).getDistributedMember();
+  }
+
+  @Test
+  public void testRoutingHintNamesRemotePrimary() {
+    GeodeExecutionContext context = new GeodeExecutionContext(cache);
+    context.routeTo(members(remote));
+    context.routeTo(members(remote));
+    assertThat(context.getRoutingHint().toString()).isEqualTo("{member=server2, host=10.0.0.2}");
+  }
+
+  @Test
+  public void testNoRoutingHint() {
+    GeodeExecutionContext context = new GeodeExecutionContext(cache);
+    assertThat(context.getRoutingHint()).isNull();
+
+    context.routeTo(members(local));
+    assertThat(context.getRoutingHint()).isNull();
+
+    context = new GeodeExecutionContext(cache);
+    context.routeTo(members(remote));
+    context.routeTo(members(local));
+    assertThat(context.getRoutingHint()).isNull();
+  }
+
+  @Test
+  public void testRoutingHintWithRedundantCopies() {
+    DistributedMember other = member("server3", "10.0.0.3");
+    GeodeExecutionContext context = new GeodeExecutionContext(cache);
+    // primaries on different members, both keys have a copy on server2
+    context.routeTo(members(other, remote));
+    context.routeTo(members(remote, other));
+    assertThat(context.getRoutingHint().get("member")).isIn("server2", "server3");
+    context.routeTo(members(remote));
+    assertThat(context.getRoutingHint().toString()).isEqualTo("{member=server2, host=10.0.0.2}");
+
+    // a redundant copy of a key is hosted here
+    context = new GeodeExecutionContext(cache);
+    context.routeTo(members(remote, local));
+    context.routeTo(members(remote));
+    assertThat(context.getRoutingHint()).isNull();
+
+    // no member hosts every key
+    context = new GeodeExecutionContext(cache);
+    context.routeTo(members(remote));
+    context.routeTo(members(other));
+    assertThat(context.getRoutingHint()).isNull();
+  }
+
+  private static Set<DistributedMember> members(DistributedMember... members) {
+    return new LinkedHashSet<>(Arrays.asList(members));
+  }
+
+  private DistributedMember member(String name, String host) {
+    DistributedMember member = mock(DistributedMember.class);
+    doReturn(name).when(member).getName();
+    doReturn(host).when(member).getHost();
+    return member;
+  }
+}
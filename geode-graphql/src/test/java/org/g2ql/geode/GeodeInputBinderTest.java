@@ -0,0 +1,45 @@
+package org.g2ql.geode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.g2ql.categories.UnitTest;
+import org.g2ql.domain.Person;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class GeodeInputBinderTest {
+  @Test
+  public void testBindsPropertiesAndEmbeddedInnerClass() {
+    Map<String, Object> address = new HashMap<>();
+    address.put("street", "1 Pike Street");
+    address.put("city", "Seattle");
+    Map<String, Object> input = new HashMap<>();
+    input.put("id", "1");
+    input.put("firstName", "Luke");
+    input.put("age", 30L);
+    input.put("address", address);
+    input.put("unknown", "ignored");
+
+    Person person = (Person) GeodeInputBinder.of(Person.class).bind(input);
+    assertThat(person.getId()).isEqualTo("1");
+    assertThat(person.getFirstName()).isEqualTo("Luke");
+    assertThat(person.getAge()).isEqualTo(30);
+    assertThat(person.getLastName()).isNull();
+    assertThat(person.getAddress().getStreet()).isEqualTo("1 Pike Street");
+    assertThat(person.getAddress().getCity()).isEqualTo("Seattle");
+    assertThat(person.getAddress().getCountry()).isNull();
+  }
+
+  @Test
+  public void testRejectsValuesNotFittingTheirProperty() {
+    Map<String, Object> input = new HashMap<>();
+    input.put("age", "thirty");
+    Throwable thrown = catchThrowable(() -> GeodeInputBinder.of(Person.class).bind(input));
+    assertThat(thrown).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("age");
+  }
+}
@@ -0,0 +1,24 @@
+package org.g2ql.geode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.g2ql.categories.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class GeodeMetricsInstrumentationTest {
+  @Test
+  public void testFingerprintIgnoresLiteralsAndLayout() {
+    String fingerprint = GeodeMetricsInstrumentation
+        .fingerprint("query people { Persons(keys: [\"1\", \"2\"], age: 30) { id firstName } }");
+
+    assertThat(fingerprint).hasSize(16).matches("[0-9a-f]+");
+    assertThat(GeodeMetricsInstrumentation.fingerprint(
+        "# by key\nquery people {\n  Persons(keys: [\"3\", \"4\"], age: -4.5e1) {\n    id,\n"
+            + "    firstName\n  }\n}"))
+        .isEqualTo(fingerprint)
+        .isNotEqualTo(GeodeMetricsInstrumentation
+            .fingerprint("query people { Persons(keys: [\"1\", \"2\"], age: 30) { id } }"));
+  }
+}
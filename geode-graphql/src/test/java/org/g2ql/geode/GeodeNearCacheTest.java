@@ -0,0 +1,132 @@
+package org.g2ql.geode;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.geode.cache.AttributesMutator;
+import org.apache.geode.cache.CacheListener;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionAttributes;
+import org.g2ql.categories.UnitTest;
+import org.g2ql.domain.Person;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+
+@Category(UnitTest.class)
+public class GeodeNearCacheTest {
+  private Region<Object, Object> region;
+  private Person luke = new Person("1", "Luke", "Skywalker", 30, "Pivotal");
+  private Person james = new Person("2", "James", "Gosling", 60, "AWS");
+
+  @Before
+  public void setUp() {
+    region = mock(Region.class);
+    doReturn("Person").when(region).getName();
+    doReturn(luke).when(region).get("1");
+  }
+
+  @Test
+  public void testHotKeysAreReadOnce() {
+    GeodeNearCache nearCache = new GeodeNearCache(region, 1024 * 1024, 0);
+    assertThat(nearCache.get("1")).isSameAs(luke);
+    assertThat(nearCache.get("1")).isSameAs(luke);
+    verify(region, times(1)).get("1");
+
+    nearCache.invalidate("1");
+    assertThat(nearCache.get("1")).isSameAs(luke);
+    verify(region, times(2)).get("1");
+  }
+
+  @Test
+  public void testGetAllOnlyReadsMissingKeys() {
+    Map<Object, Object> values = new HashMap<>();
+    values.put("2", james);
+    values.put("3", null);
+    doReturn(values).when(region).getAll(asList("2", "3"));
+
+    GeodeNearCache nearCache = new GeodeNearCache(region, 1024 * 1024, 0);
+    nearCache.get("1");
+    Map<Object, Object> answer = nearCache.getAll(asList("1", "2", "3", "2"));
+    assertThat(answer).containsEntry("1", luke).containsEntry("2", james);
+    assertThat(answer.get("3")).isNull();
+
+    doReturn(Collections.singletonMap("3", null)).when(region).getAll(asList("3"));
+    nearCache.getAll(asList("1", "2", "3"));
+    verify(region, times(1)).getAll(asList("3"));
+  }
+
+  @Test
+  public void testValueReadDuringInvalidationIsNotKept() {
+    GeodeNearCache nearCache = new GeodeNearCache(region, 1024 * 1024, 0);
+    doAnswer(invocation -> {
+      // the entry changes while the old value is being read
+      nearCache.invalidate("1");
+      return luke;
+    }).when(region).get("1");
+    assertThat(nearCache.get("1")).isSameAs(luke);
+
+    doReturn(james).when(region).get("1");
+    assertThat(nearCache.get("1")).isSameAs(james);
+  }
+
+  @Test
+  public void testValuesAreWeighedWithoutReflection() {
+    doReturn("Skywalker").when(region).get("2");
+    // room for the string and one value of the default weight, not two of them
+    GeodeNearCache nearCache = new GeodeNearCache(region, 1100, 0, 1000);
+    assertThat(nearCache.get("1")).isSameAs(luke);
+    assertThat(nearCache.get("2")).isEqualTo("Skywalker");
+    nearCache.get("2");
+    verify(region, times(1)).get("2");
+
+    assertThat(GeodeNearCache.weigh("Skywalker", 1000)).isEqualTo(58);
+    assertThat(GeodeNearCache.weigh(new byte[100], 1000)).isEqualTo(116);
+    assertThat(GeodeNearCache.weigh(42, 1000)).isEqualTo(16);
+    assertThat(GeodeNearCache.weigh(luke, 1000)).isEqualTo(1000);
+  }
+
+  @Test
+  public void testConfigureFromSystemProperty() {
+    RegionAttributes<Object, Object> attributes = mock(RegionAttributes.class);
+    AttributesMutator<Object, Object> mutator = mock(AttributesMutator.class);
+    doReturn(attributes).when(region).getAttributes();
+    doReturn(Person.class).when(attributes).getValueConstraint();
+    doReturn(mutator).when(region).getAttributesMutator();
+
+    GeodeNearCache.configure(region);
+    GeodeNearCache.get(region, "1");
+    GeodeNearCache.get(region, "1");
+    verify(region, times(2)).get("1");
+
+    System.setProperty("g2ql.nearCache.Person", "1048576");
+    try {
+      GeodeNearCache.configure(region);
+    } finally {
+      System.clearProperty("g2ql.nearCache.Person");
+    }
+    ArgumentCaptor<CacheListener> listener = ArgumentCaptor.forClass(CacheListener.class);
+    verify(mutator).addCacheListener(listener.capture());
+    GeodeNearCache.get(region, "1");
+    GeodeNearCache.get(region, "1");
+    verify(region, times(3)).get("1");
+    assertThat(GeodeNearCache.getStatistics().get("Person")).containsEntry("hitCount", 1L)
+        .containsEntry("missCount", 1L);
+
+    listener.getValue().afterRegionDestroy(null);
+    GeodeNearCache.get(region, "1");
+    verify(region, times(4)).get("1");
+    verify(mutator, times(1)).addCacheListener(any());
+  }
+}
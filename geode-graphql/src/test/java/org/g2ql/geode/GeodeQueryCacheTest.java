@@ -0,0 +1,76 @@
+package org.g2ql.geode;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.query.Query;
+import org.apache.geode.cache.query.QueryService;
+import org.g2ql.categories.UnitTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class GeodeQueryCacheTest {
+  private Cache cache;
+  private QueryService queryService;
+
+  @Before
+  public void setUp() {
+    cache = mock(Cache.class);
+    queryService = mock(QueryService.class);
+    doReturn(queryService).when(cache).getQueryService();
+  }
+
+  @Test
+  public void testBucket() {
+    assertThat(GeodeQueryCache.bucket(0)).isEqualTo(1);
+    assertThat(GeodeQueryCache.bucket(1)).isEqualTo(1);
+    assertThat(GeodeQueryCache.bucket(2)).isEqualTo(2);
+    assertThat(GeodeQueryCache.bucket(3)).isEqualTo(4);
+    assertThat(GeodeQueryCache.bucket(4)).isEqualTo(4);
+    assertThat(GeodeQueryCache.bucket(5)).isEqualTo(8);
+    assertThat(GeodeQueryCache.bucket(1000)).isEqualTo(1024);
+  }
+
+  @Test
+  public void testPadRepeatsLastParameter() {
+    assertThat(GeodeQueryCache.pad(asList("a", "b", "c"), 4)).containsExactly("a", "b", "c", "c");
+    assertThat(GeodeQueryCache.pad(asList("a"), 1)).containsExactly("a");
+  }
+
+  @Test
+  public void testQueryIsCompiledOnce() {
+    Query query = mock(Query.class);
+    doReturn(query).when(queryService).newQuery("SELECT * FROM /Person");
+
+    GeodeQueryCache queryCache = new GeodeQueryCache(cache);
+    assertThat(queryCache.getQuery("SELECT * FROM /Person")).isSameAs(query);
+    assertThat(queryCache.getQuery("SELECT * FROM /Person")).isSameAs(query);
+
+    verify(queryService, times(1)).newQuery("SELECT * FROM /Person");
+  }
+
+  @Test
+  public void testLeastRecentlyUsedQueryIsEvicted() {
+    doReturn(mock(Query.class)).when(queryService).newQuery(anyString());
+
+    GeodeQueryCache queryCache = new GeodeQueryCache(cache, 2);
+    queryCache.getQuery("q1");
+    queryCache.getQuery("q2");
+    queryCache.getQuery("q1");
+    queryCache.getQuery("q3");
+    assertThat(queryCache.size()).isEqualTo(2);
+
+    queryCache.getQuery("q1");
+    queryCache.getQuery("q2");
+    verify(queryService, times(1)).newQuery("q1");
+    verify(queryService, times(2)).newQuery("q2");
+  }
+}
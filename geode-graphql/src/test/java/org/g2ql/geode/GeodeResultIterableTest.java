@@ -0,0 +1,38 @@
+package org.g2ql.geode;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Iterator;
+
+import org.g2ql.categories.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class GeodeResultIterableTest {
+
+  @Test
+  public void testSkipAndTake() {
+    Iterable<Object> window = new GeodeResultIterable(asList(1, 2, 3, 4, 5), 1, 3, row -> row);
+    assertThat(window).containsExactly(2, 3, 4);
+    assertThat(window).containsExactly(2, 3, 4);
+  }
+
+  @Test
+  public void testRowsAreMappedLazily() {
+    int[] mapped = new int[1];
+    Iterable<Object> window = new GeodeResultIterable(asList(1, 2, 3), 0, 2, row -> {
+      mapped[0]++;
+      return "row" + row;
+    });
+    Iterator<Object> rows = window.iterator();
+    assertThat(mapped[0]).isZero();
+    assertThat(rows.next()).isEqualTo("row1");
+    assertThat(mapped[0]).isEqualTo(1);
+    assertThat(rows.next()).isEqualTo("row2");
+    assertThat(rows.hasNext()).isFalse();
+    assertThat(mapped[0]).isEqualTo(2);
+    assertThat(new GeodeResultIterable(asList(1, 2), 5, 2, row -> row)).isEmpty();
+  }
+}
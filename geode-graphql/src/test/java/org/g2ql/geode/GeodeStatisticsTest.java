@@ -0,0 +1,99 @@
+package org.g2ql.geode;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.function.LongSupplier;
+
+import org.apache.geode.StatisticDescriptor;
+import org.apache.geode.Statistics;
+import org.apache.geode.StatisticsType;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.distributed.DistributedSystem;
+import org.g2ql.categories.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+
+@Category(UnitTest.class)
+public class GeodeStatisticsTest {
+  @Test
+  public void testReadsAreCountedPerRegion() {
+    Region<Object, Object> region = mock(Region.class);
+    doReturn("GeodeStatisticsTestReads").when(region).getName();
+    doReturn("Luke").when(region).get("1");
+    doReturn(Collections.singletonMap("1", "Luke")).when(region).getAll(asList("1", "2"));
+
+    GeodeNearCache.get(region, "1");
+    GeodeNearCache.get(region, "1");
+    GeodeNearCache.getAll(region, asList("1", "2"));
+
+    GeodeStatistics statistics = GeodeStatistics.region(region);
+    assertThat(statistics.get(GeodeStatistics.GETS)).isEqualTo(2);
+    assertThat(statistics.get(GeodeStatistics.GET_TIME)).isPositive();
+    assertThat(statistics.get(GeodeStatistics.GET_ALLS)).isEqualTo(1);
+    assertThat(statistics.get(GeodeStatistics.GET_ALL_KEYS)).isEqualTo(2);
+    assertThat(statistics.get(GeodeStatistics.QUERIES)).isEqualTo(0);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCountersAreSampledThroughTheDistributedSystem() {
+    Cache cache = mock(Cache.class);
+    DistributedSystem system = mock(DistributedSystem.class);
+    StatisticsType type = mock(StatisticsType.class);
+    Statistics statistics = mock(Statistics.class);
+    doReturn(system).when(cache).getDistributedSystem();
+    doReturn(mock(StatisticDescriptor.class)).when(system)
+        .createLongCounter(anyString(), anyString(), anyString());
+    doReturn(mock(StatisticDescriptor.class)).when(system)
+        .createLongCounter(anyString(), anyString(), anyString(), any(Boolean.class));
+    doReturn(type).when(system).findType(GeodeStatistics.REGION_TYPE);
+    doReturn(statistics).when(system).createStatistics(type, "GeodeStatisticsTestSampled");
+
+    GeodeStatistics counters = GeodeStatistics.region(cache, "GeodeStatisticsTestSampled");
+    counters.add(GeodeStatistics.QUERY_RESULTS, 42);
+
+    ArgumentCaptor<LongSupplier> queryResults = ArgumentCaptor.forClass(LongSupplier.class);
+    verify(statistics).setLongSupplier(eq("queryResults"), queryResults.capture());
+    assertThat(queryResults.getValue().getAsLong()).isEqualTo(42);
+    assertThat(GeodeStatistics.region(cache, "GeodeStatisticsTestSampled")).isSameAs(counters);
+  }
+
+  @Test
+  public void testCountersAreKeptPerDistributedSystem() {
+    Cache cache = mock(Cache.class);
+    DistributedSystem system = mock(DistributedSystem.class);
+    doReturn(system).when(cache).getDistributedSystem();
+    doReturn(true).when(system).isConnected();
+    GeodeStatistics counters = GeodeStatistics.region(cache, "GeodeStatisticsTestReconnected");
+    GeodeStatistics server = GeodeStatistics.server(cache);
+    counters.increment(GeodeStatistics.MUTATIONS);
+
+    // the member reconnects with a new distributed system
+    Cache reconnected = mock(Cache.class);
+    DistributedSystem newSystem = mock(DistributedSystem.class);
+    doReturn(newSystem).when(reconnected).getDistributedSystem();
+    doReturn(true).when(newSystem).isConnected();
+    doReturn(false).when(system).isConnected();
+
+    GeodeStatistics newCounters =
+        GeodeStatistics.region(reconnected, "GeodeStatisticsTestReconnected");
+    assertThat(newCounters).isNotSameAs(counters);
+    assertThat(newCounters.get(GeodeStatistics.MUTATIONS)).isEqualTo(0);
+    assertThat(GeodeStatistics.server(reconnected)).isNotSameAs(server);
+    verify(newSystem).findType(GeodeStatistics.REGION_TYPE);
+    verify(newSystem).findType(GeodeStatistics.SERVER_TYPE);
+    // the statistics of the disconnected system are dropped
+    assertThat(GeodeStatistics.region(cache, "GeodeStatisticsTestReconnected"))
+        .isNotSameAs(counters);
+  }
+}
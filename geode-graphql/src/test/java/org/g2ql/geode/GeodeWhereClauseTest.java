@@ -0,0 +1,98 @@
+package org.g2ql.geode;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.g2ql.categories.UnitTest;
+import org.g2ql.domain.Person;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class GeodeWhereClauseTest {
+
+  @Test
+  public void testSingleValueArgument() {
+    GeodeWhereClause where = GeodeWhereClause.of(map("firstName", "Luke"));
+    assertThat(where.toString()).isEqualTo("x.firstName=$1");
+    assertThat(where.getParameters()).containsExactly("Luke");
+  }
+
+  @Test
+  public void testIndexedArgumentsAreCombinedWithAnd() {
+    Map<String, Object> arguments = map("firstName", asList("Luke", "James", "Elon"));
+    arguments.put("company", asList("Pivotal"));
+    arguments.put("key", null);
+
+    GeodeWhereClause where = GeodeWhereClause.of(arguments);
+    assertThat(where.toString())
+        .isEqualTo("(x.firstName IN set($1, $2, $3, $4) AND x.company IN set($5))");
+    assertThat(where.getParameters()).containsExactly("Luke", "James", "Elon", "Elon", "Pivotal");
+  }
+
+  @Test
+  public void testWhereExpression() {
+    Map<String, Object> not = map(GeodeWhereClause.NOT, map("company", asList("AWS")));
+    Map<String, Object> or = map(GeodeWhereClause.OR,
+        asList(map("firstName", asList("Luke")), map("lastName", asList("Gosling"))));
+    Map<String, Object> and = map(GeodeWhereClause.AND, asList(or, not));
+
+    GeodeWhereClause where = GeodeWhereClause.of(map(GeodeWhereClause.WHERE, and));
+    assertThat(where.toString()).isEqualTo(
+        "((x.firstName IN set($1) OR x.lastName IN set($2)) AND NOT (x.company IN set($3)))");
+    assertThat(where.getParameters()).containsExactly("Luke", "Gosling", "AWS");
+  }
+
+  @Test
+  public void testConstantsAreFolded() {
+    assertThat(GeodeWhereClause.of(map("firstName", emptyList())).matchesNothing()).isTrue();
+    assertThat(GeodeWhereClause.of(map("firstName", null)).matchesAll()).isTrue();
+    assertThat(GeodeWhereClause.of(map(GeodeWhereClause.WHERE, map(GeodeWhereClause.NOT,
+        map("firstName", emptyList())))).matchesAll()).isTrue();
+
+    Map<String, Object> or = map(GeodeWhereClause.OR,
+        asList(map("firstName", emptyList()), map("lastName", asList("Gosling"))));
+    GeodeWhereClause where = GeodeWhereClause.of(map(GeodeWhereClause.WHERE, or));
+    assertThat(where.toString()).isEqualTo("x.lastName IN set($1)");
+    assertThat(where.getParameters()).containsExactly("Gosling");
+  }
+
+  @Test
+  public void testValuesAreMatchedAgainstTheFilter() {
+    Person luke = new Person("1", "Luke", "Skywalker", 30, "Pivotal");
+    Person james = new Person("2", "James", "Gosling", 60, "AWS");
+    Map<String, Object> not = map(GeodeWhereClause.NOT, map("company", asList("AWS")));
+    Map<String, Object> or = map(GeodeWhereClause.OR,
+        asList(map("age", asList(60L)), map("firstName", asList("Luke"))));
+    Map<String, Object> and = map(GeodeWhereClause.AND, asList(or, not));
+    GeodeWhereClause where = GeodeWhereClause.of(map(GeodeWhereClause.WHERE, and));
+
+    assertThat(where.matches(luke)).isTrue();
+    assertThat(where.matches(james)).isFalse();
+    assertThat(GeodeWhereClause.of(map("age", 60)).matches(james)).isTrue();
+    assertThat(GeodeWhereClause.of(map("firstName", emptyList())).matches(luke)).isFalse();
+  }
+
+  @Test
+  public void testFieldsOfEachClassAreMatched() {
+    Person luke = new Person("1", "Luke", "Skywalker", 30, "Pivotal");
+    Person.Address address = luke.new Address("1 Pike Street", "Luke", "USA");
+    GeodeWhereClause where = GeodeWhereClause.of(map("city", "Luke"));
+
+    // the field is looked up once per class, and a class without it never matches
+    assertThat(where.matches(address)).isTrue();
+    assertThat(where.matches(address)).isTrue();
+    assertThat(where.matches(luke)).isFalse();
+    assertThat(GeodeWhereClause.of(map("firstName", "Luke")).matches(luke)).isTrue();
+  }
+
+  private Map<String, Object> map(String key, Object value) {
+    Map<String, Object> answer = new LinkedHashMap<>();
+    answer.put(key, value);
+    return answer;
+  }
+}
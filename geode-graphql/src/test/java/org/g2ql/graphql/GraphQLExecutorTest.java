@@ -1,9 +1,15 @@
 package org.g2ql.graphql;
 
 import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import org.apache.geode.cache.AttributesMutator;
 import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheListener;
+import org.apache.geode.cache.CacheTransactionManager;
+import org.apache.geode.cache.EntryEvent;
 import org.apache.geode.cache.Region;
 import org.apache.geode.cache.RegionAttributes;
+import org.apache.geode.cache.TransactionId;
 import org.apache.geode.cache.query.FunctionDomainException;
 import org.apache.geode.cache.query.Index;
 import org.apache.geode.cache.query.NameResolutionException;
@@ -11,28 +17,56 @@ import org.apache.geode.cache.query.Query;
 import org.apache.geode.cache.query.QueryInvocationTargetException;
 import org.apache.geode.cache.query.QueryService;
 import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.Struct;
 import org.apache.geode.cache.query.TypeMismatchException;
 import org.apache.geode.cache.query.internal.LinkedResultSet;
+import org.apache.geode.cache.query.internal.StructImpl;
+import org.apache.geode.cache.query.internal.types.StructTypeImpl;
+import org.apache.geode.internal.cache.InternalCache;
+import org.apache.geode.internal.cache.RegionListener;
+import org.apache.geode.pdx.PdxInstance;
 
 import graphql.schema.GraphQLSchema;
 import org.g2ql.categories.UnitTest;
+import org.g2ql.geode.GeodeMetricsInstrumentation;
+import org.g2ql.geode.GeodePageDataFetcher;
 import org.g2ql.domain.Person;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -114,6 +148,241 @@ public class GraphQLExecutorTest {
         .isEqualTo("{Person={id=1, firstName=Luke, address={street=1 Pike Street, city=Seattle}}}");
   }
 
+  @Test
+  public void testMetricsAreWrittenPerOperationFingerprint() throws IOException {
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    executor.execute("query personById { Person(key: \"1\") { id firstName } }");
+    executor.execute("query personById {\n  # again\n  Person(key: \"1\") { id, firstName }\n}");
+
+    StringWriter metrics = new StringWriter();
+    executor.writeMetrics(metrics);
+    String fingerprint = GeodeMetricsInstrumentation
+        .fingerprint("query personById { Person(key: \"1\") { id firstName } }");
+    String labels = "operation=\"personById\",fingerprint=\"" + fingerprint + "\"";
+    assertThat(metrics.toString())
+        .contains("# TYPE g2ql_operation_seconds summary\n")
+        .contains("g2ql_operation_seconds_count{" + labels + ",phase=\"total\"} 2\n")
+        .contains("g2ql_operation_seconds{" + labels + ",phase=\"execute\",quantile=\"0.99\"} ")
+        .contains(
+            "g2ql_field_seconds_count{" + labels + ",field=\"QueryType_Geode.Person\"} 2\n")
+        .contains("g2ql_field_seconds_count{" + labels + ",field=\"Person.firstName\"} 2\n");
+  }
+
+  @Test
+  public void testPersonWithKeyReadSerialized() {
+    PdxInstance address = mock(PdxInstance.class);
+    doReturn(true).when(address).hasField("city");
+    doReturn("Palo Alto").when(address).getField("city");
+    PdxInstance person = mock(PdxInstance.class);
+    doReturn(true).when(person).hasField(anyString());
+    doReturn("3").when(person).getField("id");
+    doReturn("Ada").when(person).getField("firstName");
+    doReturn(address).when(person).getField("address");
+    doReturn(Stream.of("2").collect(toList())).when(person).getField("friends");
+    Region<String, Object> personRegion = cache.getRegion("Person");
+    doReturn(person).when(personRegion).get("3");
+
+    String query = "query personById\n{\nPerson(key: \"3\"){\nid\nfirstName\naddress{\ncity\n}\n"
+        + "friends{\nfirstName\n}\n}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString()).isEqualTo(
+        "{Person={id=3, firstName=Ada, address={city=Palo Alto}, friends=[{firstName=James}]}}");
+    verify(person, times(0)).getField("lastName");
+    verify(person, times(0)).getObject();
+  }
+
+  @Test
+  public void testRootFieldsAreFetchedInParallel() {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    doAnswer(invocation -> {
+      bothStarted.countDown();
+      // only returns the person once the sibling field is being fetched too
+      return bothStarted.await(10, TimeUnit.SECONDS)
+          ? personRegionData.get(invocation.<String>getArgument(0)) : null;
+    }).when(personRegion).get(anyString());
+
+    String query = "query twoPersons\n{\nluke: Person(key: \"1\"){\nfirstName}\n"
+        + "james: Person(key: \"2\"){\nfirstName}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString())
+        .isEqualTo("{luke={firstName=Luke}, james={firstName=James}}");
+  }
+
+  @Test
+  public void testDocumentCacheIsFlushedWithSchema() {
+    String query = "query personById\n{\nPerson(key: \"1\"){\nid\nfirstName}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    executor.execute(query);
+    ExecutionResult result = executor.execute(query);
+    assertThat(result.getData().toString()).isEqualTo("{Person={id=1, firstName=Luke}}");
+    assertThat(executor.getDocumentCacheStatistics()).containsEntry("hitCount", 1L)
+        .containsEntry("missCount", 1L);
+
+    executor.updateSchema(executor.getBuilder());
+    assertThat(executor.getDocumentCacheStatistics()).containsEntry("size", 0L)
+        .containsEntry("hitCount", 0L);
+  }
+
+  @Test
+  public void testRegionsAreAddedAndDroppedIncrementally() {
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    GraphQLSchema before = executor.getGraphQLSchema();
+    long version = executor.getSchemaVersion();
+
+    Region<String, String> fooRegion = mock(Region.class);
+    RegionAttributes<String, String> fooRegionAttributes = mock(RegionAttributes.class);
+    doReturn("Foo").when(fooRegion).getName();
+    doReturn(fooRegionAttributes).when(fooRegion).getAttributes();
+    doReturn(String.class).when(fooRegionAttributes).getValueConstraint();
+    doReturn(fooRegion).when(cache).getRegion("Foo");
+    doReturn("bar").when(fooRegion).get("1");
+    doReturn(Stream.of(cache.getRegion("Person"), fooRegion).collect(toSet())).when(cache)
+        .rootRegions();
+
+    executor.regionCreated(fooRegion);
+    assertThat(executor.getSchemaVersion()).isEqualTo(version + 1);
+    assertThat(before.getQueryType().getFieldDefinition("Foo")).isNull();
+    assertThat(executor.getGraphQLSchema().getQueryType().getFieldDefinition("Person"))
+        .isSameAs(before.getQueryType().getFieldDefinition("Person"));
+    ExecutionResult result = executor.execute("query foo\n{\nFoo(key: \"1\")\n}");
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString()).isEqualTo("{Foo=bar}");
+
+    executor.regionDestroyed(fooRegion);
+    assertThat(executor.getSchemaVersion()).isEqualTo(version + 2);
+    assertThat(executor.getGraphQLSchema().getQueryType().getFieldDefinition("Foo")).isNull();
+    assertThat(executor.getGraphQLSchema().getMutationType().getFieldDefinition("putPerson"))
+        .isNotNull();
+  }
+
+  @Test
+  public void testIndexesCreatedAfterTheRegionAreQueryable() {
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    doReturn(Collections.emptyList()).when(queryService).getIndexes(personRegion);
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    long version = executor.getSchemaVersion();
+    assertThat(executor.getGraphQLSchema().getQueryType().getFieldDefinition("Person")
+        .getArgument("firstName")).isNull();
+
+    Index lastNameIndex = mock(Index.class);
+    doReturn("lastName").when(lastNameIndex).getIndexedExpression();
+    doReturn(Collections.singletonList(lastNameIndex)).when(queryService).getIndexes(personRegion);
+    executor.checkIndexes();
+
+    assertThat(executor.getSchemaVersion()).isEqualTo(version + 1);
+    assertThat(executor.getGraphQLSchema().getQueryType().getFieldDefinition("Person")
+        .getArgument("lastName")).isNotNull();
+    executor.checkIndexes();
+    assertThat(executor.getSchemaVersion()).isEqualTo(version + 1);
+  }
+
+  @Test
+  public void testSubscriptionDeliversFilteredChanges() throws InterruptedException {
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    AttributesMutator<String, Person> mutator = mock(AttributesMutator.class);
+    doReturn(mutator).when(personRegion).getAttributesMutator();
+    String subscription = "subscription {\nonPersonChanged(firstName: [\"Luke\"]) {\n"
+        + "key\noperation\nvalue {\nfirstName\nfriends {\nfirstName\n}\n}\n}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(subscription);
+    assertThat(result.getErrors()).isEmpty();
+
+    BlockingQueue<ExecutionResult> changes = new LinkedBlockingQueue<>();
+    Publisher<ExecutionResult> publisher = result.getData();
+    publisher.subscribe(new Subscriber<ExecutionResult>() {
+      @Override
+      public void onSubscribe(Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(ExecutionResult change) {
+        changes.add(change);
+      }
+
+      @Override
+      public void onError(Throwable failure) {}
+
+      @Override
+      public void onComplete() {}
+    });
+    ArgumentCaptor<CacheListener> listener = ArgumentCaptor.forClass(CacheListener.class);
+    verify(mutator).addCacheListener(listener.capture());
+
+    Person person1 = personRegionData.get("1");
+    Person person2 = personRegionData.get("2");
+    listener.getValue().afterUpdate(entryEvent("2", person2, person2));
+    listener.getValue().afterUpdate(entryEvent("1", person1, person1));
+
+    ExecutionResult change = changes.poll(5, TimeUnit.SECONDS);
+    assertThat(change.getErrors()).isEmpty();
+    assertThat(change.getData().toString()).isEqualTo("{onPersonChanged={key=1, operation=UPDATE, "
+        + "value={firstName=Luke, friends=[{firstName=James}]}}}");
+    // changes of a key waiting in the queue are coalesced, so the destroy is sent only once the
+    // update was delivered
+    listener.getValue().afterDestroy(entryEvent("1", null, person1));
+    change = changes.poll(5, TimeUnit.SECONDS);
+    assertThat(change.getData().toString())
+        .isEqualTo("{onPersonChanged={key=1, operation=DESTROY, value=null}}");
+    // the change of the filtered out key is not delivered late either
+    assertThat(changes.poll(100, TimeUnit.MILLISECONDS)).isNull();
+  }
+
+  private EntryEvent<Object, Object> entryEvent(String key, Person newValue, Person oldValue) {
+    EntryEvent<Object, Object> event = mock(EntryEvent.class);
+    doReturn(key).when(event).getKey();
+    doReturn(newValue).when(event).getNewValue();
+    doReturn(oldValue).when(event).getOldValue();
+    return event;
+  }
+
+  @Test
+  public void testQueryCostIsReported() {
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    doReturn(2).when(personRegion).size();
+    String query =
+        "query personById\n{\nPerson(key: \"1\"){\nfirstName\nfriends{\nfirstName\n}\n}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+    assertThat(result.getErrors()).isEmpty();
+    Map<String, Object> cost = (Map<String, Object>) result.getExtensions().get("cost");
+    assertThat(cost).containsEntry("estimated", 3.0).containsEntry("throttled", false);
+  }
+
+  @Test
+  public void testQueryCostCountsTheSkippedRows() {
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    doReturn(995).when(personRegion).size();
+    String query = "query personsByFirstName\n{\nPersons(firstName: \"Luke\", limit: 10, "
+        + "offset: 990){\nfriends{\nid\n}\n}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+    Map<String, Object> cost = (Map<String, Object>) result.getExtensions().get("cost");
+    // 995 rows read by the query and the friends of the 5 rows past the offset
+    assertThat(cost).containsEntry("estimated", 1055.0);
+  }
+
+  @Test
+  public void testQueryOverBudgetIsRejected() {
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    doReturn(1000000).when(personRegion).size();
+    String query = "query personsByFirstName\n{\nPersons(firstName: \"Luke\", limit: 1000){\n"
+        + "friends{\nfriends{\nfriends{\nid\n}\n}\n}\n}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+    assertThat((Object) result.getData()).isNull();
+    assertThat(result.getErrors()).hasSize(1);
+    assertThat(result.getErrors().get(0).getMessage()).startsWith("Query cost 1111010 exceeds");
+    Map<String, Object> cost = (Map<String, Object>) result.getExtensions().get("cost");
+    assertThat(cost).containsEntry("estimated", 1111010.0);
+    verify(queryService, times(0)).newQuery(anyString());
+  }
+
   @Test
   public void testPutPerson() {
     String m =
@@ -136,6 +405,120 @@ public class GraphQLExecutorTest {
         .isEqualTo("{putPerson={firstName=Elon, lastName=Mush}}");
   }
 
+  @Test
+  public void testPutAllAndDestroyAllPersons() {
+    String m = "mutation LoadPersons($entries: [PersonEntryInput]) {\n"
+        + "  putAllPerson(entries: $entries) {\n    key\n    status\n  }\n"
+        + "  destroyAllPerson(keys: [\"1\"]) {\n    key\n    status\n  }\n}\n";
+
+    Map<String, Object> elon = new HashMap<>();
+    elon.put("key", "3");
+    elon.put("value", Stream.of("Elon").collect(toMap(name -> "firstName", name -> name)));
+    Map<String, Object> ada = new HashMap<>();
+    ada.put("key", "4");
+    ada.put("value", Stream.of("Ada").collect(toMap(name -> "firstName", name -> name)));
+    Map<String, Object> variables = new HashMap<>();
+    variables.put("entries", Stream.of(elon, ada).collect(toList()));
+
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(m, variables, "LoadPersons");
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString())
+        .isEqualTo("{putAllPerson=[{key=3, status=OK}, {key=4, status=OK}], "
+            + "destroyAllPerson=[{key=1, status=OK}]}");
+
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    ArgumentCaptor<Map> values = ArgumentCaptor.forClass(Map.class);
+    verify(personRegion).putAll(values.capture());
+    assertThat(values.getValue().keySet()).containsExactly("3", "4");
+    assertThat(((Person) values.getValue().get("4")).getFirstName()).isEqualTo("Ada");
+    verify(personRegion).removeAll(Stream.of("1").collect(toList()));
+  }
+
+  @Test
+  public void testTransactionalMutationCommitsOnce() {
+    CacheTransactionManager transactionManager = transactionManager(new AtomicReference<>());
+    String m = "mutation CreatePersons @transactional {\n"
+        + "  a: putPerson(key: \"3\", Person: {firstName: \"Elon\"}) {\n    firstName\n  }\n"
+        + "  b: putPerson(key: \"4\", Person: {firstName: \"Ada\"}) {\n    firstName\n  }\n}\n";
+
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(m);
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString())
+        .isEqualTo("{a={firstName=Elon}, b={firstName=Ada}}");
+    verify(transactionManager, times(1)).begin();
+    verify(transactionManager, times(1)).commit();
+    verify(transactionManager, times(0)).rollback();
+  }
+
+  @Test
+  public void testTransactionalMutationRollsBackOnFailure() {
+    CacheTransactionManager transactionManager = transactionManager(new AtomicReference<>());
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    doThrow(new IllegalStateException("not colocated")).when(personRegion).put(eq("4"), any());
+    String m = "mutation CreatePersons @transactional {\n"
+        + "  a: putPerson(key: \"3\", Person: {firstName: \"Elon\"}) {\n    firstName\n  }\n"
+        + "  b: putPerson(key: \"4\", Person: {firstName: \"Ada\"}) {\n    firstName\n  }\n}\n";
+
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(m);
+    assertThat((Object) result.getData()).isNull();
+    assertThat(result.getErrors()).extracting(GraphQLError::getMessage)
+        .contains("Transaction rolled back, a field failed");
+    verify(transactionManager, times(1)).rollback();
+    verify(transactionManager, times(0)).commit();
+  }
+
+  @Test
+  public void testTransactionalMutationFieldsAfterAConnectionStayInTheTransaction() {
+    AtomicReference<Thread> transactionThread = new AtomicReference<>();
+    CacheTransactionManager transactionManager = transactionManager(transactionThread);
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    doReturn(personRegionData.get("1")).when(personRegion).destroy("1");
+    List<Boolean> putsInTransaction = new CopyOnWriteArrayList<>();
+    doAnswer(invocation -> {
+      putsInTransaction.add(transactionThread.get() == Thread.currentThread());
+      return null;
+    }).when(personRegion).put(anyString(), any());
+    String m = "mutation Replace @transactional {\n"
+        + "  a: destroyPerson(key: \"1\") {\n    friends {\n      id\n    }\n  }\n"
+        + "  b: putPerson(key: \"3\", Person: {firstName: \"Elon\"}) {\n    firstName\n  }\n"
+        + "  c: putPerson(key: \"4\", Person: {firstName: \"Ada\"}) {\n    firstName\n  }\n}\n";
+
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(m);
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString()).isEqualTo(
+        "{a={friends=[{id=2}]}, b={firstName=Elon}, c={firstName=Ada}}");
+    assertThat(putsInTransaction).containsExactly(true, true);
+    verify(transactionManager, times(1)).commit();
+  }
+
+  /**
+   * Returns a transaction manager that binds its transaction to a thread like Geode does, and
+   * records the thread it is bound to.
+   */
+  private CacheTransactionManager transactionManager(AtomicReference<Thread> transactionThread) {
+    CacheTransactionManager transactionManager = mock(CacheTransactionManager.class);
+    TransactionId transaction = mock(TransactionId.class);
+    doReturn(transactionManager).when(cache).getCacheTransactionManager();
+    doAnswer(invocation -> {
+      transactionThread.set(Thread.currentThread());
+      return null;
+    }).when(transactionManager).begin();
+    doAnswer(invocation -> {
+      assertThat(transactionThread.get()).isSameAs(Thread.currentThread());
+      transactionThread.set(null);
+      return transaction;
+    }).when(transactionManager).suspend();
+    doAnswer(invocation -> {
+      transactionThread.set(Thread.currentThread());
+      return true;
+    }).when(transactionManager).tryResume(eq(transaction), anyLong(), any(TimeUnit.class));
+    return transactionManager;
+  }
+
   @Test
   public void testPersonAndFriendsWithKey() {
     String query =
@@ -148,6 +531,28 @@ public class GraphQLExecutorTest {
         .isEqualTo("{Person={id=1, firstName=Luke, friends=[{firstName=James}]}}");
   }
 
+  @Test
+  public void testFriendsOfPersonsAreLoadedInOneBatch() {
+    Region<String, Person> personRegion = cache.getRegion("Person");
+    personRegionData.get("2").getFriends().add("1");
+    Map<String, Person> friends = new HashMap<>();
+    friends.put("2", personRegionData.get("2"));
+    friends.put("1", personRegionData.get("1"));
+    doReturn(friends).when(personRegion).getAll(Stream.of("2", "1").collect(toList()));
+
+    String query =
+        "query personsById\n{\nPersons(key: [\"1\", \"2\"]){\nid\nfriends{\nfirstName}\n}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+    assertThat(result).isNotNull();
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString()).isEqualTo(
+        "{Persons=[{id=1, friends=[{firstName=James}]}, {id=2, friends=[{firstName=Luke}]}]}");
+
+    verify(personRegion, times(1)).getAll(Stream.of("2", "1").collect(toList()));
+    verify(personRegion, times(0)).getAll(Stream.of("2").collect(toList()));
+  }
+
   @Test
   public void testPersonsWithMultipleKey() {
     String query = "query personsById\n{\nPersons(key: [\"1\", \"2\"]){\nid\nfirstName}\n}";
@@ -162,12 +567,12 @@ public class GraphQLExecutorTest {
   @Test
   public void testPersonByFirstName() throws NameResolutionException, TypeMismatchException,
       QueryInvocationTargetException, FunctionDomainException {
-    String expectedOQL = "SELECT DISTINCT * FROM /Person x where x.firstName=$1";
+    String expectedOQL = "SELECT x.id, x.firstName FROM /Person x where x.firstName=$1 LIMIT 1";
 
     ArgumentCaptor<String> argumentCaptor = ArgumentCaptor.forClass(String.class);
     Query q = mock(Query.class);
-    SelectResults<Person> results = new LinkedResultSet();
-    results.add(personRegionData.get("1"));
+    SelectResults<Struct> results = new LinkedResultSet();
+    results.add(idAndFirstName(personRegionData.get("1")));
     doReturn(q).when(queryService).newQuery(expectedOQL);
     doReturn(results).when(q).execute("Luke");
 
@@ -186,12 +591,13 @@ public class GraphQLExecutorTest {
   @Test
   public void testPersonsWithFirstNames() throws NameResolutionException, TypeMismatchException,
       QueryInvocationTargetException, FunctionDomainException {
-    String expectedOQL = "SELECT DISTINCT * FROM /Person x where x.firstName IN set($1)";
+    String expectedOQL =
+        "SELECT x.id, x.firstName FROM /Person x where x.firstName IN set($1) LIMIT 1024";
 
     ArgumentCaptor<String> argumentCaptor = ArgumentCaptor.forClass(String.class);
     Query q = mock(Query.class);
-    SelectResults<Person> lukeResult = new LinkedResultSet();
-    lukeResult.add(personRegionData.get("1"));
+    SelectResults<Struct> lukeResult = new LinkedResultSet();
+    lukeResult.add(idAndFirstName(personRegionData.get("1")));
     doReturn(q).when(queryService).newQuery(expectedOQL);
     doReturn(lukeResult).when(q).execute("Luke");
 
@@ -210,13 +616,14 @@ public class GraphQLExecutorTest {
   @Test
   public void testPersonsByMultipleFirstNames() throws NameResolutionException,
       TypeMismatchException, QueryInvocationTargetException, FunctionDomainException {
-    String expectedOQL = "SELECT DISTINCT * FROM /Person x where x.firstName IN set($1, $2)";
+    String expectedOQL =
+        "SELECT x.id, x.firstName FROM /Person x where x.firstName IN set($1, $2) LIMIT 1024";
 
     ArgumentCaptor<String> argumentCaptor = ArgumentCaptor.forClass(String.class);
     Query q = mock(Query.class);
-    SelectResults<Person> results = new LinkedResultSet();
-    results.add(personRegionData.get("1"));
-    results.add(personRegionData.get("2"));
+    SelectResults<Struct> results = new LinkedResultSet();
+    results.add(idAndFirstName(personRegionData.get("1")));
+    results.add(idAndFirstName(personRegionData.get("2")));
     doReturn(q).when(queryService).newQuery(expectedOQL);
     doReturn(results).when(q).execute("Luke", "James");
 
@@ -234,6 +641,153 @@ public class GraphQLExecutorTest {
         .isEqualTo("{Persons=[{id=1, firstName=Luke}, {id=2, firstName=James}]}");
   }
 
+  @Test
+  public void testPersonsByThreeFirstNamesUsesBucketedCompiledQuery()
+      throws NameResolutionException, TypeMismatchException, QueryInvocationTargetException,
+      FunctionDomainException {
+    String expectedOQL =
+        "SELECT x.id, x.firstName FROM /Person x where x.firstName IN set($1, $2, $3, $4)"
+            + " LIMIT 1024";
+
+    Query q = mock(Query.class);
+    SelectResults<Struct> results = new LinkedResultSet();
+    results.add(idAndFirstName(personRegionData.get("1")));
+    results.add(idAndFirstName(personRegionData.get("2")));
+    doReturn(q).when(queryService).newQuery(expectedOQL);
+    doReturn(results).when(q).execute("Luke", "James", "Elon", "Elon");
+
+    String query = "query personsById\n{\nPersons(firstName: [\"Luke\", \"James\", \"Elon\"])"
+        + "{\nid\nfirstName}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    executor.execute(query);
+    ExecutionResult result = executor.execute(query);
+
+    verify(queryService, times(1)).newQuery(expectedOQL);
+
+    assertThat(result).isNotNull();
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString())
+        .isEqualTo("{Persons=[{id=1, firstName=Luke}, {id=2, firstName=James}]}");
+  }
+
+  @Test
+  public void testPersonsProjectingSingleField() throws NameResolutionException,
+      TypeMismatchException, QueryInvocationTargetException, FunctionDomainException {
+    String expectedOQL =
+        "SELECT x.lastName FROM /Person x where x.firstName IN set($1) LIMIT 1024";
+
+    Query q = mock(Query.class);
+    SelectResults<String> results = new LinkedResultSet();
+    results.add("Skywalker");
+    doReturn(q).when(queryService).newQuery(expectedOQL);
+    doReturn(results).when(q).execute("Luke");
+
+    String query = "query personsById\n{\nPersons(firstName: [\"Luke\"]){\nlastName}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+
+    verify(queryService, times(1)).newQuery(expectedOQL);
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString()).isEqualTo("{Persons=[{lastName=Skywalker}]}");
+  }
+
+  @Test
+  public void testPersonsWithWhereFilter() throws NameResolutionException, TypeMismatchException,
+      QueryInvocationTargetException, FunctionDomainException {
+    String expectedOQL = "SELECT x.id, x.firstName FROM /Person x where "
+        + "(x.firstName IN set($1) OR NOT (x.firstName IN set($2, $3))) LIMIT 1024";
+
+    Query q = mock(Query.class);
+    SelectResults<Struct> results = new LinkedResultSet();
+    results.add(idAndFirstName(personRegionData.get("1")));
+    doReturn(q).when(queryService).newQuery(expectedOQL);
+    doReturn(results).when(q).execute("Luke", "James", "Elon");
+
+    String query = "query personsByName\n{\nPersons(where: {OR: [{firstName: [\"Luke\"]}, "
+        + "{NOT: {firstName: [\"James\", \"Elon\"]}}]}){\nid\nfirstName}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+
+    verify(queryService, times(1)).newQuery(expectedOQL);
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString()).isEqualTo("{Persons=[{id=1, firstName=Luke}]}");
+  }
+
+  @Test
+  public void testPersonsWithKeysAndOffset() {
+    String query =
+        "query personsById\n{\nPersons(key: [\"1\", \"2\"], offset: 1, limit: 5)"
+            + "{\nid\nfirstName}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString()).isEqualTo("{Persons=[{id=2, firstName=James}]}");
+  }
+
+  @Test
+  public void testCloseRemovesTheRegionListener() {
+    InternalCache internalCache = mock(InternalCache.class);
+    doReturn(Collections.emptySet()).when(internalCache).rootRegions();
+    GraphQLExecutor executor = new GraphQLExecutor(internalCache);
+    ArgumentCaptor<RegionListener> listener = ArgumentCaptor.forClass(RegionListener.class);
+    verify(internalCache).addRegionListener(listener.capture());
+
+    executor.close();
+    executor.close();
+
+    verify(internalCache, times(1)).removeRegionListener(listener.getValue());
+  }
+
+  @Test
+  public void testDeepOffsetsAndLongKeyListsAreRejected() {
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute("query personsByFirstName\n{\n"
+        + "Persons(firstName: \"Luke\", limit: 1, offset: 1000000){\nid\n}\n}");
+    assertThat(result.getErrors()).extracting(GraphQLError::getMessage)
+        .anySatisfy(message -> assertThat(message).contains("page through PersonsPage"));
+    verify(queryService, times(0)).newQuery(anyString());
+
+    String keys = IntStream.rangeClosed(0, GeodePageDataFetcher.MAX_RESULTS)
+        .mapToObj(key -> "\"" + key + "\"").collect(joining(", "));
+    result = executor.execute("query personsById\n{\nPersons(key: [" + keys + "]){\nid\n}\n}");
+    assertThat(result.getErrors()).extracting(GraphQLError::getMessage)
+        .anySatisfy(message -> assertThat(message).contains("1001 were given"));
+  }
+
+  @Test
+  public void testPersonsPage() throws NameResolutionException, TypeMismatchException,
+      QueryInvocationTargetException, FunctionDomainException {
+    String expectedOQL = "SELECT DISTINCT e.key, e.value.id, e.value.firstName "
+        + "FROM /Person.entrySet e where e.value.firstName IN set($1, $2) AND e.key > $3 "
+        + "ORDER BY e.key LIMIT 2";
+    String expectedCountOQL = "SELECT COUNT(*) FROM /Person x where x.firstName IN set($1, $2)";
+
+    StructTypeImpl rowType = new StructTypeImpl(new String[] {"key", "id", "firstName"});
+    SelectResults<Struct> rows = new LinkedResultSet();
+    rows.add(new StructImpl(rowType, new Object[] {"1", "1", "Luke"}));
+    rows.add(new StructImpl(rowType, new Object[] {"2", "2", "James"}));
+    Query q = mock(Query.class);
+    doReturn(q).when(queryService).newQuery(expectedOQL);
+    doReturn(rows).when(q).execute("Luke", "James", "0");
+
+    SelectResults<Integer> count = new LinkedResultSet();
+    count.add(2);
+    Query countQuery = mock(Query.class);
+    doReturn(countQuery).when(queryService).newQuery(expectedCountOQL);
+    doReturn(count).when(countQuery).execute("Luke", "James");
+
+    String query = "query personsPage\n{\nPersonsPage(firstName: [\"Luke\", \"James\"], "
+        + "first: 1, after: \"MA==\"){\ntotalCount\npageInfo{\nhasNextPage\nendCursor}\n"
+        + "edges{\ncursor\nnode{\nid\nfirstName}}}\n}";
+    GraphQLExecutor executor = new GraphQLExecutor(cache);
+    ExecutionResult result = executor.execute(query);
+
+    assertThat(result.getErrors()).isEmpty();
+    assertThat(result.getData().toString()).isEqualTo("{PersonsPage={totalCount=2, "
+        + "pageInfo={hasNextPage=true, endCursor=MQ==}, "
+        + "edges=[{cursor=MQ==, node={id=1, firstName=Luke}}]}}");
+  }
+
   @Test
   public void testFoo() {
     Region<String, String> region = mock(Region.class);
@@ -395,4 +949,9 @@ public class GraphQLExecutorTest {
     assertThat(result.getErrors()).isEmpty();
     assertThat(result.getData().toString()).isEqualTo("{Foos=[One, Two]}");
   }
+
+  private Struct idAndFirstName(Person person) {
+    return new StructImpl(new StructTypeImpl(new String[] {"id", "firstName"}),
+        new Object[] {person.getId(), person.getFirstName()});
+  }
 }
@@ -2,10 +2,12 @@ package org.g2ql.graphql;
 
 import graphql.Scalars;
 import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInputObjectType;
 import graphql.schema.GraphQLList;
 import graphql.schema.GraphQLObjectType;
 import graphql.schema.GraphQLScalarType;
 import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.SchemaPrinter;
 import org.apache.geode.cache.Cache;
 import org.apache.geode.cache.Region;
 import org.apache.geode.cache.RegionAttributes;
@@ -59,12 +61,12 @@ public class GraphQLSchemaBuilderTest {
 
     assertThat(schema).isNotNull();
 
-    // two fields for every region
-    assertThat(schema.getQueryType().getFieldDefinitions().size()).isEqualTo(2);
+    // value, list and page fields for every region
+    assertThat(schema.getQueryType().getFieldDefinitions().size()).isEqualTo(3);
 
-    // two arguments
+    // key, indexed field and where arguments
     assertThat(schema.getQueryType().getFieldDefinition("person").getArguments().size())
-        .isEqualTo(2);
+        .isEqualTo(3);
     assertThat(schema.getQueryType().getFieldDefinition("person").getArgument("key").getType())
         .isEqualTo(Scalars.GraphQLString);
     assertThat(
@@ -72,13 +74,23 @@ public class GraphQLSchemaBuilderTest {
             .isEqualTo(Scalars.GraphQLString);
 
     assertThat(schema.getQueryType().getFieldDefinition("persons").getArguments().size())
-        .isEqualTo(2);
+        .isEqualTo(5);
     assertThat(schema.getQueryType().getFieldDefinition("persons").getArgument("key").getType())
         .isInstanceOf(GraphQLList.class);
     assertThat(
         schema.getQueryType().getFieldDefinition("persons").getArgument("firstName").getType())
             .isInstanceOf(GraphQLList.class);
 
+    // where filter over the indexed fields
+    GraphQLInputObjectType whereType = (GraphQLInputObjectType) schema.getQueryType()
+        .getFieldDefinition("persons").getArgument("where").getType();
+    assertThat(whereType.getName()).isEqualTo("personWhere");
+    assertThat(whereType.getFields()).extracting("name").containsExactly("firstName", "AND", "OR",
+        "NOT");
+    assertThat(((GraphQLList) whereType.getField("AND").getType()).getWrappedType())
+        .isSameAs(whereType);
+    assertThat(whereType.getField("NOT").getType()).isSameAs(whereType);
+
     // documentation
     assertThat(schema.getQueryType().getFieldDefinition("person").getDescription())
         .isEqualTo("A person is a person");
@@ -96,6 +108,15 @@ public class GraphQLSchemaBuilderTest {
     assertThat(personType.getFieldDefinition("address").getType())
         .isInstanceOf(GraphQLObjectType.class);
 
+    // page type
+    GraphQLFieldDefinition page = schema.getQueryType().getFieldDefinition("personsPage");
+    assertThat(page.getArguments()).extracting("name").containsExactly("firstName", "where",
+        "first", "after");
+    GraphQLObjectType pageType = (GraphQLObjectType) page.getType();
+    assertThat(pageType.getName()).isEqualTo("PersonPage");
+    assertThat(pageType.getFieldDefinitions()).extracting("name").containsExactly("totalCount",
+        "pageInfo", "edges");
+
     // connection types
     GraphQLList friendsList = (GraphQLList) personType.getFieldDefinition("friends").getType();
     assertThat(friendsList).isInstanceOf(GraphQLList.class);
@@ -103,6 +124,36 @@ public class GraphQLSchemaBuilderTest {
     assertThat(friendsList.getWrappedType().getName()).isEqualTo("Person");
   }
 
+  @Test
+  public void testSchemaIsRebuiltFromItsModel() {
+    Region<String, Person> region = mock(Region.class);
+    Index firstNameIndex = mock(Index.class);
+    RegionAttributes<String, Person> regionAttributes = mock(RegionAttributes.class);
+
+    doReturn(Stream.of(region).collect(toSet())).when(cache).rootRegions();
+    doReturn(Stream.of(firstNameIndex).collect(toList())).when(queryService).getIndexes(region);
+    doReturn("Person").when(region).getName();
+    doReturn(regionAttributes).when(region).getAttributes();
+    doReturn(String.class).when(regionAttributes).getKeyConstraint();
+    doReturn(Person.class).when(regionAttributes).getValueConstraint();
+    doReturn("firstName").when(firstNameIndex).getIndexedExpression();
+
+    GraphQLSchemaBuilder fromClasses = new GraphQLSchemaBuilder(cache);
+    SchemaModel model = fromClasses.getModel();
+    GraphQLSchemaBuilder fromModel = new GraphQLSchemaBuilder(cache, model);
+
+    assertThat(new SchemaPrinter().print(fromModel.build()))
+        .isEqualTo(new SchemaPrinter().print(fromClasses.build()));
+
+    // the classes are not read again
+    model.getRegion("Person").getValue().getFields()
+        .removeIf(field -> field.getName().equals("company"));
+    GraphQLObjectType personType =
+        (GraphQLObjectType) new GraphQLSchemaBuilder(cache, model).build().getType("Person");
+    assertThat(personType.getFieldDefinition("company")).isNull();
+    assertThat(personType.getFieldDefinition("firstName")).isNotNull();
+  }
+
   @Test
   public void testIgnoreAnnotationDoesNotCreateAGraphqlObject() {
     Region<String, Student> region = mock(Region.class);
@@ -145,7 +196,7 @@ public class GraphQLSchemaBuilderTest {
     assertThat(schema.getQueryType().getFieldDefinition("Foo").getArgument("key").getType())
         .isEqualTo(Scalars.GraphQLString);
 
-    assertThat(schema.getQueryType().getFieldDefinition("Foos").getArguments().size()).isEqualTo(1);
+    assertThat(schema.getQueryType().getFieldDefinition("Foos").getArguments().size()).isEqualTo(3);
     assertThat(schema.getQueryType().getFieldDefinition("Foos").getArgument("key").getType())
         .isInstanceOf(GraphQLList.class);
 
@@ -177,7 +228,7 @@ public class GraphQLSchemaBuilderTest {
     assertThat(schema.getQueryType().getFieldDefinition("Foo").getArgument("key").getType())
         .isEqualTo(Scalars.GraphQLString);
 
-    assertThat(schema.getQueryType().getFieldDefinition("Foos").getArguments().size()).isEqualTo(1);
+    assertThat(schema.getQueryType().getFieldDefinition("Foos").getArguments().size()).isEqualTo(3);
     assertThat(schema.getQueryType().getFieldDefinition("Foos").getArgument("key").getType())
         .isInstanceOf(GraphQLList.class);
 
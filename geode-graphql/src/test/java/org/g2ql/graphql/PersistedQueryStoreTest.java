@@ -0,0 +1,77 @@
+package org.g2ql.graphql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.geode.cache.Region;
+import org.g2ql.categories.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class PersistedQueryStoreTest {
+  private static final String QUERY = "{\n  Person(key: \"1\") {\n    id\n  }\n}";
+
+  @Test
+  public void testSha256() {
+    assertThat(PersistedQueryStore.sha256(""))
+        .isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+  }
+
+  @Test
+  public void testRequestsWithoutHashAreLeftAlone() {
+    PersistedQueryStore store = new PersistedQueryStore(null, 10);
+    assertThat(store.resolve(QUERY, null)).isEqualTo(QUERY);
+    assertThat(store.resolve(QUERY, Collections.emptyMap())).isEqualTo(QUERY);
+  }
+
+  @Test
+  public void testRegisterThenLookUpByHash() {
+    PersistedQueryStore store = new PersistedQueryStore(null, 10);
+    String hash = PersistedQueryStore.sha256(QUERY);
+
+    Throwable notFound = catchThrowable(() -> store.resolve(null, extensions(hash)));
+    assertThat(notFound).isInstanceOf(PersistedQueryException.class)
+        .hasMessage(PersistedQueryException.NOT_FOUND);
+
+    assertThat(store.resolve(QUERY, extensions(hash))).isEqualTo(QUERY);
+    assertThat(store.resolve(null, extensions(hash))).isEqualTo(QUERY);
+    assertThat(store.resolve(null, extensions(hash.toUpperCase()))).isEqualTo(QUERY);
+  }
+
+  @Test
+  public void testHashMustMatchQuery() {
+    PersistedQueryStore store = new PersistedQueryStore(null, 10);
+    Throwable mismatch =
+        catchThrowable(() -> store.resolve(QUERY, extensions(PersistedQueryStore.sha256(""))));
+    assertThat(mismatch).hasMessage(PersistedQueryException.HASH_MISMATCH);
+    assertThat(store.get(PersistedQueryStore.sha256(""))).isNull();
+  }
+
+  @Test
+  public void testRegistrationsAreMirroredIntoRegion() {
+    Region<String, String> region = mock(Region.class);
+    String hash = PersistedQueryStore.sha256(QUERY);
+
+    new PersistedQueryStore(region, 10).resolve(QUERY, extensions(hash));
+    verify(region).putIfAbsent(hash, QUERY);
+
+    doReturn(QUERY).when(region).get(hash);
+    assertThat(new PersistedQueryStore(region, 10).resolve(null, extensions(hash)))
+        .isEqualTo(QUERY);
+  }
+
+  private Map<String, Object> extensions(String hash) {
+    Map<String, Object> persistedQuery = new HashMap<>();
+    persistedQuery.put("version", 1);
+    persistedQuery.put("sha256Hash", hash);
+    return Collections.singletonMap("persistedQuery", persistedQuery);
+  }
+}
@@ -0,0 +1,51 @@
+package org.g2ql.graphql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import graphql.InvalidSyntaxError;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+import graphql.language.SourceLocation;
+import org.g2ql.categories.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class PreparsedDocumentCacheTest {
+
+  @Test
+  public void testDocumentIsParsedOnce() {
+    PreparsedDocumentCache cache = new PreparsedDocumentCache(10);
+    AtomicInteger parsed = new AtomicInteger();
+    PreparsedDocumentEntry entry = new PreparsedDocumentEntry(new Document());
+
+    assertThat(cache.get("{a}", q -> {
+      parsed.incrementAndGet();
+      return entry;
+    })).isSameAs(entry);
+    assertThat(cache.get("{a}", q -> {
+      parsed.incrementAndGet();
+      return entry;
+    })).isSameAs(entry);
+
+    assertThat(parsed.get()).isEqualTo(1);
+    assertThat(cache.getStatistics()).containsEntry("hitCount", 1L).containsEntry("missCount", 1L)
+        .containsEntry("hitRate", 0.5);
+  }
+
+  @Test
+  public void testInvalidDocumentsAreNotKept() {
+    PreparsedDocumentCache cache = new PreparsedDocumentCache(10);
+    AtomicInteger parsed = new AtomicInteger();
+    for (int i = 0; i < 2; i++) {
+      cache.get("{", q -> {
+        parsed.incrementAndGet();
+        return new PreparsedDocumentEntry(new InvalidSyntaxError((SourceLocation) null, "bad"));
+      });
+    }
+    assertThat(parsed.get()).isEqualTo(2);
+    assertThat(cache.getStatistics()).containsEntry("size", 0L);
+  }
+}
@@ -0,0 +1,76 @@
+package org.g2ql.server;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.g2ql.categories.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class GraphQLRequestReaderTest {
+  private final GraphQLRequestReader reader = new GraphQLRequestReader(200, 50, 100);
+
+  @Test
+  public void testRequestIsReadInOnePass() throws IOException {
+    GraphQLRequest request = read("{\"id\":{\"ignored\":[1]},\"query\":\"{ Person { id } }\","
+        + "\"operationName\":\"people\",\"variables\":{\"keys\":[\"1\",2,3.5,true,null],"
+        + "\"where\":{\"age\":30}},\"extensions\":\"{\\\"persistedQuery\\\":{}}\"}");
+
+    assertThat(request.getQuery()).isEqualTo("{ Person { id } }");
+    assertThat(request.getOperationName()).isEqualTo("people");
+    assertThat(request.getVariables().get("keys")).isEqualTo(asList("1", 2, 3.5, true, null));
+    assertThat(request.getVariables().get("where"))
+        .isEqualTo(Collections.singletonMap("age", 30));
+    assertThat(request.getExtensions())
+        .isEqualTo(Collections.singletonMap("persistedQuery", Collections.emptyMap()));
+  }
+
+  @Test
+  public void testOversizedPartsAreRejected() {
+    assertThatThrownBy(() -> read("{\"query\":\"" + repeat('x', 51) + "\"}"))
+        .isInstanceOf(RequestTooLargeException.class).hasMessageContaining("50 characters");
+    assertThatThrownBy(() -> read("{\"variables\":{\"keys\":[" + repeat('1', 101) + "]}}"))
+        .isInstanceOf(RequestTooLargeException.class).hasMessageContaining("variables");
+    assertThatThrownBy(() -> read("{\"variables\":{\"keys\":[" + repeat('1', 201) + "]}}"))
+        .isInstanceOf(RequestTooLargeException.class).hasMessageContaining("200 bytes");
+    assertThatThrownBy(() -> reader.readParameter("{\"a\":\"" + repeat('1', 100) + "\"}", "x"))
+        .isInstanceOf(RequestTooLargeException.class).hasMessageContaining("x are larger");
+  }
+
+  @Test
+  public void testWebSocketMessagesAreReadWithTheSameLimits() throws IOException {
+    GraphQLMessage message = reader.readMessage("{\"id\":\"1\",\"type\":\"start\","
+        + "\"payload\":{\"query\":\"{ Person { id } }\",\"variables\":{\"key\":\"1\"}}}");
+
+    assertThat(message.getId()).isEqualTo("1");
+    assertThat(message.getType()).isEqualTo("start");
+    assertThat(message.getPayload().getQuery()).isEqualTo("{ Person { id } }");
+    assertThat(message.getPayload().getVariables()).containsEntry("key", "1");
+    assertThat(reader.readMessage("{\"type\":\"connection_init\",\"payload\":null}")
+        .getPayload()).isNull();
+
+    assertThatThrownBy(() -> reader.readMessage(
+        "{\"type\":\"start\",\"payload\":{\"query\":\"" + repeat('x', 51) + "\"}}"))
+            .isInstanceOf(RequestTooLargeException.class).hasMessageContaining("50 characters");
+    assertThatThrownBy(() -> reader.readMessage("{\"type\":\"" + repeat('x', 201) + "\"}"))
+        .isInstanceOf(RequestTooLargeException.class).hasMessageContaining("200 bytes");
+  }
+
+  private GraphQLRequest read(String body) throws IOException {
+    return reader.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+}
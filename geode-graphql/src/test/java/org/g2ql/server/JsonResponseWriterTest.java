@@ -0,0 +1,62 @@
+package org.g2ql.server;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQLError;
+import graphql.InvalidSyntaxError;
+import graphql.language.SourceLocation;
+import org.g2ql.categories.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class JsonResponseWriterTest {
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final JsonResponseWriter writer = new JsonResponseWriter(mapper);
+
+  @Test
+  public void testResultIsWrittenLikeItsSpecification() throws IOException {
+    Map<String, Object> person = new LinkedHashMap<>();
+    person.put("id", "1");
+    person.put("firstName", "Zo\u00eb \"Luke\"");
+    person.put("age", 30);
+    person.put("score", 4.5);
+    person.put("balance", new BigDecimal("12.30"));
+    person.put("active", true);
+    person.put("company", null);
+    person.put("tags", asList("a", 1L, Collections.emptyMap()));
+    Map<Object, Object> extensions = new LinkedHashMap<>();
+    extensions.put("routing", Collections.singletonMap("host", "server1"));
+    GraphQLError error = new InvalidSyntaxError(new SourceLocation(1, 2), "Unexpected token");
+    ExecutionResult result = new ExecutionResultImpl(
+        Collections.singletonMap("Person", asList(person, person)), asList(error), extensions);
+
+    assertThat(write(result)).isEqualTo(mapper.writeValueAsString(result.toSpecification()));
+  }
+
+  @Test
+  public void testResultWithoutDataHasNoDataField() throws IOException {
+    ExecutionResult result =
+        new ExecutionResultImpl(new InvalidSyntaxError(new SourceLocation(1, 1), "Bad"));
+
+    assertThat(write(result)).doesNotContain("\"data\"").contains("\"message\":");
+  }
+
+  private String write(ExecutionResult result) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.write(out, result);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -6,20 +6,34 @@ import org.g2ql.graphql.GraphQLExecutor;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.eclipse.jetty.server.Request;
 import org.mockito.Mockito;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 public class QueryHandlerTest {
   private Cache cache;
@@ -47,12 +61,217 @@ public class QueryHandlerTest {
     String body =
         "{\"query\":\"{\\n  Person(key: \\\"1\\\") {\\n    id\\n    firstName\\n  }\\n}\\n\"}";
 
-    doReturn(body).when(queryHandler).requestBody(any());
+    bodyOf(request, body);
     doReturn("POST").when(request).getMethod();
     doReturn("/graphql").when(request).getPathInfo();
 
     doReturn(new HashMap<>()).when(executionResult).toSpecification();
-    doReturn(mock(PrintWriter.class)).when(response).getWriter();
+    outputOf(response);
     queryHandler.handle("/graphql", mock(Request.class), request, response);
   }
+
+  @Test
+  public void testPostWithUnknownPersistedQuery() throws IOException {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    String body = "{\"extensions\":{\"persistedQuery\":{\"version\":1,\"sha256Hash\":"
+        + "\"ecf4edb46db40b5132295c0291d62fb65d6759a9eedfa4d5d612dd5ec54a6b38\"}}}";
+
+    bodyOf(request, body);
+    doReturn("POST").when(request).getMethod();
+    doReturn("/graphql").when(request).getPathInfo();
+
+    ByteArrayOutputStream json = outputOf(response);
+    queryHandler.handle("/graphql", mock(Request.class), request, response);
+
+    assertThat(json.toString()).contains("\"message\":\"PersistedQueryNotFound\"")
+        .contains("\"code\":\"PERSISTED_QUERY_NOT_FOUND\"");
+    verify(executor, never()).execute(any(), any());
+  }
+
+  @Test
+  public void testRequestIsHandedOffToTheRequestExecutor() throws IOException {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    AsyncContext async = mock(AsyncContext.class);
+    List<Runnable> tasks = new ArrayList<>();
+    queryHandler.setRequestExecutor(tasks::add);
+
+    bodyOf(request, "{\"query\":\"{ Person(key: \\\"1\\\") { id } }\"}");
+    doReturn("POST").when(request).getMethod();
+    doReturn("/graphql").when(request).getPathInfo();
+    doReturn(async).when(request).startAsync();
+    doReturn(new HashMap<>()).when(executionResult).toSpecification();
+    ByteArrayOutputStream json = outputOf(response);
+    queryHandler.handle("/graphql", mock(Request.class), request, response);
+
+    assertThat(tasks).hasSize(1);
+    verify(executor, never()).execute(any(), any());
+    verify(async, never()).complete();
+
+    tasks.get(0).run();
+    verify(executor).execute(any(), any());
+    verify(async).complete();
+  }
+
+  @Test
+  public void testRequestRejectedByTheRequestExecutorIsAnswered() throws IOException {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    AsyncContext async = mock(AsyncContext.class);
+    queryHandler.setRequestExecutor(task -> {
+      throw new RejectedExecutionException("All 1 permits are taken");
+    });
+
+    doReturn("POST").when(request).getMethod();
+    doReturn("/graphql").when(request).getPathInfo();
+    doReturn(async).when(request).startAsync();
+    ByteArrayOutputStream json = outputOf(response);
+    queryHandler.handle("/graphql", mock(Request.class), request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    verify(response).setHeader("Retry-After", "1");
+    assertThat(json.toString()).contains("\"message\":\"Too many requests\"");
+    verify(request, never()).getInputStream();
+    verify(async).complete();
+  }
+
+  @Test
+  public void testServiceUnavailableUntilSchemaIsBuilt() throws IOException {
+    QueryHandler warmingUp = spy(new QueryHandler(cache, (String) null));
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    bodyOf(request, "{\"query\":\"{ Person(key: \\\"1\\\") { id } }\"}");
+    doReturn("POST").when(request).getMethod();
+    doReturn("/graphql").when(request).getPathInfo();
+
+    ByteArrayOutputStream json = outputOf(response);
+    warmingUp.handle("/graphql", mock(Request.class), request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    assertThat(json.toString()).contains("\"message\":\"Schema is being built\"");
+
+    warmingUp.setExecutor(executor);
+    doReturn(new HashMap<>()).when(executionResult).toSpecification();
+    outputOf(response);
+    warmingUp.handle("/graphql", mock(Request.class), request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_OK);
+    verify(executor).execute(any(), any());
+  }
+
+  @Test
+  public void testSchemaSnapshotIsServedUntilSchemaIsBuilt() throws IOException {
+    QueryHandler warmingUp = spy(new QueryHandler(cache, "{\"data\":{\"__schema\":{}}}"));
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    doReturn("GET").when(request).getMethod();
+    doReturn("/graphql/schema.json").when(request).getPathInfo();
+
+    ByteArrayOutputStream json = outputOf(response);
+    warmingUp.handle("/graphql/schema.json", mock(Request.class), request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_OK);
+    assertThat(json.toString()).isEqualTo("{\"data\":{\"__schema\":{}}}");
+  }
+
+  @Test
+  public void testOversizedVariablesAreRejected() throws IOException {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    StringBuilder body = new StringBuilder("{\"query\":\"{ Person(key: $keys) { id } }\",");
+    body.append("\"variables\":{\"keys\":[\"0\"");
+    for (int i = 1; i < 1_000_000; i++) {
+      body.append(",\"").append(i).append('"');
+    }
+    body.append("]}}");
+    bodyOf(request, body.toString());
+    doReturn("POST").when(request).getMethod();
+    doReturn("/graphql").when(request).getPathInfo();
+
+    ByteArrayOutputStream json = outputOf(response);
+    queryHandler.handle("/graphql", mock(Request.class), request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+    assertThat(json.toString()).contains("\"message\":\"The variables are larger than");
+    verify(executor, never()).execute(any(), any());
+  }
+
+  @Test
+  public void testDeclaredLengthIsRejectedBeforeReading() throws IOException {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    doReturn("POST").when(request).getMethod();
+    doReturn("/graphql").when(request).getPathInfo();
+    doReturn(GraphQLRequestReader.MAX_REQUEST_BYTES + 1).when(request).getContentLengthLong();
+
+    ByteArrayOutputStream json = outputOf(response);
+    queryHandler.handle("/graphql", mock(Request.class), request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+    assertThat(json.toString()).contains("\"message\":\"The request is larger than");
+    verify(request, never()).getInputStream();
+  }
+
+  @Test
+  public void testLoggedQueriesAreCut() {
+    StringBuilder query = new StringBuilder();
+    while (query.length() < 5000) {
+      query.append("{ Person(key: \"1\") { id } }");
+    }
+
+    assertThat(QueryHandler.abbreviate("{ Person { id } }")).isEqualTo("{ Person { id } }");
+    assertThat(QueryHandler.abbreviate(null)).isNull();
+    assertThat(QueryHandler.abbreviate(query.toString()))
+        .isEqualTo(query.substring(0, 1000) + "... (" + query.length() + " characters)");
+  }
+
+  private static void bodyOf(HttpServletRequest request, String body) throws IOException {
+    doAnswer(invocation -> {
+      ByteArrayInputStream in = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+      return new ServletInputStream() {
+        @Override
+        public boolean isFinished() {
+          return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {}
+
+        @Override
+        public int read() {
+          return in.read();
+        }
+      };
+    }).when(request).getInputStream();
+  }
+
+  private static ByteArrayOutputStream outputOf(HttpServletResponse response) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    doReturn(new ServletOutputStream() {
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {}
+
+      @Override
+      public void write(int b) {
+        out.write(b);
+      }
+    }).when(response).getOutputStream();
+    return out;
+  }
 }
@@ -0,0 +1,98 @@
+package org.g2ql.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionAttributes;
+import org.apache.geode.cache.query.QueryService;
+import org.g2ql.categories.UnitTest;
+import org.g2ql.domain.Post;
+import org.g2ql.domain.Person;
+import org.g2ql.graphql.SchemaModel;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+@Category(UnitTest.class)
+public class SchemaSnapshotTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testFingerprintChangesWithTheDomainClasses() {
+    Cache person = cache(Person.class);
+
+    assertThat(SchemaSnapshot.fingerprint(person)).isEqualTo(SchemaSnapshot.fingerprint(person))
+        .isNotEqualTo(SchemaSnapshot.fingerprint(cache(Post.class)));
+  }
+
+  @Test
+  public void testSnapshotIsReadBackForTheSameFingerprintOnly() throws IOException {
+    Path directory = folder.getRoot().toPath().resolve("g2ql-schema");
+    SchemaSnapshot snapshot = new SchemaSnapshot(directory, "1234");
+
+    assertThat(snapshot.read()).isNull();
+    snapshot.write("{\"data\":{}}");
+
+    assertThat(new SchemaSnapshot(directory, "1234").read()).isEqualTo("{\"data\":{}}");
+    assertThat(new SchemaSnapshot(directory, "5678").read()).isNull();
+  }
+
+  @Test
+  public void testModelIsReadBack() {
+    Path directory = folder.getRoot().toPath().resolve("g2ql-schema");
+    SchemaModel.FieldModel field = new SchemaModel.FieldModel();
+    field.setName("firstName");
+    field.setType("String");
+    SchemaModel.TypeModel type = new SchemaModel.TypeModel();
+    type.setName("Person");
+    type.setFields(Collections.singletonList(field));
+    SchemaModel.RegionModel region = new SchemaModel.RegionModel();
+    region.setName("Person");
+    region.setKeyType("String");
+    region.setValue(type);
+    region.setFilterFields(Collections.singletonList(field));
+
+    SchemaSnapshot snapshot = new SchemaSnapshot(directory, "1234");
+    assertThat(snapshot.readModel()).isNull();
+    snapshot.writeModel(new SchemaModel(Collections.singletonList(region)));
+
+    SchemaModel model = new SchemaSnapshot(directory, "1234").readModel();
+    assertThat(model.getRegions()).hasSize(1);
+    SchemaModel.RegionModel person = model.getRegion("Person");
+    assertThat(person.getKeyType()).isEqualTo("String");
+    assertThat(person.getValueType()).isNull();
+    assertThat(person.getValue().getFields()).extracting("name", "type")
+        .containsExactly(tuple("firstName", "String"));
+    assertThat(person.getFilterFields()).extracting("name").containsExactly("firstName");
+    assertThat(new SchemaSnapshot(directory, "5678").readModel()).isNull();
+  }
+
+  private static Cache cache(Class<?> valueClass) {
+    Cache cache = mock(Cache.class);
+    Region<?, ?> region = mock(Region.class);
+    RegionAttributes<?, ?> attributes = mock(RegionAttributes.class);
+    QueryService queryService = mock(QueryService.class);
+    doReturn("Person").when(region).getName();
+    doReturn(attributes).when(region).getAttributes();
+    doReturn(String.class).when(attributes).getKeyConstraint();
+    doReturn(valueClass).when(attributes).getValueConstraint();
+    Set<Region<?, ?>> regions = new HashSet<>(Collections.singleton(region));
+    doReturn(regions).when(cache).rootRegions();
+    doReturn(queryService).when(cache).getQueryService();
+    doReturn(Collections.emptyList()).when(queryService).getIndexes(any(Region.class));
+    return cache;
+  }
+}
@@ -0,0 +1,167 @@
+package org.g2ql.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import org.g2ql.categories.UnitTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.reactivestreams.Subscription;
+
+@Category(UnitTest.class)
+public class SubscriptionWriterTest {
+  private RecordingSink sink;
+  private long requested;
+  private boolean cancelled;
+  private Subscription subscription;
+
+  @Before
+  public void setUp() {
+    sink = new RecordingSink();
+    subscription = new Subscription() {
+      @Override
+      public void request(long n) {
+        requested += n;
+      }
+
+      @Override
+      public void cancel() {
+        cancelled = true;
+      }
+    };
+  }
+
+  @Test
+  public void testNextChangeIsRequestedOnceTheResultIsWritten() {
+    SubscriptionWriter writer = new SubscriptionWriter(sink, 60);
+    writer.onSubscribe(subscription);
+    assertThat(requested).isEqualTo(1);
+
+    writer.onNext(result("1"));
+    assertThat(sink.writes).containsExactly("next");
+    assertThat(requested).isEqualTo(1);
+
+    sink.finish();
+    assertThat(requested).isEqualTo(2);
+    writer.cancel();
+  }
+
+  @Test
+  public void testKeepAliveIsSkippedWhileAWriteIsInProgress() {
+    SubscriptionWriter writer = new SubscriptionWriter(sink, 60);
+    writer.onSubscribe(subscription);
+    writer.onNext(result("1"));
+
+    // returns at once instead of waiting for the write
+    writer.keepAlive();
+    assertThat(sink.writes).containsExactly("next");
+    assertThat(cancelled).isFalse();
+
+    sink.finish();
+    writer.keepAlive();
+    assertThat(sink.writes).containsExactly("next", "keepAlive");
+    writer.cancel();
+  }
+
+  @Test
+  public void testWritesAreStartedOneAtATime() {
+    SubscriptionWriter writer = new SubscriptionWriter(sink, 60);
+    writer.onSubscribe(subscription);
+    writer.onNext(result("1"));
+    writer.onComplete();
+    assertThat(sink.writes).containsExactly("next");
+
+    sink.finish();
+    assertThat(sink.writes).containsExactly("next", "complete");
+  }
+
+  @Test
+  public void testWriteInProgressForTooLongCancelsTheSubscription() {
+    SubscriptionWriter writer = new SubscriptionWriter(sink, 0);
+    writer.onSubscribe(subscription);
+    writer.onNext(result("1"));
+
+    writer.keepAlive();
+    assertThat(cancelled).isTrue();
+    assertThat(sink.writes).containsExactly("next");
+  }
+
+  @Test
+  public void testCheckWriteLeavesTheKeepAliveToTheConnection() {
+    SubscriptionWriter writer = new SubscriptionWriter(sink, 0, false);
+    writer.onSubscribe(subscription);
+    assertThat(writer.checkWrite()).isTrue();
+
+    writer.onNext(result("1"));
+    assertThat(writer.checkWrite()).isFalse();
+    assertThat(cancelled).isTrue();
+    assertThat(sink.writes).containsExactly("next");
+  }
+
+  @Test
+  public void testFailedWriteCancelsTheSubscription() {
+    SubscriptionWriter writer = new SubscriptionWriter(sink, 60);
+    writer.onSubscribe(subscription);
+    writer.onNext(result("1"));
+
+    sink.fail();
+    assertThat(cancelled).isTrue();
+    assertThat(requested).isEqualTo(1);
+  }
+
+  private static ExecutionResult result(String key) {
+    return new ExecutionResultImpl(Collections.singletonMap("key", key), Collections.emptyList());
+  }
+
+  /**
+   * Records the writes, which complete only when told to.
+   */
+  private static class RecordingSink implements SubscriptionWriter.Sink {
+    private final List<String> writes = new ArrayList<>();
+    private CompletableFuture<Void> current;
+
+    @Override
+    public CompletableFuture<Void> next(Map<String, Object> result) {
+      return start("next");
+    }
+
+    @Override
+    public CompletableFuture<Void> error(Throwable failure) {
+      return start("error");
+    }
+
+    @Override
+    public CompletableFuture<Void> complete() {
+      return start("complete");
+    }
+
+    @Override
+    public CompletableFuture<Void> keepAlive() {
+      return start("keepAlive");
+    }
+
+    void finish() {
+      current.complete(null);
+    }
+
+    void fail() {
+      current.completeExceptionally(new IOException("closed"));
+    }
+
+    private CompletableFuture<Void> start(String write) {
+      assertThat(current == null || current.isDone()).as("previous write completed").isTrue();
+      writes.add(write);
+      current = new CompletableFuture<>();
+      return current;
+    }
+  }
+}